@@ -0,0 +1,227 @@
+package com.soilidstate.api.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the REST API of a running instance, normally one started with
+ * {@code app.sensor-source=simulated}, and reports latency percentiles per endpoint
+ * and the sensor events per second the server ingested.
+ * <p>
+ * Registers {@code loadtest.sensors} sensors on a fresh connection, then runs
+ * {@code loadtest.clients} concurrent clients for {@code loadtest.duration}, each
+ * cycling through the snapshot, delta and sensor-list endpoints. Settings are read
+ * from system properties:
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.soilidstate.api.loadtest.LoadTest \
+ *     -Dloadtest.token=$TOKEN -Dloadtest.sensors=10000 -Dloadtest.clients=32
+ * </pre>
+ */
+public class LoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String baseUrl = System.getProperty("loadtest.base-url", "http://localhost:8080/api/phidget");
+    private final String token = System.getProperty("loadtest.token", System.getenv("LOADTEST_TOKEN"));
+    private final int sensors = Integer.getInteger("loadtest.sensors", 10_000);
+    private final int channelsPerHub = Integer.getInteger("loadtest.channels-per-hub", 100);
+    private final String sensorType = System.getProperty("loadtest.type", "VOLTAGE");
+    private final int dataInterval = Integer.getInteger("loadtest.data-interval", 1000);
+    private final int batchSize = Integer.getInteger("loadtest.batch-size", 64);
+    private final int clients = Integer.getInteger("loadtest.clients", 16);
+    private final Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT60S"));
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        if (token == null) {
+            throw new IllegalStateException("Set loadtest.token or LOADTEST_TOKEN to a valid bearer token");
+        }
+
+        long connectionId = connect();
+        try {
+            register(connectionId);
+
+            JsonNode before = get("/dispatch/stats");
+            long start = System.nanoTime();
+            Map<String, Latencies> latencies = drive(connectionId);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            JsonNode after = get("/dispatch/stats");
+
+            report(latencies, seconds, before, after);
+        } finally {
+            send("POST", "/disconnect?connectionId=" + connectionId, null);
+        }
+    }
+
+    private long connect() throws Exception {
+        ObjectNode body = MAPPER.createObjectNode()
+                .put("serverAddress", System.getProperty("loadtest.server", "simulator"))
+                .put("port", 5661);
+        JsonNode status = MAPPER.readTree(send("POST", "/connect", body).body());
+        System.out.printf("Connected, connection %d%n", status.get("connectionId").asLong());
+        return status.get("connectionId").asLong();
+    }
+
+    private void register(long connectionId) throws Exception {
+        long start = System.nanoTime();
+        int registered = 0;
+        for (int from = 0; from < sensors; from += batchSize) {
+            ArrayNode list = MAPPER.createArrayNode();
+            for (int i = from; i < Math.min(sensors, from + batchSize); i++) {
+                list.addObject()
+                        .put("sensorType", sensorType)
+                        .put("hubPort", i / channelsPerHub)
+                        .put("channel", i % channelsPerHub)
+                        .put("sensorName", "load-" + i)
+                        .put("dataInterval", dataInterval);
+            }
+            ObjectNode body = MAPPER.createObjectNode();
+            body.set("sensors", list);
+            JsonNode result = MAPPER.readTree(
+                    send("POST", "/sensors/register/batch?connectionId=" + connectionId, body).body());
+            registered += result.get("registered").asInt();
+        }
+        System.out.printf("Registered %d of %d sensors in %.1f s%n",
+                registered, sensors, (System.nanoTime() - start) / 1e9);
+    }
+
+    private Map<String, Latencies> drive(long connectionId) throws InterruptedException {
+        String scope = "connectionId=" + connectionId;
+        List<Map<String, Latencies>> perClient = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                executor.execute(() -> {
+                    Map<String, Latencies> mine = new LinkedHashMap<>();
+                    long since = 0;
+                    while (System.nanoTime() < deadline) {
+                        time(mine, "GET /sensors/data", "/sensors/data?" + scope);
+                        JsonNode delta = time(mine, "GET /sensors/data?since", "/sensors/data?since=" + since + "&" + scope);
+                        if (delta != null) {
+                            since = delta.get("version").asLong();
+                        }
+                        time(mine, "GET /sensors", "/sensors?" + scope);
+                    }
+                    perClient.add(mine);
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        }
+
+        Map<String, Latencies> merged = new LinkedHashMap<>();
+        for (Map<String, Latencies> mine : perClient) {
+            mine.forEach((endpoint, l) -> merged.computeIfAbsent(endpoint, e -> new Latencies()).addAll(l));
+        }
+        return merged;
+    }
+
+    private JsonNode time(Map<String, Latencies> latencies, String endpoint, String path) {
+        Latencies l = latencies.computeIfAbsent(endpoint, e -> new Latencies());
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request("GET", path, null), HttpResponse.BodyHandlers.ofByteArray());
+            l.add(System.nanoTime() - start);
+            if (response.statusCode() >= 400) {
+                l.errors++;
+                return null;
+            }
+            return endpoint.endsWith("since") ? MAPPER.readTree(response.body()) : null;
+        } catch (Exception e) {
+            l.errors++;
+            return null;
+        }
+    }
+
+    private void report(Map<String, Latencies> latencies, double seconds, JsonNode before, JsonNode after) {
+        System.out.printf("%n%d clients, %.1f s%n", clients, seconds);
+        System.out.printf("%-26s %10s %10s %10s %10s %10s %8s%n", "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        latencies.forEach((endpoint, l) -> {
+            l.sort();
+            System.out.printf("%-26s %10d %10.1f %10.2f %10.2f %10.2f %8d%n", endpoint, l.size, l.size / seconds,
+                    l.percentile(0.50) / 1e6, l.percentile(0.99) / 1e6, l.percentile(1.0) / 1e6, l.errors);
+        });
+
+        long dispatched = after.get("dispatched").asLong() - before.get("dispatched").asLong();
+        long dropped = after.get("dropped").asLong() - before.get("dropped").asLong();
+        System.out.printf("%nsensor events: %.0f/s ingested, %d dropped%n", dispatched / seconds, dropped);
+    }
+
+    private JsonNode get(String path) throws Exception {
+        return MAPPER.readTree(send("GET", path, null).body());
+    }
+
+    private HttpResponse<String> send(String method, String path, JsonNode body) throws Exception {
+        HttpResponse<String> response = http.send(request(method, path, body), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(method + " " + path + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    private HttpRequest request(String method, String path, JsonNode body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", "Bearer " + token);
+        if (body != null) {
+            builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)));
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Growable array of latencies in nanoseconds, owned by one client until merged
+     */
+    private static final class Latencies {
+        private long[] values = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+            errors += other.errors;
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        long percentile(double p) {
+            if (size == 0) return 0;
+            return values[(int) Math.max(0, Math.min(size - 1, Math.ceil(p * size) - 1))];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorHistoryProperties;
+import com.soilidstate.api.config.SensorStreamProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of {@link SensorIngestService#updateSensorData} with metrics and the in-memory
+ * listeners (history buffer, SSE stream without subscribers). Every writer thread owns one sensor,
+ * as each sensor is written by a single dispatch thread in the application.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+
+    private SensorIngestService ingest;
+    private SensorStreamService stream;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final AtomicInteger ids = new AtomicInteger();
+
+        SensorSlot slot;
+        double value;
+
+        @Setup
+        public void setup() {
+            int id = ids.getAndIncrement();
+            slot = new SensorSlot("sensor-" + id, 1L, 1L, SensorType.VOLTAGE, "Probe", id / 4, id % 4);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        stream = new SensorStreamService(new SensorStreamProperties());
+        ingest = new SensorIngestService(List.of(
+                new SensorHistoryService(new SensorHistoryProperties()),
+                stream), new SensorMetrics(new SimpleMeterRegistry()));
+        ingest.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        stream.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void writers1(Writer writer) {
+        write(writer);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void writers8(Writer writer) {
+        write(writer);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void writers64(Writer writer) {
+        write(writer);
+    }
+
+    private void write(Writer writer) {
+        writer.value += 0.001;
+        ingest.updateSensorData(writer.slot, writer.value, System.currentTimeMillis(), System.nanoTime());
+    }
+}
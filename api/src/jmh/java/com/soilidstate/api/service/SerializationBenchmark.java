@@ -0,0 +1,56 @@
+package com.soilidstate.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.soilidstate.api.config.JacksonConfig;
+import com.soilidstate.api.dto.SensorDataResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the {@code /sensors/data} body, with and without
+ * {@code spring.jackson.serialization.indent-output}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int sensors;
+
+    @Param({"true", "false"})
+    public boolean indentOutput;
+
+    private ObjectWriter writer;
+    private Map<String, SensorDataResponse> data;
+
+    @Setup
+    public void setup() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+                .indentOutput(indentOutput)
+                .filters(JacksonConfig.defaultFilters())
+                .build();
+        writer = mapper.writer();
+
+        data = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < sensors; i++) {
+            SensorSlot slot = new SensorSlot("sensor-" + i, 1L, 1L, SensorType.VOLTAGE, "Probe " + i, i / 4, i % 4);
+            slot.writeValue(i * 0.01, now, i + 1);
+            data.put(slot.sensorId(), slot.toResponse());
+        }
+    }
+
+    @Benchmark
+    public byte[] sensorDataMap() throws Exception {
+        return writer.writeValueAsBytes(data);
+    }
+}
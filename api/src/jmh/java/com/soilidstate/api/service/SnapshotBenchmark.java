@@ -0,0 +1,95 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.JacksonConfig;
+import com.soilidstate.api.config.SensorSnapshotProperties;
+import com.soilidstate.api.dto.SensorDataDeltaResponse;
+import com.soilidstate.api.dto.SensorDataResponse;
+import com.soilidstate.api.dto.SensorStatusResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the read endpoints' service calls for one user with a growing number of sensors
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    private static final long USER_ID = 1L;
+
+    private static final SensorChannel ATTACHED = new SensorChannel() {
+        @Override
+        public boolean isAttached() {
+            return true;
+        }
+
+        @Override
+        public void applySettings(SensorSettings settings) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Param({"10", "1000", "10000"})
+    public int sensors;
+
+    private PhidgetService phidgetService;
+    private SensorSnapshotCache snapshotCache;
+    private long version;
+
+    @Setup
+    public void setup() throws Exception {
+        SensorMetrics metrics = new SensorMetrics(new SimpleMeterRegistry());
+        SensorIngestService ingest = new SensorIngestService(List.of(), metrics);
+        ingest.init();
+        phidgetService = new PhidgetService(ingest, null, null, null, null, metrics);
+
+        PhidgetSession session = new PhidgetSession(1L, USER_ID, ingest, null);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < sensors; i++) {
+            SensorSlot slot = new SensorSlot("sensor-" + i, USER_ID, 1L, SensorType.VOLTAGE, "Probe " + i, i / 4, i % 4);
+            session.track(slot, ATTACHED);
+            slot.writeValue(i * 0.01, now, ingest.nextVersion());
+        }
+        phidgetService.addSession(session);
+        version = phidgetService.getPublishedVersion();
+
+        snapshotCache = new SensorSnapshotCache(phidgetService,
+                Jackson2ObjectMapperBuilder.json().filters(JacksonConfig.defaultFilters()).build(),
+                new SensorSnapshotProperties(), metrics);
+    }
+
+    /**
+     * Per-request cost of the shared snapshot once built; compare with latestSensorData plus serialization
+     */
+    @Benchmark
+    public SensorSnapshotCache.Snapshot sharedSnapshot() {
+        return snapshotCache.get(USER_ID, null);
+    }
+
+    @Benchmark
+    public Map<String, SensorDataResponse> latestSensorData() {
+        return phidgetService.getLatestSensorData(USER_ID, null, SensorFilter.NONE);
+    }
+
+    @Benchmark
+    public SensorDataDeltaResponse sensorDataSinceUnchanged() {
+        return phidgetService.getSensorDataSince(USER_ID, null, version, SensorFilter.NONE);
+    }
+
+    @Benchmark
+    public Map<String, SensorStatusResponse> allSensors() throws Exception {
+        return phidgetService.getAllSensors(USER_ID, null, SensorFilter.NONE);
+    }
+}
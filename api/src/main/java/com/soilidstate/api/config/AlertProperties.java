@@ -0,0 +1,31 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Alert rule evaluation and notification
+ */
+@Data
+@ConfigurationProperties(prefix = "app.alerts")
+public class AlertProperties {
+
+    /** Notifications waiting for the sinks; more are dropped and counted */
+    private int queueCapacity = 10_000;
+
+    /** How often STALE rules are checked */
+    private Duration staleCheckInterval = Duration.ofSeconds(1);
+
+    /** Maximum number of open alert streams */
+    private int maxStreams = 64;
+
+    /** Idle timeout of an alert stream */
+    private Duration streamTimeout = Duration.ofMinutes(30);
+
+    /** Notifications are POSTed here as JSON when set */
+    private String webhookUrl;
+
+    private Duration webhookTimeout = Duration.ofSeconds(5);
+}
@@ -83,7 +83,8 @@ public class CorsConfig implements WebMvcConfigurer {
         // Expose headers for client
         config.setExposedHeaders(Arrays.asList(
                 "Access-Control-Allow-Origin",
-                "Access-Control-Allow-Credentials"
+                "Access-Control-Allow-Credentials",
+                "ETag"
         ));
 
         // Cache preflight for 1 hour
@@ -0,0 +1,46 @@
+package com.soilidstate.api.config;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.Set;
+
+/**
+ * Field projection ({@code fields=}) for sensor responses.
+ * <p>
+ * DTOs annotated with {@code @JsonFilter(FIELDS_FILTER)} serialize all properties
+ * by default; wrapping a body with {@link #project} limits them to the requested ones.
+ */
+@Configuration
+public class JacksonConfig {
+
+    public static final String FIELDS_FILTER = "fields";
+
+    /**
+     * Filters for mappers that serialize the annotated DTOs without projection
+     */
+    public static FilterProvider defaultFilters() {
+        return new SimpleFilterProvider()
+                .addFilter(FIELDS_FILTER, SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsFilterCustomizer() {
+        return builder -> builder.filters(defaultFilters());
+    }
+
+    /**
+     * Wrap a response body so annotated DTOs in it only serialize {@code fields}
+     */
+    public static MappingJacksonValue project(Object body, Set<String> fields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(new SimpleFilterProvider()
+                .addFilter(FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+        return value;
+    }
+}
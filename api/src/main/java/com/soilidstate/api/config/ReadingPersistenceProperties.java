@@ -0,0 +1,74 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Write-behind persistence of raw readings to the sensor_readings table
+ */
+@Data
+@ConfigurationProperties(prefix = "app.readings")
+public class ReadingPersistenceProperties {
+
+    private boolean enabled = true;
+
+    /** Readings buffered in memory before the overflow policy applies */
+    private int queueCapacity = 100_000;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /** How long BLOCK waits for space before dropping the new reading */
+    private Duration blockTimeout = Duration.ofMillis(50);
+
+    /** SAMPLE keeps one in this many readings once the queue passes the threshold */
+    private int sampleRate = 10;
+
+    /** Queue fill ratio at which SAMPLE starts thinning readings */
+    private double sampleThreshold = 0.8;
+
+    /** Flush as soon as this many readings are queued */
+    private int batchSize = 5000;
+
+    /** Flush at least this often when readings are queued */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /** Attempts per batch before it is dropped */
+    private int maxRetries = 3;
+
+    private Journal journal = new Journal();
+
+    public enum OverflowPolicy {
+        /** Wait up to blockTimeout for space; back-pressures the caller */
+        BLOCK,
+        /** Overwrite the oldest queued reading */
+        DROP_OLDEST,
+        /** Thin incoming readings once the queue is filling up, then drop oldest */
+        SAMPLE
+    }
+
+    /**
+     * On-disk journal between the queue and the database, so readings survive database outages and restarts
+     */
+    @Data
+    public static class Journal {
+
+        private boolean enabled = false;
+
+        private Path directory = Path.of("data/readings-journal");
+
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /** New readings are dropped while this much is waiting to be written */
+        private DataSize maxSize = DataSize.ofGigabytes(4);
+
+        /** Appended readings are forced to disk at least this often */
+        private Duration fsyncInterval = Duration.ofMillis(200);
+
+        /** Longest wait between attempts while the database is unavailable */
+        private Duration maxRetryBackoff = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,33 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Automatic recovery of sessions whose Phidget server was lost
+ */
+@Data
+@ConfigurationProperties(prefix = "app.reconnect")
+public class ReconnectProperties {
+
+    private boolean enabled = true;
+
+    /** How often sessions are checked for a lost server */
+    private Duration checkInterval = Duration.ofSeconds(1);
+
+    /** Share of a session's channels that must be detached to suspect the server was lost */
+    private double detachStormRatio = 0.8;
+
+    /** Sessions with fewer channels are only recovered on a server removed event */
+    private int detachStormMinChannels = 2;
+
+    /** How long a detach storm must last before reconnecting, giving the library time to recover by itself */
+    private Duration detachStormGrace = Duration.ofSeconds(5);
+
+    /** Backoff before the second attempt; doubles per failed attempt */
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    private Duration maxBackoff = Duration.ofSeconds(30);
+}
@@ -0,0 +1,21 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Sizing of the pipeline between Phidget callbacks and sensor listeners
+ */
+@Data
+@ConfigurationProperties(prefix = "app.dispatch")
+public class SensorDispatchProperties {
+
+    /** Number of consumer threads; every sensor is always handled by the same one */
+    private int shards = 4;
+
+    /** Events buffered per shard before new data events are dropped, rounded up to a power of two */
+    private int ringCapacity = 8192;
+
+    /** Maximum events a consumer handles before checking for shutdown */
+    private int drainBatch = 256;
+}
@@ -0,0 +1,26 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Bulk export of persisted readings
+ */
+@Data
+@ConfigurationProperties(prefix = "app.export")
+public class SensorExportProperties {
+
+    /** Exports running at once; each holds one pooled connection for its whole duration */
+    private int maxConcurrent = 2;
+
+    /** Rows fetched per cursor round trip */
+    private int fetchSize = 5000;
+
+    /** Sensors in one export */
+    private int maxSensors = 1000;
+
+    /** Exports still running after this are cancelled by the database */
+    private Duration timeout = Duration.ofMinutes(30);
+}
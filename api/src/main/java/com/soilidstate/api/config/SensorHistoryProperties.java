@@ -0,0 +1,28 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sizing of the in-memory per-sensor history buffers
+ */
+@Data
+@ConfigurationProperties(prefix = "app.history")
+public class SensorHistoryProperties {
+
+    /** Readings kept per sensor when its type has no explicit capacity */
+    private int defaultCapacity = 3600;
+
+    /** Readings kept per sensor, keyed by sensor type (VOLTAGE, TEMPERATURE, ...) */
+    private Map<String, Integer> capacity = new HashMap<>();
+
+    /** Maximum number of points returned by a single history query */
+    private int maxQueryLimit = 10000;
+
+    public int capacityFor(String sensorType) {
+        return capacity.getOrDefault(sensorType.toUpperCase(), defaultCapacity);
+    }
+}
@@ -0,0 +1,26 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Limits for opening Phidget channels
+ */
+@Data
+@ConfigurationProperties(prefix = "app.registration")
+public class SensorRegistrationProperties {
+
+    /** Time a single channel open may wait for the device to attach */
+    private Duration openTimeout = Duration.ofSeconds(5);
+
+    /** Maximum number of channels being opened at once, across all requests */
+    private int maxConcurrentOpens = 8;
+
+    /** Overall time budget of a batch; channels not opened by then are reported as timed out */
+    private Duration batchDeadline = Duration.ofSeconds(30);
+
+    /** Maximum number of sensors in one batch request */
+    private int maxBatchSize = 64;
+}
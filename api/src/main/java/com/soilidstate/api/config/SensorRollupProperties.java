@@ -0,0 +1,23 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Minute, hour and day aggregates maintained from incoming readings
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rollups")
+public class SensorRollupProperties {
+
+    /** How often closed buckets are written */
+    private Duration flushInterval = Duration.ofSeconds(5);
+
+    /**
+     * Closed buckets kept while the database is unavailable; further ones are dropped.
+     * Readings of a dropped minute or hour bucket are still in the next coarser one.
+     */
+    private int maxPending = 100_000;
+}
@@ -0,0 +1,23 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Shared, pre-serialized snapshots of the latest-data endpoint
+ */
+@Data
+@ConfigurationProperties(prefix = "app.snapshot")
+public class SensorSnapshotProperties {
+
+    /** A snapshot is rebuilt at most this often, however fast the data changes; it can be this stale */
+    private Duration minRebuildInterval = Duration.ofMillis(250);
+
+    /** Snapshots of users that stopped polling are dropped after this */
+    private Duration idleTimeout = Duration.ofMinutes(5);
+
+    /** Maximum number of cached snapshots (one per user and connection filter) */
+    private long maxEntries = 10_000;
+}
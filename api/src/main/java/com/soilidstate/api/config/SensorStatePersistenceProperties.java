@@ -0,0 +1,22 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Coalesced persistence of the latest value and attach state to registered_sensors
+ */
+@Data
+@ConfigurationProperties(prefix = "app.sensor-state")
+public class SensorStatePersistenceProperties {
+
+    private boolean enabled = true;
+
+    /** How often changed sensors are written; each sensor is written at most once per interval */
+    private Duration flushInterval = Duration.ofSeconds(5);
+
+    /** Sensors per UPDATE statement */
+    private int batchSize = 1000;
+}
@@ -0,0 +1,23 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Limits for the Server-Sent Events sensor stream
+ */
+@Data
+@ConfigurationProperties(prefix = "app.stream")
+public class SensorStreamProperties {
+
+    /** Maximum number of concurrently open streams */
+    private int maxSubscribers = 256;
+
+    /** Maximum number of distinct sensors buffered for a single slow client */
+    private int maxPendingPerClient = 1024;
+
+    /** Idle timeout after which the emitter is completed by the container */
+    private Duration timeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,35 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Topology and behaviour of the simulated sensor source ({@code app.sensor-source=simulated})
+ */
+@Data
+@ConfigurationProperties(prefix = "app.simulator")
+public class SimulatorProperties {
+
+    /** Hubs per server; valid hub ports are 0 to hubs - 1 */
+    private int hubs = 100;
+
+    /** Channels per hub; valid channels are 0 to channelsPerHub - 1 */
+    private int channelsPerHub = 100;
+
+    /** Event interval of channels registered without a data interval */
+    private Duration defaultDataInterval = Duration.ofMillis(250);
+
+    /** Resolution of the generator; intervals shorter than this are rounded up */
+    private Duration tick = Duration.ofMillis(10);
+
+    /** Emulated time for a channel open to attach */
+    private Duration openLatency = Duration.ofMillis(5);
+
+    /** Mean time between detaches of an attached channel; zero disables churn */
+    private Duration meanTimeBetweenDetaches = Duration.ofMinutes(10);
+
+    /** Time a detached channel stays detached */
+    private Duration detachDuration = Duration.ofSeconds(2);
+}
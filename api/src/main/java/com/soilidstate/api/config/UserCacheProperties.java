@@ -0,0 +1,20 @@
+package com.soilidstate.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * In-memory cache of users resolved from their OAuth2 subject
+ */
+@Data
+@ConfigurationProperties(prefix = "app.user-cache")
+public class UserCacheProperties {
+
+    /** Users kept before the least recently used are evicted */
+    private long maxSize = 10_000;
+
+    /** How long a resolved user is served from memory; profile changes show up after this */
+    private Duration ttl = Duration.ofMinutes(10);
+}
@@ -0,0 +1,76 @@
+package com.soilidstate.api.controller;
+
+import com.soilidstate.api.dto.AlertRuleRequest;
+import com.soilidstate.api.dto.AlertRuleResponse;
+import com.soilidstate.api.dto.ErrorResponse;
+import com.soilidstate.api.service.AlertRuleService;
+import com.soilidstate.api.service.AlertStreamService;
+import com.soilidstate.api.service.UserService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/alerts")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AlertController {
+
+    private final AlertRuleService alertRuleService;
+    private final AlertStreamService alertStreamService;
+    private final UserService userService;
+
+    @GetMapping("/rules")
+    public ResponseEntity<List<AlertRuleResponse>> getRules(Authentication authentication) {
+        return ResponseEntity.ok(alertRuleService.getRules(userId(authentication)));
+    }
+
+    @PostMapping("/rules")
+    public ResponseEntity<?> createRule(@Valid @RequestBody AlertRuleRequest request, Authentication authentication) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(alertRuleService.createRule(userId(authentication), request));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("SENSOR_NOT_FOUND", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_RULE", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/rules/{ruleId}")
+    public ResponseEntity<?> deleteRule(@PathVariable Long ruleId, Authentication authentication) {
+        if (!alertRuleService.deleteRule(userId(authentication), ruleId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("RULE_NOT_FOUND", "Alert rule not found: " + ruleId));
+        }
+        return ResponseEntity.ok(Map.of("message", "Alert rule deleted"));
+    }
+
+    /**
+     * Stream the user's alert notifications as Server-Sent Events
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<?> streamAlerts(Authentication authentication) {
+        try {
+            return ResponseEntity.ok(alertStreamService.subscribe(userId(authentication)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new ErrorResponse("TOO_MANY_STREAMS", e.getMessage()));
+        }
+    }
+
+    private Long userId(Authentication authentication) {
+        return userService.getOrCreateUser(authentication).getId();
+    }
+}
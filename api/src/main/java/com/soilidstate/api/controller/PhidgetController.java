@@ -1,16 +1,37 @@
 package com.soilidstate.api.controller;
 
 import com.phidget22.PhidgetException;
+import com.soilidstate.api.config.JacksonConfig;
+import com.soilidstate.api.config.SensorRegistrationProperties;
 import com.soilidstate.api.dto.*;
 import com.soilidstate.api.service.PhidgetService;
+import com.soilidstate.api.service.RollupResolution;
+import com.soilidstate.api.service.SensorEventDispatcher;
+import com.soilidstate.api.service.SensorFilter;
+import com.soilidstate.api.service.SensorFrameEncoder;
+import com.soilidstate.api.service.SensorHistoryService;
+import com.soilidstate.api.service.SensorRollupService;
+import com.soilidstate.api.service.SensorSlot;
+import com.soilidstate.api.service.SensorSnapshotCache;
+import com.soilidstate.api.service.SensorStreamService;
+import com.soilidstate.api.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -19,12 +40,23 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class PhidgetController {
 
+    private static final Set<String> SENSOR_STATUS_FIELDS = propertiesOf(SensorStatusResponse.class);
+    private static final Set<String> SENSOR_DATA_FIELDS = propertiesOf(SensorDataResponse.class);
+
     private final PhidgetService phidgetService;
+    private final SensorStreamService sensorStreamService;
+    private final SensorHistoryService sensorHistoryService;
+    private final SensorRollupService sensorRollupService;
+    private final UserService userService;
+    private final SensorRegistrationProperties registrationProperties;
+    private final SensorEventDispatcher sensorEventDispatcher;
+    private final SensorFrameEncoder sensorFrameEncoder;
+    private final SensorSnapshotCache sensorSnapshotCache;
 
     @PostMapping("/connect")
-    public ResponseEntity<?> connect(@Valid @RequestBody ConnectionRequest request) {
+    public ResponseEntity<?> connect(@Valid @RequestBody ConnectionRequest request, Authentication authentication) {
         try {
-            ConnectionStatusResponse response = phidgetService.connect(request);
+            ConnectionStatusResponse response = phidgetService.connect(userService.getOrCreateUser(authentication), request);
             return ResponseEntity.ok(response);
         } catch (PhidgetException e) {
             log.error("Connection failed", e);
@@ -34,9 +66,9 @@ public class PhidgetController {
     }
 
     @PostMapping("/disconnect")
-    public ResponseEntity<?> disconnect() {
+    public ResponseEntity<?> disconnect(@RequestParam(required = false) Long connectionId, Authentication authentication) {
         try {
-            phidgetService.disconnect();
+            phidgetService.disconnect(userId(authentication), connectionId);
             return ResponseEntity.ok(Map.of("message", "Disconnected successfully"));
         } catch (PhidgetException e) {
             log.error("Disconnect failed", e);
@@ -46,18 +78,32 @@ public class PhidgetController {
     }
 
     @GetMapping("/status")
-    public ResponseEntity<ConnectionStatusResponse> getStatus() {
-        return ResponseEntity.ok(phidgetService.getConnectionStatus());
+    public ResponseEntity<ConnectionStatusResponse> getStatus(@RequestParam(required = false) Long connectionId,
+                                                              Authentication authentication) {
+        return ResponseEntity.ok(phidgetService.getConnectionStatus(userId(authentication), connectionId));
+    }
+
+    /**
+     * Get all open connections of the current user
+     */
+    @GetMapping("/connections")
+    public ResponseEntity<List<ConnectionStatusResponse>> getConnections(Authentication authentication) {
+        return ResponseEntity.ok(phidgetService.getConnections(userId(authentication)));
     }
 
     @PostMapping("/sensors/register")
-    public ResponseEntity<?> registerSensor(@Valid @RequestBody SensorRegistrationRequest request) {
+    public ResponseEntity<?> registerSensor(@Valid @RequestBody SensorRegistrationRequest request,
+                                            @RequestParam(required = false) Long connectionId,
+                                            Authentication authentication) {
         try {
-            SensorStatusResponse response = phidgetService.registerSensor(request);
+            SensorStatusResponse response = phidgetService.registerSensor(userId(authentication), connectionId, request);
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
         } catch (IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new ErrorResponse("NOT_CONNECTED", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("INVALID_SENSOR", e.getMessage()));
         } catch (PhidgetException e) {
             log.error("Sensor registration failed", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -65,10 +111,77 @@ public class PhidgetController {
         }
     }
 
+    /**
+     * Register several sensors at once. Channels are opened concurrently within a
+     * deadline and every sensor gets its own result.
+     */
+    @PostMapping("/sensors/register/batch")
+    public ResponseEntity<?> registerSensors(@Valid @RequestBody SensorBatchRegistrationRequest request,
+                                             @RequestParam(required = false) Long connectionId,
+                                             Authentication authentication) {
+        if (request.getSensors().size() > registrationProperties.getMaxBatchSize()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("BATCH_TOO_LARGE",
+                            "At most " + registrationProperties.getMaxBatchSize() + " sensors per batch"));
+        }
+        try {
+            SensorBatchRegistrationResponse response =
+                    phidgetService.registerSensors(userId(authentication), connectionId, request.getSensors());
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("NOT_CONNECTED", e.getMessage()));
+        }
+    }
+
+    /**
+     * Register a virtual sensor computed from other sensors of the connection by an
+     * expression. It is read, filtered, streamed and unregistered like any other sensor.
+     */
+    @PostMapping("/sensors/virtual")
+    public ResponseEntity<?> registerVirtualSensor(@Valid @RequestBody VirtualSensorRequest request,
+                                                   @RequestParam(required = false) Long connectionId,
+                                                   Authentication authentication) {
+        try {
+            SensorStatusResponse response = phidgetService.registerVirtualSensor(userId(authentication), connectionId, request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("NOT_CONNECTED", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("INVALID_EXPRESSION", e.getMessage()));
+        }
+    }
+
+    /**
+     * Change data interval, change trigger or deadband of a registered sensor
+     */
+    @PatchMapping("/sensors/{sensorId}")
+    public ResponseEntity<?> updateSensorSettings(@PathVariable String sensorId,
+                                                  @Valid @RequestBody SensorSettingsRequest request,
+                                                  Authentication authentication) {
+        try {
+            SensorStatusResponse response = phidgetService.updateSensorSettings(userId(authentication), sensorId, request);
+            if (response == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ErrorResponse("SENSOR_NOT_FOUND", "Sensor with ID " + sensorId + " not found"));
+            }
+            return ResponseEntity.ok(response);
+        } catch (PhidgetException e) {
+            log.error("Sensor settings update failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("SETTINGS_UPDATE_FAILED", e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/sensors/{sensorId}")
-    public ResponseEntity<?> unregisterSensor(@PathVariable String sensorId) {
+    public ResponseEntity<?> unregisterSensor(@PathVariable String sensorId, Authentication authentication) {
         try {
-            phidgetService.unregisterSensor(sensorId);
+            if (!phidgetService.unregisterSensor(userId(authentication), sensorId)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ErrorResponse("SENSOR_NOT_FOUND", "Sensor with ID " + sensorId + " not found"));
+            }
             return ResponseEntity.ok(Map.of("message", "Sensor unregistered successfully"));
         } catch (PhidgetException e) {
             log.error("Sensor unregistration failed", e);
@@ -77,26 +190,126 @@ public class PhidgetController {
         }
     }
 
+    /**
+     * List the user's sensors, optionally filtered and limited to some {@code fields}
+     */
     @GetMapping("/sensors")
-    public ResponseEntity<?> getAllSensors() {
+    public ResponseEntity<?> getAllSensors(@RequestParam(required = false) Long connectionId,
+                                           @RequestParam(required = false) String type,
+                                           @RequestParam(required = false) Integer hubPort,
+                                           @RequestParam(required = false) Integer channel,
+                                           @RequestParam(required = false) Boolean attached,
+                                           @RequestParam(required = false) String namePrefix,
+                                           @RequestParam(required = false) String fields,
+                                           Authentication authentication) {
+        SensorFilter filter;
+        Set<String> projection;
         try {
-            Map<String, SensorStatusResponse> sensors = phidgetService.getAllSensors();
-            return ResponseEntity.ok(sensors);
-        } catch (PhidgetException e) {
-            log.error("Failed to get sensors", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new ErrorResponse("GET_SENSORS_FAILED", e.getMessage()));
+            filter = SensorFilter.of(type, hubPort, channel, attached, namePrefix);
+            projection = parseFields(fields, SENSOR_STATUS_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("INVALID_FILTER", e.getMessage()));
         }
+
+        Map<String, SensorStatusResponse> sensors = phidgetService.getAllSensors(userId(authentication), connectionId, filter);
+        return ResponseEntity.ok(projection != null ? JacksonConfig.project(sensors, projection) : sensors);
     }
 
     /**
-     * NEW: Get latest sensor data for all sensors
+     * NEW: Get latest sensor data for all sensors.
+     * With {@code since}, only sensors changed after that version are returned.
+     * Answers 304 when the client's ETag matches the version of the caller's own sensors,
+     * so other users' readings don't make an unchanged dashboard download again.
+     * Clients that accept {@link SensorFrameEncoder#MEDIA_TYPE_VALUE} get a compact binary frame.
+     * Sensors can be filtered like {@code GET /sensors}; {@code fields} applies to JSON only.
      */
     @GetMapping("/sensors/data")
-    public ResponseEntity<?> getAllSensorData() {
+    public ResponseEntity<?> getAllSensorData(@RequestParam(required = false) Long since,
+                                              @RequestParam(required = false) Long connectionId,
+                                              @RequestParam(required = false) String type,
+                                              @RequestParam(required = false) Integer hubPort,
+                                              @RequestParam(required = false) Integer channel,
+                                              @RequestParam(required = false) Boolean attached,
+                                              @RequestParam(required = false) String namePrefix,
+                                              @RequestParam(required = false) String fields,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              @RequestHeader(value = SensorFrameEncoder.DICTIONARY_HEADER, required = false) String dictionary,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                              Authentication authentication) {
+        SensorFilter filter;
+        Set<String> projection;
+        try {
+            filter = SensorFilter.of(type, hubPort, channel, attached, namePrefix);
+            projection = parseFields(fields, SENSOR_DATA_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("INVALID_FILTER", e.getMessage()));
+        }
+
         try {
-            Map<String, SensorDataResponse> sensorData = phidgetService.getLatestSensorData();
-            return ResponseEntity.ok(sensorData);
+            Long userId = userId(authentication);
+            // Taken before reading the data, so the body is at least as new as its ETag
+            long current = phidgetService.getUserDataVersion(userId, connectionId);
+            if (matchesETag(ifNoneMatch, current)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(toETag(current))
+                        .build();
+            }
+
+            if (SensorFrameEncoder.isAccepted(accept)) {
+                // Collect the dictionary first; sensors registered in between are appended by the encoder
+                List<SensorSlot> slots = phidgetService.getSensorSlots(userId, connectionId, filter);
+                long version;
+                SensorFrameEncoder.Frame frame;
+                if (since != null) {
+                    SensorDataDeltaResponse delta = phidgetService.getSensorDataSince(userId, connectionId, since, filter);
+                    version = delta.getVersion();
+                    frame = sensorFrameEncoder.encodeData(slots, delta.getSensors().values(),
+                            version, delta.isFull(), dictionary);
+                } else {
+                    version = phidgetService.getPublishedVersion();
+                    frame = sensorFrameEncoder.encodeData(slots,
+                            phidgetService.getLatestSensorData(userId, connectionId, filter).values(), version, true, dictionary);
+                }
+                return ResponseEntity.ok()
+                        .eTag(toETag(current))
+                        .varyBy(HttpHeaders.ACCEPT, SensorFrameEncoder.DICTIONARY_HEADER)
+                        .contentType(SensorFrameEncoder.MEDIA_TYPE)
+                        .header(SensorFrameEncoder.DICTIONARY_HEADER, frame.dictionaryVersion())
+                        .body(frame.bytes());
+            }
+
+            if (since != null) {
+                SensorDataDeltaResponse delta = phidgetService.getSensorDataSince(userId, connectionId, since, filter);
+                return ResponseEntity.ok()
+                        .eTag(toETag(current))
+                        .body(projection != null ? JacksonConfig.project(delta, projection) : delta);
+            }
+
+            if (filter.isEmpty() && projection == null) {
+                // The common dashboard poll: write out the shared pre-serialized snapshot
+                SensorSnapshotCache.Snapshot snapshot = sensorSnapshotCache.get(userId, connectionId);
+                String eTag = toETag(snapshot.version());
+                if (matchesETag(ifNoneMatch, snapshot.version())) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                            .eTag(eTag)
+                            .build();
+                }
+                ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                        .eTag(eTag)
+                        .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                        .contentType(MediaType.APPLICATION_JSON);
+                return acceptsGzip(acceptEncoding)
+                        ? ok.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip())
+                        : ok.body(snapshot.json());
+            }
+
+            Map<String, SensorDataResponse> sensorData = phidgetService.getLatestSensorData(userId, connectionId, filter);
+            return ResponseEntity.ok()
+                    .eTag(toETag(current))
+                    .body(projection != null ? JacksonConfig.project(sensorData, projection) : sensorData);
         } catch (Exception e) {
             log.error("Failed to get sensor data", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -108,9 +321,9 @@ public class PhidgetController {
      * NEW: Get latest data for a specific sensor
      */
     @GetMapping("/sensors/{sensorId}/data")
-    public ResponseEntity<?> getSensorData(@PathVariable String sensorId) {
+    public ResponseEntity<?> getSensorData(@PathVariable String sensorId, Authentication authentication) {
         try {
-            SensorDataResponse data = phidgetService.getSensorData(sensorId);
+            SensorDataResponse data = phidgetService.getSensorData(userId(authentication), sensorId);
             if (data == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(new ErrorResponse("SENSOR_NOT_FOUND", "Sensor with ID " + sensorId + " not found"));
@@ -122,4 +335,161 @@ public class PhidgetController {
                     .body(new ErrorResponse("GET_SENSOR_DATA_FAILED", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Get buffered readings for a sensor between from and to (epoch millis),
+     * as JSON or as a compact binary frame
+     */
+    @GetMapping("/sensors/{sensorId}/history")
+    public ResponseEntity<?> getSensorHistory(@PathVariable String sensorId,
+                                              @RequestParam(required = false) Long from,
+                                              @RequestParam(required = false) Long to,
+                                              @RequestParam(defaultValue = "1000") int limit,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              Authentication authentication) {
+        if (!phidgetService.isRegistered(userId(authentication), sensorId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("SENSOR_NOT_FOUND", "Sensor with ID " + sensorId + " not found"));
+        }
+        SensorHistoryResponse history = sensorHistoryService.getHistory(sensorId,
+                from != null ? from : 0L,
+                to != null ? to : Long.MAX_VALUE,
+                limit);
+        if (SensorFrameEncoder.isAccepted(accept)) {
+            return ResponseEntity.ok()
+                    .contentType(SensorFrameEncoder.MEDIA_TYPE)
+                    .body(sensorFrameEncoder.encodeHistory(history));
+        }
+        return ResponseEntity.ok(history);
+    }
+
+    /**
+     * Get minute, hour or day aggregates for a sensor between from and to (epoch millis).
+     * Returns the latest {@code limit} buckets of the range, oldest first.
+     */
+    @GetMapping("/sensors/{sensorId}/aggregates")
+    public ResponseEntity<?> getSensorAggregates(@PathVariable String sensorId,
+                                                 @RequestParam(defaultValue = "minute") String resolution,
+                                                 @RequestParam(required = false) Long from,
+                                                 @RequestParam(required = false) Long to,
+                                                 @RequestParam(defaultValue = "1440") int limit,
+                                                 Authentication authentication) {
+        if (!phidgetService.isRegistered(userId(authentication), sensorId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("SENSOR_NOT_FOUND", "Sensor with ID " + sensorId + " not found"));
+        }
+        try {
+            SensorAggregateResponse aggregates = sensorRollupService.getAggregates(sensorId,
+                    RollupResolution.parse(resolution),
+                    from != null ? from : 0L,
+                    to != null ? to : System.currentTimeMillis(),
+                    limit);
+            return ResponseEntity.ok(aggregates);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorResponse("INVALID_RESOLUTION", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to get aggregates for sensor: {}", sensorId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("GET_AGGREGATES_FAILED", e.getMessage()));
+        }
+    }
+
+    /**
+     * Stream updates of the user's sensors as Server-Sent Events, optionally filtered
+     * by connection, type and hub port
+     */
+    @GetMapping("/sensors/stream")
+    public ResponseEntity<?> streamSensorData(@RequestParam(required = false) Long connectionId,
+                                              @RequestParam(required = false) String type,
+                                              @RequestParam(required = false) Integer hubPort,
+                                              Authentication authentication) {
+        try {
+            Long userId = userId(authentication);
+            SseEmitter emitter = sensorStreamService.subscribe(userId, connectionId, type, hubPort,
+                    phidgetService.getLatestSensorData(userId, connectionId, SensorFilter.NONE).values());
+            return ResponseEntity.ok(emitter);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new ErrorResponse("TOO_MANY_STREAMS", e.getMessage()));
+        }
+    }
+
+    /**
+     * Queue depth and drop counters of the event dispatch pipeline
+     */
+    @GetMapping("/dispatch/stats")
+    public ResponseEntity<DispatchStatsResponse> getDispatchStats() {
+        return ResponseEntity.ok(sensorEventDispatcher.getStats());
+    }
+
+    private Long userId(Authentication authentication) {
+        return userService.getOrCreateUser(authentication).getId();
+    }
+
+    /**
+     * Weak, since the same data version is served as identity or gzip JSON and as a binary frame
+     */
+    private static String toETag(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    /**
+     * Weak comparison of an If-None-Match list against the ETag of {@code version}
+     */
+    private static boolean matchesETag(String ifNoneMatch, long version) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = "\"" + version + "\"";
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a comma-separated {@code fields} parameter, or null for all fields
+     */
+    private static Set<String> parseFields(String fields, Set<String> known) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) continue;
+            if (!known.contains(name)) {
+                throw new IllegalArgumentException("Unknown field '" + name + "', expected any of " + known);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    private static Set<String> propertiesOf(Class<?> type) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                names.add(field.getName());
+            }
+        }
+        return Set.copyOf(names);
+    }
+}
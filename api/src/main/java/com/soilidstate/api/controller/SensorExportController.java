@@ -0,0 +1,172 @@
+package com.soilidstate.api.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soilidstate.api.dto.ErrorResponse;
+import com.soilidstate.api.service.ExportFormat;
+import com.soilidstate.api.service.SensorExportService;
+import com.soilidstate.api.service.SensorExportService.ExportedSensor;
+import com.soilidstate.api.service.SensorFilter;
+import com.soilidstate.api.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk export of persisted readings. Kept apart from {@link PhidgetController} because
+ * streaming bodies need a typed {@code ResponseEntity<StreamingResponseBody>}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/phidget")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class SensorExportController {
+
+    private static final int GZIP_BUFFER = 64 * 1024;
+    private static final String RETRY_AFTER_SECONDS = "30";
+    private static final Object EXPORT_PERMIT = new Object();
+
+    private final SensorExportService sensorExportService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Stream the persisted readings of the user's sensors in [from, to) (epoch millis) as
+     * CSV or NDJSON, gzip compressed if the client accepts it. Exports all registered sensors
+     * of the connection, or of all the user's connections, whether connected or not,
+     * optionally narrowed by type, hub port or a comma-separated list of ids.
+     */
+    @GetMapping("/sensors/export")
+    public ResponseEntity<StreamingResponseBody> exportReadings(@RequestParam(required = false) Long from,
+                                                                @RequestParam(required = false) Long to,
+                                                                @RequestParam(required = false) List<String> sensors,
+                                                                @RequestParam(required = false) Long connectionId,
+                                                                @RequestParam(required = false) String type,
+                                                                @RequestParam(required = false) Integer hubPort,
+                                                                @RequestParam(defaultValue = "csv") String format,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                                NativeWebRequest webRequest,
+                                                                Authentication authentication) {
+        long start = from != null ? from : 0L;
+        long end = to != null ? to : System.currentTimeMillis();
+        if (start >= end) {
+            return error(HttpStatus.BAD_REQUEST, "INVALID_RANGE", "from must be before to");
+        }
+
+        ExportFormat exportFormat;
+        SensorFilter filter;
+        try {
+            exportFormat = ExportFormat.parse(format);
+            filter = SensorFilter.of(type, hubPort, null, null, null);
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, "INVALID_FILTER", e.getMessage());
+        }
+
+        List<ExportedSensor> found = sensorExportService.findSensors(userService.getOrCreateUser(authentication).getId(),
+                connectionId, filter);
+        List<ExportedSensor> selected;
+        if (sensors == null || sensors.isEmpty()) {
+            selected = found;
+        } else {
+            Map<String, ExportedSensor> byId = new HashMap<>();
+            found.forEach(sensor -> byId.put(sensor.sensorId(), sensor));
+            selected = new ArrayList<>(sensors.size());
+            for (String sensorId : sensors) {
+                ExportedSensor sensor = byId.get(sensorId);
+                if (sensor == null) {
+                    return error(HttpStatus.NOT_FOUND, "SENSOR_NOT_FOUND", "Sensor with ID " + sensorId + " not found");
+                }
+                selected.add(sensor);
+            }
+        }
+        if (selected.size() > sensorExportService.getMaxSensors()) {
+            return error(HttpStatus.BAD_REQUEST, "TOO_MANY_SENSORS",
+                    "At most " + sensorExportService.getMaxSensors() + " sensors per export");
+        }
+
+        if (!sensorExportService.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json(new ErrorResponse("TOO_MANY_EXPORTS", "Too many exports running, try again later")));
+        }
+
+        // Released once, by the body or, if the body never runs or fails to finish, when async processing ends
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                sensorExportService.release();
+            }
+        };
+        WebAsyncUtils.getAsyncManager(webRequest).registerCallableInterceptor(EXPORT_PERMIT,
+                new CallableProcessingInterceptor() {
+                    // Also called after timeouts, errors and clients going away
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        release.run();
+                    }
+                });
+
+        boolean gzip = PhidgetController.acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            try {
+                if (gzip) {
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, GZIP_BUFFER);
+                    sensorExportService.export(selected, start, end, exportFormat, compressed);
+                    compressed.finish();
+                } else {
+                    sensorExportService.export(selected, start, end, exportFormat, out);
+                }
+            } finally {
+                release.run();
+            }
+        };
+
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.mediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("readings-" + start + "-" + end + "." + exportFormat.extension())
+                        .build().toString())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            ok.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return ok.body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> error(HttpStatus status, String code, String message) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json(new ErrorResponse(code, message)));
+    }
+
+    private StreamingResponseBody json(ErrorResponse error) {
+        return (OutputStream out) -> {
+            try {
+                objectMapper.writeValue(out, error);
+            } catch (IOException e) {
+                log.debug("Failed to write export error: {}", e.getMessage());
+            }
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.soilidstate.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+@Data
+public class AlertEvent {
+    private long ruleId;
+    private String ruleName;
+    @JsonIgnore
+    private long userId;
+    private String sensorId;
+    private String sensorName;
+    private String kind;
+    /** FIRING or RESOLVED */
+    private String state;
+    private Double value;
+    private Double threshold;
+    private long timestamp;
+    private String message;
+}
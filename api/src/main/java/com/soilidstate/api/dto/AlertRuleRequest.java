@@ -0,0 +1,29 @@
+package com.soilidstate.api.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+
+@Data
+public class AlertRuleRequest {
+    @NotBlank(message = "Sensor ID is required")
+    private String sensorId;
+
+    private String name;
+
+    @NotBlank(message = "Rule kind is required")
+    private String kind; // ABOVE, BELOW, RATE_OF_CHANGE, STALE
+
+    /** Value for ABOVE and BELOW, change per minute for RATE_OF_CHANGE */
+    private Double threshold;
+
+    @PositiveOrZero(message = "Hysteresis must not be negative")
+    private Double hysteresis;
+
+    /** STALE: silence before firing; RATE_OF_CHANGE: minimum window of the rate */
+    @PositiveOrZero(message = "Duration must not be negative")
+    private Long durationMs;
+
+    @PositiveOrZero(message = "Cooldown must not be negative")
+    private Long cooldownMs;
+}
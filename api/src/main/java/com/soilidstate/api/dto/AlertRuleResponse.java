@@ -0,0 +1,18 @@
+package com.soilidstate.api.dto;
+
+import lombok.Data;
+
+@Data
+public class AlertRuleResponse {
+    private Long id;
+    private String sensorId;
+    private String name;
+    private String kind;
+    private Double threshold;
+    private Double hysteresis;
+    private Long durationMs;
+    private Long cooldownMs;
+    private boolean enabled;
+    /** Whether the rule is currently firing */
+    private boolean active;
+}
@@ -4,9 +4,19 @@ import lombok.Data;
 
 @Data
 public class ConnectionStatusResponse {
+    private Long connectionId;
     private boolean connected;
+    /** CONNECTING, CONNECTED, DRAINING or DISCONNECTED */
+    private String state;
+    /** The server was lost and the connection's channels are being reopened; state stays CONNECTED */
+    private boolean reconnecting;
     private String serverAddress;
     private Integer port;
     private String message;
     private Long connectedAt;
+    private Integer restoredSensors;
+    /** Failed reconnect attempts since the server was lost, while reconnecting */
+    private Integer reconnectAttempts;
+    /** When the server was found to be lost, while reconnecting */
+    private Long lostAt;
 }
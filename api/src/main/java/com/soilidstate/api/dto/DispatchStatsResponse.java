@@ -0,0 +1,12 @@
+package com.soilidstate.api.dto;
+
+import lombok.Data;
+
+@Data
+public class DispatchStatsResponse {
+    private int shards;
+    private int capacityPerShard;
+    private int[] depth; // queued events per shard
+    private long dispatched;
+    private long dropped;
+}
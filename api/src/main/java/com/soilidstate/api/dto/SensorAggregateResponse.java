@@ -0,0 +1,23 @@
+package com.soilidstate.api.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SensorAggregateResponse {
+    private String sensorId;
+    private String resolution;
+    private List<Bucket> buckets;
+
+    @Data
+    public static class Bucket {
+        private long bucketStart;
+        private double min;
+        private double max;
+        private double avg;
+        private long count;
+        private double first;
+        private double last;
+    }
+}
@@ -0,0 +1,13 @@
+package com.soilidstate.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SensorBatchRegistrationRequest {
+    @NotEmpty(message = "At least one sensor is required")
+    private List<@Valid SensorRegistrationRequest> sensors;
+}
@@ -0,0 +1,23 @@
+package com.soilidstate.api.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SensorBatchRegistrationResponse {
+    private int registered;
+    private int failed;
+    private List<Result> results;
+
+    @Data
+    public static class Result {
+        private int index; // position in the request
+        private String sensorType;
+        private Integer hubPort;
+        private Integer channel;
+        private String status; // REGISTERED, FAILED, TIMED_OUT
+        private SensorStatusResponse sensor;
+        private String error;
+    }
+}
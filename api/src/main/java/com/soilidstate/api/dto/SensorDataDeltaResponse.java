@@ -0,0 +1,14 @@
+package com.soilidstate.api.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class SensorDataDeltaResponse {
+    /** Pass back as {@code since} on the next poll */
+    private long version;
+    /** True when {@code sensors} is the complete set and the client should replace its state */
+    private boolean full;
+    private Map<String, SensorDataResponse> sensors;
+}
@@ -1,8 +1,11 @@
 package com.soilidstate.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.soilidstate.api.config.JacksonConfig;
 import lombok.Data;
 
 @Data
+@JsonFilter(JacksonConfig.FIELDS_FILTER)
 public class SensorDataResponse {
     private String sensorId;
     private String sensorType;
@@ -13,4 +16,5 @@ public class SensorDataResponse {
     private String unit;
     private Long timestamp;
     private boolean attached;
+    private long version;
 }
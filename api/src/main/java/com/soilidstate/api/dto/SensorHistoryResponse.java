@@ -0,0 +1,12 @@
+package com.soilidstate.api.dto;
+
+import lombok.Data;
+
+@Data
+public class SensorHistoryResponse {
+    private String sensorId;
+    private String unit;
+    private int count;
+    private long[] timestamps;
+    private double[] values;
+}
@@ -0,0 +1,21 @@
+package com.soilidstate.api.dto;
+
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+
+@Data
+public class SensorSettingsRequest {
+    @Positive(message = "Data interval must be positive")
+    private Integer dataInterval; // ms between device data events
+
+    @PositiveOrZero(message = "Change trigger must not be negative")
+    private Double changeTrigger; // minimum change before the device sends an event
+
+    @PositiveOrZero(message = "Deadband must not be negative")
+    private Double deadband; // server-side filter on top of the change trigger
+
+    @Pattern(regexp = "(?i)ABSOLUTE|PERCENT", message = "Deadband mode must be ABSOLUTE or PERCENT")
+    private String deadbandMode;
+}
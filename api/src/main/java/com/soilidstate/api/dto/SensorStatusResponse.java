@@ -1,8 +1,14 @@
 package com.soilidstate.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.soilidstate.api.config.JacksonConfig;
 import lombok.Data;
 
+import java.util.Map;
+
 @Data
+@JsonFilter(JacksonConfig.FIELDS_FILTER)
 public class SensorStatusResponse {
     private String sensorId;
     private String sensorType;
@@ -13,4 +19,13 @@ public class SensorStatusResponse {
     private Integer channel;
     private boolean attached;
     private String status;
+    private Integer dataInterval;
+    private Double changeTrigger;
+    private Double deadband;
+    private String deadbandMode;
+    /** Virtual sensors only: the expression and its input name to sensor id bindings */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String expression;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, String> inputs;
 }
@@ -0,0 +1,31 @@
+package com.soilidstate.api.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class VirtualSensorRequest {
+    @NotBlank(message = "Sensor name is required")
+    private String sensorName;
+
+    @Size(max = 20, message = "Unit must be at most 20 characters")
+    private String unit;
+
+    @NotBlank(message = "Expression is required")
+    private String expression; // e.g. curve(raw, 0, 0, 1.1, 10, 2.2, 50)
+
+    @NotEmpty(message = "Inputs are required")
+    private Map<String, String> inputs; // expression input name -> sensor id
+
+    @PositiveOrZero(message = "Deadband must not be negative")
+    private Double deadband;
+
+    @Pattern(regexp = "(?i)ABSOLUTE|PERCENT", message = "Deadband mode must be ABSOLUTE or PERCENT")
+    private String deadbandMode;
+}
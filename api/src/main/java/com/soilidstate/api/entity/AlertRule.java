@@ -0,0 +1,74 @@
+package com.soilidstate.api.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Alert Rule Entity
+@Entity
+@Table(name = "alert_rules", indexes = {
+        @Index(name = "idx_alert_rule_user", columnList = "user_id"),
+        @Index(name = "idx_alert_rule_sensor", columnList = "sensor_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AlertRule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "sensor_id", nullable = false)
+    private String sensorId; // phidget_sensor_id of the registered sensor
+
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    @Column(name = "kind", nullable = false)
+    private String kind; // ABOVE, BELOW, RATE_OF_CHANGE, STALE
+
+    @Column(name = "threshold")
+    private Double threshold;
+
+    @Column(name = "hysteresis", nullable = false)
+    @Builder.Default
+    private Double hysteresis = 0.0;
+
+    @Column(name = "duration_ms", nullable = false)
+    @Builder.Default
+    private Long durationMs = 0L;
+
+    @Column(name = "cooldown_ms", nullable = false)
+    @Builder.Default
+    private Long cooldownMs = 60_000L;
+
+    @Column(name = "enabled", nullable = false)
+    @Builder.Default
+    private Boolean enabled = true;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
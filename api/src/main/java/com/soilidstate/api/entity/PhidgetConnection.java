@@ -38,6 +38,10 @@ public class PhidgetConnection {
     @Column(name = "phidget_port")
     private Integer phidgetPort; // Port to connect to PhidgetSBC4
 
+    @Column(name = "requires_password", nullable = false)
+    @Builder.Default
+    private Boolean requiresPassword = false;
+
     @Column(name = "is_active")
     private Boolean isActive;
 
@@ -5,14 +5,17 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 // Registered Sensor Entity
 @Entity
 @Table(name = "registered_sensors", indexes = {
         @Index(name = "idx_sensor_connection", columnList = "connection_id"),
-        @Index(name = "idx_sensor_phidget_id", columnList = "phidget_sensor_id")
+        @Index(name = "idx_sensor_phidget_id", columnList = "phidget_sensor_id", unique = true)
 })
 @Data
 @NoArgsConstructor
@@ -28,7 +31,7 @@ public class RegisteredSensor {
     private PhidgetConnection connection;
 
     @Column(name = "phidget_sensor_id", nullable = false)
-    private String phidgetSensorId; // UUID from Phidget runtime
+    private String phidgetSensorId; // Stable sensor id, kept across restarts
 
     @Column(name = "sensor_type", nullable = false)
     private String sensorType;
@@ -45,6 +48,27 @@ public class RegisteredSensor {
     @Column(name = "serial_number")
     private Integer serialNumber;
 
+    @Column(name = "data_interval")
+    private Integer dataInterval;
+
+    @Column(name = "change_trigger")
+    private Double changeTrigger;
+
+    @Column(name = "deadband", nullable = false)
+    @Builder.Default
+    private Double deadband = 0.0;
+
+    @Column(name = "deadband_mode", nullable = false)
+    @Builder.Default
+    private String deadbandMode = "ABSOLUTE";
+
+    @Column(name = "expression")
+    private String expression; // VIRTUAL sensors only
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "expression_inputs")
+    private Map<String, String> expressionInputs; // input name -> phidget_sensor_id
+
     @Column(name = "is_attached")
     private Boolean isAttached;
 
@@ -0,0 +1,19 @@
+package com.soilidstate.api.repository;
+
+import com.soilidstate.api.entity.AlertRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AlertRuleRepository extends JpaRepository<AlertRule, Long> {
+    List<AlertRule> findByUserIdOrderByCreatedAt(Long userId);
+
+    Optional<AlertRule> findByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT r FROM AlertRule r JOIN FETCH r.user WHERE r.enabled = true")
+    List<AlertRule> findAllEnabledWithUser();
+}
@@ -20,4 +20,9 @@ public interface PhidgetConnectionRepository extends JpaRepository<PhidgetConnec
     Optional<PhidgetConnection> findActiveConnectionByUserId(@Param("userId") Long userId);
 
     List<PhidgetConnection> findByUserIdOrderByCreatedAtDesc(Long userId);
+
+    @Query("SELECT c FROM PhidgetConnection c JOIN FETCH c.user WHERE c.isActive = true")
+    List<PhidgetConnection> findAllActiveWithUser();
+
+    Optional<PhidgetConnection> findFirstByUserIdAndServerAddressAndServerPort(Long userId, String serverAddress, Integer serverPort);
 }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,5 +22,13 @@ public interface RegisteredSensorRepository extends JpaRepository<RegisteredSens
     @Query("SELECT s FROM RegisteredSensor s WHERE s.connection.id = :connectionId ORDER BY s.sensorName")
     List<RegisteredSensor> findByConnectionIdOrderBySensorName(@Param("connectionId") Long connectionId);
 
+    @Query("SELECT s FROM RegisteredSensor s WHERE s.connection.user.id = :userId ORDER BY s.sensorName")
+    List<RegisteredSensor> findByUserIdOrderBySensorName(@Param("userId") Long userId);
+
+    @Query("SELECT s FROM RegisteredSensor s WHERE s.connection.id = :connectionId AND s.connection.user.id = :userId ORDER BY s.sensorName")
+    List<RegisteredSensor> findByUserIdAndConnectionIdOrderBySensorName(@Param("userId") Long userId,
+                                                                        @Param("connectionId") Long connectionId);
+
+    @Transactional
     void deleteByPhidgetSensorId(String phidgetSensorId);
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.AlertProperties;
+import com.soilidstate.api.dto.AlertEvent;
+import com.soilidstate.api.entity.AlertRule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates alert rules on the ingest path.
+ * <p>
+ * Rules are compiled into {@link AlertEvaluator}s and indexed by sensor id, so a
+ * reading costs one map lookup plus the rules of its own sensor; sensors without
+ * rules cost only the lookup. The per-sensor arrays are copied on rule changes and
+ * never modified, and evaluating allocates only when a rule changes state.
+ * Notifications are queued to a single notifier thread that calls the
+ * {@link AlertSink}s, so slow sinks never hold up ingest.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlertEngine implements SensorDataListener {
+
+    private static final AlertEvaluator[] NO_EVALUATORS = new AlertEvaluator[0];
+
+    private final AlertProperties properties;
+    private final List<AlertSink> sinks;
+    private final SensorMetrics metrics;
+
+    private final Map<String, AlertEvaluator[]> evaluatorsBySensor = new ConcurrentHashMap<>();
+    private final Map<Long, AlertEvaluator> evaluatorsByRule = new ConcurrentHashMap<>();
+    /** STALE evaluators, checked by the timer */
+    private volatile AlertEvaluator[] staleEvaluators = NO_EVALUATORS;
+
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private BlockingQueue<AlertEvent> notifications;
+    private Thread notifier;
+    private ScheduledExecutorService staleChecker;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        notifications = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        running = true;
+        notifier = Thread.ofPlatform()
+                .name("alert-notifier")
+                .daemon(true)
+                .start(this::runNotifier);
+
+        long interval = properties.getStaleCheckInterval().toMillis();
+        staleChecker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("alert-stale-check").daemon(true).factory());
+        staleChecker.scheduleWithFixedDelay(this::checkStale, interval, interval, TimeUnit.MILLISECONDS);
+
+        metrics.gauge("alert.rules", "Alert rules being evaluated", evaluatorsByRule::size);
+        metrics.functionCounter("alert.fired", "Alert rules that started firing", fired::get);
+        metrics.functionCounter("alert.suppressed", "Alert notifications suppressed by the rule cooldown", suppressed::get);
+        metrics.functionCounter("alert.dropped", "Alert notifications dropped because the queue was full", dropped::get);
+        log.info("Alert engine started with {} sinks", sinks.size());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        staleChecker.shutdownNow();
+        running = false;
+        notifier.interrupt();
+        notifier.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Compile and start evaluating a rule, replacing an earlier version of it
+     */
+    public synchronized void put(AlertRule rule) {
+        remove(rule.getId());
+        if (!Boolean.TRUE.equals(rule.getEnabled())) {
+            return;
+        }
+
+        AlertEvaluator evaluator = new AlertEvaluator(
+                rule.getId(),
+                rule.getUser().getId(),
+                rule.getSensorId(),
+                rule.getName(),
+                AlertRuleKind.from(rule.getKind()),
+                rule.getThreshold() != null ? rule.getThreshold() : 0,
+                rule.getHysteresis() != null ? rule.getHysteresis() : 0,
+                rule.getDurationMs() != null ? rule.getDurationMs() : 0,
+                rule.getCooldownMs() != null ? rule.getCooldownMs() : 0,
+                System.currentTimeMillis());
+
+        evaluatorsByRule.put(evaluator.ruleId, evaluator);
+        evaluatorsBySensor.merge(evaluator.sensorId, new AlertEvaluator[]{evaluator}, AlertEngine::concat);
+        if (evaluator.kind == AlertRuleKind.STALE) {
+            staleEvaluators = concat(staleEvaluators, new AlertEvaluator[]{evaluator});
+        }
+    }
+
+    /**
+     * Stop evaluating a rule. An active alert is dropped without a resolution.
+     */
+    public synchronized void remove(long ruleId) {
+        AlertEvaluator evaluator = evaluatorsByRule.remove(ruleId);
+        if (evaluator == null) {
+            return;
+        }
+        evaluatorsBySensor.computeIfPresent(evaluator.sensorId, (id, evaluators) -> {
+            AlertEvaluator[] rest = without(evaluators, evaluator);
+            return rest.length > 0 ? rest : null;
+        });
+        if (evaluator.kind == AlertRuleKind.STALE) {
+            staleEvaluators = without(staleEvaluators, evaluator);
+        }
+    }
+
+    public boolean isActive(long ruleId) {
+        AlertEvaluator evaluator = evaluatorsByRule.get(ruleId);
+        return evaluator != null && evaluator.isActive();
+    }
+
+    public int getRuleCount() {
+        return evaluatorsByRule.size();
+    }
+
+    @Override
+    public void onSensorData(SensorSlot slot, long timestamp, double value) {
+        AlertEvaluator[] evaluators = evaluatorsBySensor.get(slot.sensorId());
+        if (evaluators == null) {
+            return;
+        }
+        for (AlertEvaluator evaluator : evaluators) {
+            int transition = evaluator.onReading(slot.name(), value, timestamp);
+            if (transition != AlertEvaluator.NONE) {
+                notify(evaluator, transition, slot.name(), value, timestamp);
+            }
+        }
+    }
+
+    @Override
+    public void onSensorRemoved(String sensorId) {
+        // Closed or unregistered; silence is expected until it is opened again
+        AlertEvaluator[] evaluators = evaluatorsBySensor.get(sensorId);
+        if (evaluators != null) {
+            for (AlertEvaluator evaluator : evaluators) {
+                evaluator.pause();
+            }
+        }
+    }
+
+    private void checkStale() {
+        long now = System.currentTimeMillis();
+        for (AlertEvaluator evaluator : staleEvaluators) {
+            if (evaluator.checkStale(now) == AlertEvaluator.FIRED) {
+                notify(evaluator, AlertEvaluator.FIRED, evaluator.sensorName(), null, now);
+            }
+        }
+    }
+
+    private void notify(AlertEvaluator evaluator, int transition, String sensorName, Double value, long timestamp) {
+        if (transition == AlertEvaluator.FIRED) {
+            fired.incrementAndGet();
+        }
+        if (!evaluator.claimNotification(transition, timestamp)) {
+            if (transition == AlertEvaluator.FIRED) {
+                suppressed.incrementAndGet();
+            }
+            return;
+        }
+
+        AlertEvent event = new AlertEvent();
+        event.setRuleId(evaluator.ruleId);
+        event.setRuleName(evaluator.name);
+        event.setUserId(evaluator.userId);
+        event.setSensorId(evaluator.sensorId);
+        event.setSensorName(sensorName);
+        event.setKind(evaluator.kind.name());
+        event.setState(transition == AlertEvaluator.FIRED ? "FIRING" : "RESOLVED");
+        event.setValue(evaluator.kind == AlertRuleKind.RATE_OF_CHANGE ? Double.valueOf(evaluator.lastRate()) : value);
+        event.setThreshold(evaluator.kind == AlertRuleKind.STALE ? null : evaluator.threshold);
+        event.setTimestamp(timestamp);
+        event.setMessage(message(evaluator, transition, event.getValue()));
+
+        if (!notifications.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static String message(AlertEvaluator evaluator, int transition, Double value) {
+        String subject = "'" + evaluator.name + "' on sensor " + evaluator.sensorId;
+        if (transition == AlertEvaluator.RESOLVED) {
+            return subject + " resolved";
+        }
+        return subject + switch (evaluator.kind) {
+            case ABOVE -> ": " + value + " above " + evaluator.threshold;
+            case BELOW -> ": " + value + " below " + evaluator.threshold;
+            case RATE_OF_CHANGE -> ": changing " + value + " per minute, limit " + evaluator.threshold;
+            case STALE -> ": no reading for more than " + evaluator.durationMillis + " ms";
+        };
+    }
+
+    private void runNotifier() {
+        while (running || !notifications.isEmpty()) {
+            AlertEvent event;
+            try {
+                event = notifications.take();
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+                continue;
+            }
+            for (AlertSink sink : sinks) {
+                try {
+                    sink.send(event);
+                } catch (RuntimeException e) {
+                    log.error("Alert sink {} failed for rule {}", sink.getClass().getSimpleName(), event.getRuleId(), e);
+                }
+            }
+        }
+    }
+
+    private static AlertEvaluator[] concat(AlertEvaluator[] a, AlertEvaluator[] b) {
+        AlertEvaluator[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return all;
+    }
+
+    private static AlertEvaluator[] without(AlertEvaluator[] evaluators, AlertEvaluator removed) {
+        return Arrays.stream(evaluators)
+                .filter(e -> e != removed)
+                .toArray(AlertEvaluator[]::new);
+    }
+}
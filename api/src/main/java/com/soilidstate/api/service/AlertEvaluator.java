@@ -0,0 +1,176 @@
+package com.soilidstate.api.service;
+
+/**
+ * Compiled form of one alert rule with its evaluation state.
+ * <p>
+ * {@link #onReading} runs on the dispatch thread of the rule's sensor and works on
+ * primitive fields only. STALE rules are also checked by a timer; their transitions
+ * synchronize on the evaluator, which only happens when the state actually changes.
+ */
+final class AlertEvaluator {
+
+    static final int NONE = 0;
+    static final int FIRED = 1;
+    static final int RESOLVED = 2;
+
+    private static final double MILLIS_PER_MINUTE = 60_000.0;
+
+    final long ruleId;
+    final long userId;
+    final String sensorId;
+    final String name;
+    final AlertRuleKind kind;
+    final double threshold;
+    final double hysteresis;
+    final long durationMillis;
+    final long cooldownMillis;
+
+    private volatile boolean active;
+
+    // RATE_OF_CHANGE, dispatch thread only
+    private boolean hasReference;
+    private double referenceValue;
+    private long referenceTime;
+    private double lastRate;
+
+    // STALE
+    private volatile long lastSeen;
+    private volatile boolean paused;
+    private volatile String sensorName;
+
+    // De-duplication, guarded by this
+    private long lastFiredNotification = Long.MIN_VALUE / 2;
+    private boolean fireNotified;
+
+    AlertEvaluator(long ruleId, long userId, String sensorId, String name, AlertRuleKind kind, double threshold,
+                   double hysteresis, long durationMillis, long cooldownMillis, long now) {
+        this.ruleId = ruleId;
+        this.userId = userId;
+        this.sensorId = sensorId;
+        this.name = name;
+        this.kind = kind;
+        this.threshold = threshold;
+        this.hysteresis = hysteresis;
+        this.durationMillis = durationMillis;
+        this.cooldownMillis = cooldownMillis;
+        this.lastSeen = now;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Rate of change per minute of the last complete window, for notifications
+     */
+    double lastRate() {
+        return lastRate;
+    }
+
+    String sensorName() {
+        return sensorName;
+    }
+
+    /**
+     * Evaluate a reading; returns {@link #FIRED}, {@link #RESOLVED} or {@link #NONE}
+     */
+    int onReading(String sensorName, double value, long timestamp) {
+        return switch (kind) {
+            case ABOVE -> transition(value > threshold, value < threshold - hysteresis);
+            case BELOW -> transition(value < threshold, value > threshold + hysteresis);
+            case RATE_OF_CHANGE -> onRate(value, timestamp);
+            case STALE -> onSeen(sensorName, timestamp);
+        };
+    }
+
+    private int transition(boolean fire, boolean resolve) {
+        if (!active && fire) {
+            active = true;
+            return FIRED;
+        }
+        if (active && resolve) {
+            active = false;
+            return RESOLVED;
+        }
+        return NONE;
+    }
+
+    private int onRate(double value, long timestamp) {
+        if (!hasReference) {
+            hasReference = true;
+            referenceValue = value;
+            referenceTime = timestamp;
+            return NONE;
+        }
+        long elapsed = timestamp - referenceTime;
+        if (elapsed <= 0 || elapsed < durationMillis) {
+            return NONE;
+        }
+        double rate = Math.abs(value - referenceValue) * MILLIS_PER_MINUTE / elapsed;
+        referenceValue = value;
+        referenceTime = timestamp;
+        lastRate = rate;
+        return transition(rate > threshold, rate < threshold - hysteresis);
+    }
+
+    private int onSeen(String sensorName, long timestamp) {
+        lastSeen = timestamp;
+        paused = false;
+        if (this.sensorName == null) {
+            this.sensorName = sensorName;
+        }
+        if (!active) {
+            return NONE;
+        }
+        synchronized (this) {
+            if (!active) {
+                return NONE;
+            }
+            active = false;
+            return RESOLVED;
+        }
+    }
+
+    /**
+     * Timer check of a STALE rule
+     */
+    int checkStale(long now) {
+        if (paused || active || now - lastSeen <= durationMillis) {
+            return NONE;
+        }
+        synchronized (this) {
+            if (paused || active || now - lastSeen <= durationMillis) {
+                return NONE;
+            }
+            active = true;
+            return FIRED;
+        }
+    }
+
+    /**
+     * Stop STALE checks until the next reading, e.g. while the sensor's connection is closed
+     */
+    void pause() {
+        paused = true;
+    }
+
+    /**
+     * Decide whether a transition is notified. A rule that fires again within the cooldown
+     * of its last notification is not, and neither is the resolution of such a firing.
+     */
+    synchronized boolean claimNotification(int transition, long now) {
+        if (transition == FIRED) {
+            if (now - lastFiredNotification < cooldownMillis) {
+                return false;
+            }
+            lastFiredNotification = now;
+            fireNotified = true;
+            return true;
+        }
+        if (transition == RESOLVED && fireNotified) {
+            fireNotified = false;
+            return true;
+        }
+        return false;
+    }
+}
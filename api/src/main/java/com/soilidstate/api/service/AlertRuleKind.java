@@ -0,0 +1,23 @@
+package com.soilidstate.api.service;
+
+/**
+ * What an alert rule watches
+ */
+public enum AlertRuleKind {
+    /** Value rose above the threshold; resolves below threshold - hysteresis */
+    ABOVE,
+    /** Value fell below the threshold; resolves above threshold + hysteresis */
+    BELOW,
+    /** Absolute change per minute exceeded the threshold; resolves below threshold - hysteresis */
+    RATE_OF_CHANGE,
+    /** No reading for the rule's duration; resolves on the next reading */
+    STALE;
+
+    public static AlertRuleKind from(String kind) {
+        try {
+            return valueOf(kind.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported alert rule kind: " + kind);
+        }
+    }
+}
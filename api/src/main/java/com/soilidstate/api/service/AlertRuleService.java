@@ -0,0 +1,116 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.AlertRuleRequest;
+import com.soilidstate.api.dto.AlertRuleResponse;
+import com.soilidstate.api.entity.AlertRule;
+import com.soilidstate.api.repository.AlertRuleRepository;
+import com.soilidstate.api.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores alert rules and keeps the {@link AlertEngine} in step with them
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlertRuleService {
+
+    private final AlertRuleRepository ruleRepository;
+    private final UserRepository userRepository;
+    private final PhidgetService phidgetService;
+    private final AlertEngine alertEngine;
+
+    /**
+     * Load the stored rules into the engine
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRules() {
+        List<AlertRule> rules = ruleRepository.findAllEnabledWithUser();
+        for (AlertRule rule : rules) {
+            try {
+                alertEngine.put(rule);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping alert rule {}: {}", rule.getId(), e.getMessage());
+            }
+        }
+        log.info("Loaded {} alert rules", alertEngine.getRuleCount());
+    }
+
+    /**
+     * @throws NoSuchElementException   if the user has no registered sensor with that id
+     * @throws IllegalArgumentException if the rule is incomplete
+     */
+    public AlertRuleResponse createRule(Long userId, AlertRuleRequest request) {
+        if (!phidgetService.isRegistered(userId, request.getSensorId())) {
+            throw new NoSuchElementException("Sensor not found: " + request.getSensorId());
+        }
+
+        AlertRuleKind kind = AlertRuleKind.from(request.getKind());
+        long durationMs = request.getDurationMs() != null ? request.getDurationMs() : 0;
+        if (kind == AlertRuleKind.STALE) {
+            if (durationMs <= 0) {
+                throw new IllegalArgumentException("STALE rules need a duration");
+            }
+        } else if (request.getThreshold() == null) {
+            throw new IllegalArgumentException(kind + " rules need a threshold");
+        }
+
+        AlertRule rule = AlertRule.builder()
+                .user(userRepository.getReferenceById(userId))
+                .sensorId(request.getSensorId())
+                .name(request.getName() != null && !request.getName().isBlank()
+                        ? request.getName()
+                        : kind + " " + request.getSensorId())
+                .kind(kind.name())
+                .threshold(request.getThreshold())
+                .hysteresis(request.getHysteresis() != null ? request.getHysteresis() : 0.0)
+                .durationMs(durationMs)
+                .build();
+        if (request.getCooldownMs() != null) {
+            rule.setCooldownMs(request.getCooldownMs());
+        }
+
+        rule = ruleRepository.save(rule);
+        alertEngine.put(rule);
+        log.info("Created {} alert rule {} on sensor {} for user {}", kind, rule.getId(), rule.getSensorId(), userId);
+        return toResponse(rule);
+    }
+
+    public List<AlertRuleResponse> getRules(Long userId) {
+        return ruleRepository.findByUserIdOrderByCreatedAt(userId).stream()
+                .map(this::toResponse)
+                .toList();
+    }
+
+    public boolean deleteRule(Long userId, Long ruleId) {
+        return ruleRepository.findByIdAndUserId(ruleId, userId)
+                .map(rule -> {
+                    ruleRepository.delete(rule);
+                    alertEngine.remove(ruleId);
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    private AlertRuleResponse toResponse(AlertRule rule) {
+        AlertRuleResponse response = new AlertRuleResponse();
+        response.setId(rule.getId());
+        response.setSensorId(rule.getSensorId());
+        response.setName(rule.getName());
+        response.setKind(rule.getKind());
+        response.setThreshold(rule.getThreshold());
+        response.setHysteresis(rule.getHysteresis());
+        response.setDurationMs(rule.getDurationMs());
+        response.setCooldownMs(rule.getCooldownMs());
+        response.setEnabled(Boolean.TRUE.equals(rule.getEnabled()));
+        response.setActive(alertEngine.isActive(rule.getId()));
+        return response;
+    }
+}
@@ -0,0 +1,12 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.AlertEvent;
+
+/**
+ * Destination of alert notifications. Called on the notifier thread, one event at a time;
+ * implementations should hand slow work off instead of blocking.
+ */
+public interface AlertSink {
+
+    void send(AlertEvent event);
+}
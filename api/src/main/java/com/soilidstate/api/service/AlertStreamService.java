@@ -0,0 +1,84 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.AlertProperties;
+import com.soilidstate.api.dto.AlertEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes a user's alert notifications to Server-Sent Events clients.
+ * Alerts are rare, so each one is sent on its own virtual thread without conflation.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlertStreamService implements AlertSink {
+
+    static final String EVENT_NAME = "alert";
+
+    private final AlertProperties properties;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SseEmitter subscribe(long userId) {
+        if (subscribers.size() >= properties.getMaxStreams()) {
+            throw new IllegalStateException("Too many open alert streams");
+        }
+
+        SseEmitter emitter = new SseEmitter(properties.getStreamTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, userId);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @Override
+    public void send(AlertEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.userId == event.getUserId()) {
+                senders.execute(() -> subscriber.send(event));
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(s -> s.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final long userId;
+
+        private Subscriber(SseEmitter emitter, long userId) {
+            this.emitter = emitter;
+            this.userId = userId;
+        }
+
+        private synchronized void send(AlertEvent event) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(EVENT_NAME)
+                        .data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Alert stream closed by client: {}", e.getMessage());
+                emitter.completeWithError(e);
+                subscribers.remove(this);
+            }
+        }
+    }
+}
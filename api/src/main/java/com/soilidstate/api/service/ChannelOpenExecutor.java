@@ -0,0 +1,150 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorRegistrationProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens many Phidget channels concurrently under a global concurrency limit and
+ * an overall deadline, reporting an outcome per item instead of failing as a whole.
+ * <p>
+ * {@code Phidget.open} blocks inside native code, which would pin the carrier of a
+ * virtual thread, so opens run on platform threads; the semaphore bounds how many
+ * are in flight across all callers.
+ */
+@Slf4j
+@Service
+public class ChannelOpenExecutor {
+
+    public enum Status { OPENED, FAILED, TIMED_OUT }
+
+    public record Outcome<R>(Status status, R value, String error) {
+    }
+
+    @FunctionalInterface
+    public interface OpenTask<T, R> {
+        R open(T item, int timeoutMillis) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Rollback<R> {
+        void undo(R value) throws Exception;
+    }
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int ABANDONED = 2;
+
+    private final SensorRegistrationProperties properties;
+    private final Semaphore permits;
+    private final ExecutorService openers = Executors.newThreadPerTaskExecutor(
+            Thread.ofPlatform().name("channel-open-", 0).daemon(true).factory());
+
+    public ChannelOpenExecutor(SensorRegistrationProperties properties) {
+        this.properties = properties;
+        this.permits = new Semaphore(properties.getMaxConcurrentOpens(), true);
+    }
+
+    public int getOpenTimeoutMillis() {
+        return (int) properties.getOpenTimeout().toMillis();
+    }
+
+    /**
+     * Open all items within the configured batch deadline. Outcomes are in item order.
+     * An item that completes after its caller gave up is rolled back, so nothing
+     * reported as timed out stays open.
+     */
+    public <T, R> List<Outcome<R>> openAll(List<T> items, OpenTask<T, R> task, Rollback<R> rollback) {
+        long deadline = System.nanoTime() + properties.getBatchDeadline().toNanos();
+        long openTimeout = properties.getOpenTimeout().toNanos();
+
+        List<Future<Outcome<R>>> futures = new ArrayList<>(items.size());
+        List<AtomicInteger> states = new ArrayList<>(items.size());
+
+        for (T item : items) {
+            AtomicInteger state = new AtomicInteger(RUNNING);
+            states.add(state);
+            futures.add(openers.submit(() -> openOne(item, task, rollback, state, deadline, openTimeout)));
+        }
+
+        List<Outcome<R>> outcomes = new ArrayList<>(items.size());
+        for (int i = 0; i < futures.size(); i++) {
+            outcomes.add(await(futures.get(i), states.get(i), deadline));
+        }
+        return outcomes;
+    }
+
+    private <T, R> Outcome<R> openOne(T item, OpenTask<T, R> task, Rollback<R> rollback,
+                                      AtomicInteger state, long deadline, long openTimeout) {
+        boolean acquired = false;
+        try {
+            long remaining = deadline - System.nanoTime();
+            acquired = remaining > 0 && permits.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                return new Outcome<>(Status.TIMED_OUT, null, "Batch deadline passed before the channel was opened");
+            }
+
+            long timeout = Math.min(openTimeout, deadline - System.nanoTime());
+            if (timeout <= 0) {
+                return new Outcome<>(Status.TIMED_OUT, null, "Batch deadline passed before the channel was opened");
+            }
+
+            R value = task.open(item, (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout)));
+            if (!state.compareAndSet(RUNNING, DONE)) {
+                undo(rollback, value);
+                return new Outcome<>(Status.TIMED_OUT, null, "Opened after the batch deadline");
+            }
+            return new Outcome<>(Status.OPENED, value, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Outcome<>(Status.TIMED_OUT, null, "Interrupted");
+        } catch (Exception e) {
+            return new Outcome<>(Status.FAILED, null, e.getMessage());
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    private <R> Outcome<R> await(Future<Outcome<R>> future, AtomicInteger state, long deadline) {
+        try {
+            // Opens are bounded by the deadline; the grace covers a native call overrunning its timeout
+            long remaining = Math.max(0, deadline - System.nanoTime()) + TimeUnit.SECONDS.toNanos(1);
+            try {
+                return future.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (state.compareAndSet(RUNNING, ABANDONED)) {
+                    return new Outcome<>(Status.TIMED_OUT, null, "Channel did not open before the batch deadline");
+                }
+                // Finished while we were giving up; its result is moments away
+                return future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state.compareAndSet(RUNNING, ABANDONED);
+            return new Outcome<>(Status.TIMED_OUT, null, "Interrupted");
+        } catch (ExecutionException e) {
+            return new Outcome<>(Status.FAILED, null, e.getCause().getMessage());
+        }
+    }
+
+    private <R> void undo(Rollback<R> rollback, R value) {
+        try {
+            rollback.undo(value);
+        } catch (Exception e) {
+            log.warn("Failed to roll back channel opened after the deadline: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        openers.shutdownNow();
+    }
+}
@@ -0,0 +1,18 @@
+package com.soilidstate.api.service;
+
+/**
+ * Lifecycle of a {@link PhidgetSession}. Transitions are atomic:
+ * <pre>
+ * DISCONNECTED -&gt; CONNECTING -&gt; CONNECTED -&gt; DRAINING -&gt; DISCONNECTED
+ *                    \-----------------------------------/  connect failed
+ * </pre>
+ */
+public enum ConnectionState {
+    /** The server is being registered; no channels can be opened yet */
+    CONNECTING,
+    /** Channels can be opened, concurrently */
+    CONNECTED,
+    /** Disconnecting: no new opens start, and opens in flight are waited for before channels are closed */
+    DRAINING,
+    DISCONNECTED
+}
@@ -0,0 +1,172 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.ReconnectProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects sessions whose Phidget server was lost and reconnects them without operator action.
+ * <p>
+ * A server is considered lost when the network library reports it removed, or when
+ * most of a session's channels stay detached for the detach storm grace period; a
+ * single unplugged sensor does not count. The session's channels are then closed and
+ * reopened into their existing slots through {@link PhidgetService#reconnect}, so
+ * sensor ids, latest values and registrations are kept. Failed attempts are retried
+ * with exponential backoff and jitter, so many sessions losing the same network don't
+ * retry in lockstep. Progress is reported in the session's connection status.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConnectionSupervisor {
+
+    private final ReconnectProperties properties;
+    private final PhidgetService phidgetService;
+    private final SensorSource source;
+    private final SensorMetrics metrics;
+
+    private final Map<PhidgetSession, Recovery> recoveries = new ConcurrentHashMap<>();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    private ScheduledExecutorService checker;
+    private ExecutorService attempts;
+
+    private static final class Recovery {
+        /** When the current detach storm started, or 0 */
+        long stormSince;
+        /** The server was reported removed; skip the grace period */
+        volatile boolean serverRemoved;
+        long nextAttemptAt;
+        final AtomicBoolean attempting = new AtomicBoolean();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) {
+            log.info("Automatic reconnect is disabled");
+            return;
+        }
+        source.setServerLostListener(this::onServerLost);
+
+        // Platform threads: an attempt blocks in native opens, which would pin a virtual thread's carrier
+        attempts = Executors.newThreadPerTaskExecutor(
+                Thread.ofPlatform().name("connection-reconnect-", 0).daemon(true).factory());
+        long interval = properties.getCheckInterval().toMillis();
+        checker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("connection-supervisor").daemon(true).factory());
+        checker.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+
+        metrics.gauge("phidget.sessions.reconnecting", "Sessions reconnecting to a lost server",
+                () -> phidgetService.sessions().stream().filter(PhidgetSession::isReconnecting).count());
+        metrics.functionCounter("phidget.reconnects", "Sessions recovered after their server was lost", reconnects::get);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (checker != null) {
+            checker.shutdownNow();
+            attempts.shutdownNow();
+        }
+    }
+
+    private void onServerLost(String host, String address, int port) {
+        for (PhidgetSession session : phidgetService.sessions()) {
+            String server = session.serverAddress();
+            if (server != null && Objects.equals(session.serverPort(), port)
+                    && (server.equalsIgnoreCase(host) || server.equals(address))) {
+                recoveries.computeIfAbsent(session, s -> new Recovery()).serverRemoved = true;
+            }
+        }
+    }
+
+    private void check() {
+        try {
+            long now = System.currentTimeMillis();
+            Set<PhidgetSession> live = new HashSet<>(phidgetService.sessions());
+            recoveries.keySet().retainAll(live);
+
+            for (PhidgetSession session : live) {
+                Recovery recovery = recoveries.computeIfAbsent(session, s -> new Recovery());
+                if (recovery.attempting.get()) {
+                    continue;
+                }
+                if (session.isReconnecting()) {
+                    if (now >= recovery.nextAttemptAt) {
+                        attempt(session, recovery);
+                    }
+                    continue;
+                }
+                // A removed server also shows as a detach storm, so a removal alone never resets a healthy session
+                if (!session.isDetachStorm(properties.getDetachStormRatio(),
+                        recovery.serverRemoved ? 1 : properties.getDetachStormMinChannels())) {
+                    recovery.stormSince = 0;
+                    recovery.serverRemoved = false;
+                    continue;
+                }
+                if (recovery.stormSince == 0) {
+                    recovery.stormSince = now;
+                }
+                if (recovery.serverRemoved || now - recovery.stormSince >= properties.getDetachStormGrace().toMillis()) {
+                    log.warn("Lost Phidget server {}:{} of connection {}, reconnecting", session.serverAddress(),
+                            session.serverPort(), session.connectionId());
+                    session.markLost(recovery.stormSince);
+                    attempt(session, recovery);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Connection check failed", e);
+        }
+    }
+
+    private void attempt(PhidgetSession session, Recovery recovery) {
+        recovery.attempting.set(true);
+        attempts.execute(() -> {
+            boolean done = false;
+            try {
+                done = phidgetService.reconnect(session);
+            } catch (Exception e) {
+                log.info("Reconnect of connection {} failed: {}", session.connectionId(), e.getMessage());
+            }
+            if (done) {
+                recovered(session, recovery);
+            } else {
+                recovery.nextAttemptAt = System.currentTimeMillis() + backoff(session.markReconnectFailed());
+            }
+            // Publishes the fields above to the checker
+            recovery.attempting.set(false);
+        });
+    }
+
+    private void recovered(PhidgetSession session, Recovery recovery) {
+        recovery.stormSince = 0;
+        recovery.serverRemoved = false;
+        if (session.isReconnecting()) {
+            Long lostAt = session.lostAt();
+            session.markRecovered();
+            reconnects.incrementAndGet();
+            log.info("Reconnected connection {} to {}:{}, {} ms after the server was lost", session.connectionId(),
+                    session.serverAddress(), session.serverPort(),
+                    lostAt != null ? System.currentTimeMillis() - lostAt : 0);
+        }
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half the delay is fixed, half random
+     */
+    private long backoff(int failedAttempts) {
+        long initial = properties.getInitialBackoff().toMillis();
+        long cap = Math.min(properties.getMaxBackoff().toMillis(), initial << Math.min(failedAttempts - 1, 20));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+}
@@ -0,0 +1,22 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.AlertEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes alert notifications to the application log
+ */
+@Slf4j
+@Service
+public class LogAlertSink implements AlertSink {
+
+    @Override
+    public void send(AlertEvent event) {
+        if ("FIRING".equals(event.getState())) {
+            log.warn("Alert (user={}, rule={}): {}", event.getUserId(), event.getRuleId(), event.getMessage());
+        } else {
+            log.info("Alert (user={}, rule={}): {}", event.getUserId(), event.getRuleId(), event.getMessage());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.soilidstate.api.service;
+
+import com.phidget22.*;
+import com.soilidstate.api.dto.ConnectionRequest;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Sensor source backed by the phidget22 library and remote Phidget network servers
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app", name = "sensor-source", havingValue = "phidget", matchIfMissing = true)
+public class PhidgetSensorSource implements SensorSource {
+
+    private final SensorEventDispatcher dispatcher;
+
+    private volatile ServerLostListener serverLostListener;
+
+    @PostConstruct
+    void listenForServerLoss() {
+        // Raised for discovered servers, which covers the SBC4 hubs on the local network
+        Net.addServerRemovedListener(event -> {
+            PhidgetServer server = event.getServer();
+            ServerLostListener listener = serverLostListener;
+            log.warn("Phidget server {} ({}:{}) removed", server.name, server.addr, server.port);
+            if (listener != null) {
+                listener.serverLost(server.host, server.addr, server.port);
+            }
+        });
+    }
+
+    @Override
+    public void startDiscovery() {
+        try {
+            Net.enableServerDiscovery(ServerType.DEVICE_REMOTE);
+        } catch (PhidgetException e) {
+            log.warn("Failed to enable server discovery: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void stopDiscovery() {
+        try {
+            Net.disableServerDiscovery(ServerType.DEVICE_REMOTE);
+        } catch (PhidgetException e) {
+            log.warn("Failed to disable server discovery: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void addServer(String serverName, ConnectionRequest request) throws PhidgetException {
+        String password = request.getPassword() != null ? request.getPassword() : "";
+        Net.addServer(serverName, request.getServerAddress(), request.getPort(), password, 0);
+    }
+
+    @Override
+    public void removeServer(String serverName) throws PhidgetException {
+        Net.removeServer(serverName);
+    }
+
+    @Override
+    public void setServerLostListener(ServerLostListener listener) {
+        this.serverLostListener = listener;
+    }
+
+    @Override
+    public SensorChannel open(String serverName, Integer serialNumber, SensorSlot slot, int timeoutMillis) throws PhidgetException {
+        Phidget sensor = createSensor(slot.type());
+
+        if (serialNumber != null) {
+            sensor.setDeviceSerialNumber(serialNumber);
+        }
+        sensor.setHubPort(slot.hubPort());
+        sensor.setChannel(slot.channel());
+        sensor.setIsRemote(true);
+        sensor.setServerName(serverName);
+
+        attachEventHandlers(sensor, slot);
+
+        try {
+            sensor.open(timeoutMillis);
+        } catch (PhidgetException e) {
+            closeQuietly(sensor);
+            throw e;
+        }
+        return new PhidgetChannel(sensor, slot.type());
+    }
+
+    private record PhidgetChannel(Phidget sensor, SensorType type) implements SensorChannel {
+
+        @Override
+        public boolean isAttached() throws PhidgetException {
+            return sensor.getAttached();
+        }
+
+        @Override
+        public void applySettings(SensorSettings settings) throws PhidgetException {
+            if (sensor.getAttached()) {
+                applyDeviceSettings(sensor, type, settings);
+            }
+        }
+
+        @Override
+        public void close() throws PhidgetException {
+            sensor.close();
+        }
+    }
+
+    private static void closeQuietly(Phidget sensor) {
+        try {
+            sensor.close();
+        } catch (PhidgetException e) {
+            log.debug("Error closing channel after failed open: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Push data interval and change trigger to the device. Phidget channels only accept
+     * these once attached, so this runs from the attach handler and on settings updates.
+     */
+    private static void applyDeviceSettings(Phidget sensor, SensorType type, SensorSettings settings) throws PhidgetException {
+        Integer interval = settings.dataInterval();
+        Double trigger = settings.changeTrigger();
+
+        switch (type) {
+            case VOLTAGE -> {
+                VoltageInput input = (VoltageInput) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setVoltageChangeTrigger(trigger);
+            }
+            case VOLTAGERATIO -> {
+                VoltageRatioInput input = (VoltageRatioInput) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setVoltageRatioChangeTrigger(trigger);
+            }
+            case TEMPERATURE -> {
+                TemperatureSensor input = (TemperatureSensor) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setTemperatureChangeTrigger(trigger);
+            }
+            case HUMIDITY -> {
+                HumiditySensor input = (HumiditySensor) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setHumidityChangeTrigger(trigger);
+            }
+            case DISTANCESENSOR -> {
+                DistanceSensor input = (DistanceSensor) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setDistanceChangeTrigger((int) Math.round(trigger));
+            }
+            case LIGHTSENSOR -> {
+                LightSensor input = (LightSensor) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setIlluminanceChangeTrigger(trigger);
+            }
+            case SOUNDSENSOR -> {
+                SoundSensor input = (SoundSensor) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setSPLChangeTrigger(trigger);
+            }
+            case PRESSURESENSOR -> {
+                PressureSensor input = (PressureSensor) sensor;
+                if (interval != null) input.setDataInterval(interval);
+                if (trigger != null) input.setPressureChangeTrigger(trigger);
+            }
+            case DIGITALINPUT, DIGITALOUTPUT, VIRTUAL -> {
+                // State channels have no data interval or change trigger
+            }
+        }
+    }
+
+    private static Phidget createSensor(SensorType type) throws PhidgetException {
+        return switch (type) {
+            case VOLTAGE -> new VoltageInput();
+            case VOLTAGERATIO -> new VoltageRatioInput();
+            case TEMPERATURE -> new TemperatureSensor();
+            case HUMIDITY -> new HumiditySensor();
+            case DIGITALINPUT -> new DigitalInput();
+            case DIGITALOUTPUT -> new DigitalOutput();
+            case DISTANCESENSOR -> new DistanceSensor();
+            case LIGHTSENSOR -> new LightSensor();
+            case SOUNDSENSOR -> new SoundSensor();
+            case PRESSURESENSOR -> new PressureSensor();
+            case VIRTUAL -> throw new IllegalArgumentException("Virtual sensors have no Phidget channel");
+        };
+    }
+
+    private void attachEventHandlers(Phidget sensor, SensorSlot slot) {
+        sensor.addAttachListener(event -> {
+            log.info("Sensor {} attached", slot.sensorId());
+            try {
+                applyDeviceSettings(sensor, slot.type(), slot.settings());
+            } catch (PhidgetException e) {
+                log.warn("Failed to apply settings to sensor {}: {}", slot.sensorId(), e.getMessage());
+            }
+            dispatcher.dispatchAttached(slot, true);
+        });
+
+        sensor.addDetachListener(event -> {
+            log.warn("Sensor {} detached", slot.sensorId());
+            dispatcher.dispatchAttached(slot, false);
+        });
+
+        attachDataChangeHandlers(sensor, slot);
+    }
+
+    private void attachDataChangeHandlers(Phidget sensor, SensorSlot slot) {
+        switch (slot.type()) {
+            case VOLTAGE -> ((VoltageInput) sensor).addVoltageChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getVoltage()));
+
+            case VOLTAGERATIO -> ((VoltageRatioInput) sensor).addVoltageRatioChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getVoltageRatio()));
+
+            case TEMPERATURE -> ((TemperatureSensor) sensor).addTemperatureChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getTemperature()));
+
+            case HUMIDITY -> ((HumiditySensor) sensor).addHumidityChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getHumidity()));
+
+            case DIGITALINPUT -> ((DigitalInput) sensor).addStateChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getState() ? 1.0 : 0.0));
+
+            case DISTANCESENSOR -> ((DistanceSensor) sensor).addDistanceChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getDistance()));
+
+            case LIGHTSENSOR -> ((LightSensor) sensor).addIlluminanceChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getIlluminance()));
+
+            case SOUNDSENSOR -> ((SoundSensor) sensor).addSPLChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getDB()));
+
+            case PRESSURESENSOR -> ((PressureSensor) sensor).addPressureChangeListener(event ->
+                    dispatcher.dispatchData(slot, event.getPressure()));
+
+            case DIGITALOUTPUT -> {
+                // Outputs report no readings
+            }
+        }
+    }
+}
@@ -1,288 +1,787 @@
 package com.soilidstate.api.service;
 
-import com.phidget22.*;
+import com.phidget22.PhidgetException;
 import com.soilidstate.api.dto.*;
+import com.soilidstate.api.entity.PhidgetConnection;
+import com.soilidstate.api.entity.RegisteredSensor;
+import com.soilidstate.api.entity.User;
+import com.soilidstate.api.repository.PhidgetConnectionRepository;
+import com.soilidstate.api.repository.RegisteredSensorRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.UUID;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Registry of Phidget sessions, one per user and connection.
+ * <p>
+ * Sessions are sharded by user: each user has their own map of connections, so
+ * connecting, registering or reading on one session never contends with another
+ * user's. Sensor ids are indexed globally for direct lookups and ownership checks.
+ * Where a connection id is optional, null means the user's most recently connected session.
+ * <p>
+ * Registrations are persisted with their settings. Connecting to a server again, or
+ * starting up while connections were active, reopens all of its sensors concurrently
+ * under their original ids. When a server is lost the {@link ConnectionSupervisor}
+ * reconnects its sessions through {@link #reconnect}.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PhidgetService {
 
-    private Net net;
-    private boolean connected = false;
-    private String currentServer;
-    private Integer currentPort;
-    private Long connectedAt;
-
-    private final Map<String, Phidget> sensors = new ConcurrentHashMap<>();
-    private final Map<String, SensorMetadata> sensorMetadata = new ConcurrentHashMap<>();
-    private final Map<String, SensorDataResponse> latestSensorData = new ConcurrentHashMap<>();
+    /** Time a disconnect waits for opens in flight beyond the open timeout */
+    private static final long DRAIN_GRACE_MILLIS = 1000;
+    /** Connections restored at once on startup; each one's channels open in parallel anyway */
+    private static final int RESTORE_THREADS = 4;
+
+    private final SensorIngestService ingest;
+    private final PhidgetConnectionRepository connectionRepository;
+    private final RegisteredSensorRepository sensorRepository;
+    private final ChannelOpenExecutor channelOpenExecutor;
+    private final SensorSource source;
+    private final SensorMetrics metrics;
+
+    private final Map<Long, UserSessions> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, PhidgetSession> sessionsBySensor = new ConcurrentHashMap<>();
+
+    /** Number of open sessions; server discovery is enabled while it is above zero */
+    private int openSessions;
+    private final Object discoveryLock = new Object();
+
+    @PostConstruct
+    void registerGauges() {
+        metrics.gauge("phidget.sessions", "Open Phidget sessions", () -> countSessions(s -> 1));
+        metrics.gauge("sensor.channels", "Open Phidget channels", () -> countSessions(PhidgetSession::channelCount));
+        metrics.gauge("sensor.slots", "Sensors in the latest-data snapshot", () -> countSessions(PhidgetSession::slotCount));
+    }
 
-    public ConnectionStatusResponse connect(ConnectionRequest request) throws PhidgetException {
-        if (connected) {
-            disconnect();
+    private int countSessions(ToIntFunction<PhidgetSession> count) {
+        int total = 0;
+        for (UserSessions userSessions : sessionsByUser.values()) {
+            for (PhidgetSession session : userSessions.byConnection.values()) {
+                total += count.applyAsInt(session);
+            }
         }
+        return total;
+    }
 
-        net = new Net();
+    /**
+     * Sessions of one user. Connect and disconnect lock on this object; reads don't lock.
+     */
+    private static final class UserSessions {
+        private final Map<Long, PhidgetSession> byConnection = new ConcurrentHashMap<>();
+        private volatile PhidgetSession current;
+        /** Version of the last session close; deltas over all sessions older than this are full */
+        private volatile long structureVersion;
+    }
 
-        try {
-            if (request.getPassword() != null && !request.getPassword().isEmpty()) {
-                Net.enableServerDiscovery(ServerType.DEVICE_REMOTE);
-                net.addServer("", request.getServerAddress(), request.getPort(),
-                        request.getPassword(), 0);
-            } else {
-                Net.enableServerDiscovery(ServerType.DEVICE_REMOTE);
-                net.addServer("", request.getServerAddress(), request.getPort(), "", 0);
+    public ConnectionStatusResponse connect(User user, ConnectionRequest request) throws PhidgetException {
+        UserSessions userSessions = sessionsByUser.computeIfAbsent(user.getId(), id -> new UserSessions());
+
+        synchronized (userSessions) {
+            PhidgetConnection connection = connectionRepository
+                    .findFirstByUserIdAndServerAddressAndServerPort(user.getId(), request.getServerAddress(), request.getPort())
+                    .orElseGet(() -> PhidgetConnection.builder()
+                            .user(user)
+                            .serverAddress(request.getServerAddress())
+                            .serverPort(request.getPort())
+                            .build());
+            connection.setIsActive(false);
+            connection.setRequiresPassword(request.getPassword() != null && !request.getPassword().isEmpty());
+            connection = connectionRepository.save(connection);
+
+            // Reconnecting to the same server replaces only that session
+            PhidgetSession existing = userSessions.byConnection.get(connection.getId());
+            if (existing != null) {
+                closeSession(userSessions, existing);
             }
 
-            connected = true;
-            currentServer = request.getServerAddress();
-            currentPort = request.getPort();
-            connectedAt = System.currentTimeMillis();
+            PhidgetSession session = new PhidgetSession(connection.getId(), user.getId(), ingest, source);
+            sessionOpened();
+            ConnectionStatusResponse response;
+            try {
+                response = session.connect(request);
+            } catch (PhidgetException | RuntimeException e) {
+                sessionClosed();
+                throw e;
+            }
 
-            log.info("Connected to Phidget server: {}:{}", request.getServerAddress(), request.getPort());
+            addSession(session);
 
-            ConnectionStatusResponse response = new ConnectionStatusResponse();
-            response.setConnected(true);
-            response.setServerAddress(currentServer);
-            response.setPort(currentPort);
-            response.setMessage("Successfully connected to Phidget server");
-            response.setConnectedAt(connectedAt);
+            connection.setIsActive(true);
+            connection.setConnectedAt(LocalDateTime.now());
+            connection.setDisconnectedAt(null);
+            connectionRepository.save(connection);
 
+            // Still under the user's lock, so a concurrent disconnect can't close the session mid-restore
+            int restored = restore(session);
+            response.setRestoredSensors(restored);
             return response;
+        }
+    }
 
-        } catch (PhidgetException e) {
-            connected = false;
-            log.error("Failed to connect to Phidget server", e);
-            throw e;
+    /**
+     * Reconnect the connections that were active when the application stopped and
+     * restore their sensors. Connections are restored a few at a time on platform threads,
+     * since connect blocks in native calls under the user's lock; channel opens share
+     * the global limit of the {@link ChannelOpenExecutor}. Password-protected servers
+     * are left for the user's next connect, since passwords are not stored.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void restoreActiveConnections() {
+        List<PhidgetConnection> connections = connectionRepository.findAllActiveWithUser();
+        if (connections.isEmpty()) {
+            return;
         }
+
+        long start = System.nanoTime();
+        AtomicInteger restored = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(connections.size(), RESTORE_THREADS),
+                Thread.ofPlatform().name("connection-restore-", 0).daemon(true).factory())) {
+            for (PhidgetConnection connection : connections) {
+                if (Boolean.TRUE.equals(connection.getRequiresPassword())) {
+                    log.info("Connection {} needs a password; its sensors are restored on the next connect",
+                            connection.getId());
+                    connection.setIsActive(false);
+                    connection.setDisconnectedAt(LocalDateTime.now());
+                    connectionRepository.save(connection);
+                    continue;
+                }
+
+                ConnectionRequest request = new ConnectionRequest();
+                request.setServerAddress(connection.getServerAddress());
+                request.setPort(connection.getServerPort());
+                executor.execute(() -> {
+                    try {
+                        connect(connection.getUser(), request);
+                        restored.incrementAndGet();
+                    } catch (PhidgetException | RuntimeException e) {
+                        log.error("Failed to restore connection {} to {}:{}", connection.getId(),
+                                request.getServerAddress(), request.getPort(), e);
+                    }
+                });
+            }
+        }
+        log.info("Restored {} of {} active connections in {} ms", restored.get(), connections.size(),
+                (System.nanoTime() - start) / 1_000_000);
     }
 
-    public void disconnect() throws PhidgetException {
-        for (Map.Entry<String, Phidget> entry : sensors.entrySet()) {
+    /**
+     * Reopen the persisted sensors of a freshly connected session under their stored ids.
+     * Sensors that fail to open stay persisted and are tried again on the next connect.
+     */
+    private int restore(PhidgetSession session) {
+        List<RegisteredSensor> rows = sensorRepository.findByConnectionId(session.connectionId());
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        // Virtual sensors are opened last, once the sensors they are computed from are open
+        List<RegisteredSensor> channels = new ArrayList<>(rows.size());
+        List<RegisteredSensor> virtuals = new ArrayList<>();
+        for (RegisteredSensor row : rows) {
+            (SensorType.VIRTUAL.name().equals(row.getSensorType()) ? virtuals : channels).add(row);
+        }
+
+        long start = System.nanoTime();
+        List<ChannelOpenExecutor.Outcome<SensorStatusResponse>> outcomes = channelOpenExecutor.openAll(channels,
+                (row, timeout) -> open(session, row.getPhidgetSensorId(), SensorType.from(row.getSensorType()),
+                        row.getSensorName(), row.getHubPort(), row.getChannel(), row.getSerialNumber(),
+                        settingsOf(row), timeout),
+                restored -> close(session, restored.getSensorId()));
+
+        int restored = 0;
+        for (int i = 0; i < channels.size(); i++) {
+            ChannelOpenExecutor.Outcome<SensorStatusResponse> outcome = outcomes.get(i);
+            if (outcome.value() != null) {
+                restored++;
+            } else {
+                log.warn("Could not restore sensor {} on connection {}: {} ({})", channels.get(i).getPhidgetSensorId(),
+                        session.connectionId(), outcome.status(), outcome.error());
+            }
+        }
+        for (RegisteredSensor row : virtuals) {
             try {
-                entry.getValue().close();
-            } catch (PhidgetException e) {
-                log.error("Error closing sensor: {}", entry.getKey(), e);
+                openVirtual(session, row.getPhidgetSensorId(), row.getSensorName(), row.getUnit(),
+                        SensorExpression.compile(row.getExpression()), row.getExpressionInputs(), settingsOf(row));
+                restored++;
+            } catch (RuntimeException e) {
+                log.warn("Could not restore virtual sensor {} on connection {}: {}", row.getPhidgetSensorId(),
+                        session.connectionId(), e.getMessage());
             }
         }
-        sensors.clear();
-        sensorMetadata.clear();
-        latestSensorData.clear();
 
-        if (net != null) {
-            Net.disableServerDiscovery(ServerType.DEVICE_REMOTE);
-            Net.disableServerDiscovery(ServerType.DEVICE_REMOTE);
+        log.info("Restored {} of {} sensors on connection {} in {} ms", restored, rows.size(),
+                session.connectionId(), (System.nanoTime() - start) / 1_000_000);
+        return restored;
+    }
+
+    private static SensorSettings settingsOf(RegisteredSensor row) {
+        return new SensorSettings(
+                row.getDataInterval(),
+                row.getChangeTrigger(),
+                row.getDeadband() != null ? row.getDeadband() : 0,
+                "PERCENT".equalsIgnoreCase(row.getDeadbandMode()));
+    }
+
+    /**
+     * Make a connected session available and the user's current one
+     */
+    void addSession(PhidgetSession session) {
+        UserSessions userSessions = sessionsByUser.computeIfAbsent(session.userId(), id -> new UserSessions());
+        userSessions.byConnection.put(session.connectionId(), session);
+        userSessions.current = session;
+    }
+
+    /**
+     * Disconnect one session of the user, or all of them if connectionId is null
+     */
+    public void disconnect(Long userId, Long connectionId) throws PhidgetException {
+        UserSessions userSessions = sessionsByUser.get(userId);
+        if (userSessions == null) {
+            return;
         }
 
-        connected = false;
-        currentServer = null;
-        currentPort = null;
-        connectedAt = null;
+        synchronized (userSessions) {
+            List<PhidgetSession> targets = new ArrayList<>();
+            if (connectionId == null) {
+                targets.addAll(userSessions.byConnection.values());
+            } else {
+                PhidgetSession session = userSessions.byConnection.get(connectionId);
+                if (session != null) {
+                    targets.add(session);
+                }
+            }
 
-        log.info("Disconnected from Phidget server");
+            for (PhidgetSession session : targets) {
+                closeSession(userSessions, session);
+            }
+        }
     }
 
-    public ConnectionStatusResponse getConnectionStatus() {
-        ConnectionStatusResponse response = new ConnectionStatusResponse();
-        response.setConnected(connected);
-        response.setServerAddress(currentServer);
-        response.setPort(currentPort);
-        response.setConnectedAt(connectedAt);
-        response.setMessage(connected ? "Connected" : "Disconnected");
-        return response;
+    private void closeSession(UserSessions userSessions, PhidgetSession session) throws PhidgetException {
+        userSessions.byConnection.remove(session.connectionId(), session);
+        userSessions.structureVersion = ingest.nextVersion();
+        if (userSessions.current == session) {
+            userSessions.current = userSessions.byConnection.values().stream()
+                    .filter(s -> s.connectedAt() != null)
+                    .max(Comparator.comparingLong(PhidgetSession::connectedAt))
+                    .orElse(null);
+        }
+
+        // Only the call that moves the session out of CONNECTED tears it down, and it throws only after that
+        boolean tornDown = true;
+        try {
+            tornDown = session.disconnect(channelOpenExecutor.getOpenTimeoutMillis() + DRAIN_GRACE_MILLIS);
+        } finally {
+            // After the session left CONNECTED, so an open finishing later sees that and removes its own entry
+            sessionsBySensor.values().removeIf(s -> s == session);
+            if (tornDown) {
+                sessionClosed();
+            }
+            connectionRepository.findById(session.connectionId()).ifPresent(connection -> {
+                connection.setIsActive(false);
+                connection.setDisconnectedAt(LocalDateTime.now());
+                connectionRepository.save(connection);
+            });
+        }
     }
 
-    public SensorStatusResponse registerSensor(SensorRegistrationRequest request) throws PhidgetException {
-        if (!connected) {
-            throw new IllegalStateException("Not connected to Phidget server");
+    /**
+     * All open sessions
+     */
+    List<PhidgetSession> sessions() {
+        List<PhidgetSession> sessions = new ArrayList<>();
+        for (UserSessions userSessions : sessionsByUser.values()) {
+            sessions.addAll(userSessions.byConnection.values());
         }
+        return sessions;
+    }
 
-        String sensorId = UUID.randomUUID().toString();
-        Phidget sensor = createSensor(request, sensorId);
+    /**
+     * One attempt to recover a session whose server was lost. If none of its channels
+     * survived, the server is registered again and one channel is opened first as a
+     * probe, so an unreachable server fails fast; then the missing channels are opened
+     * concurrently into their existing slots. Returns true once all channels are open,
+     * or if the session was closed in the meantime.
+     * <p>
+     * The user's lock is held only to check the session is still registered and to reset
+     * its server; the opens run outside it so connects and disconnects don't wait on them.
+     * A disconnect meanwhile makes the remaining opens fail, as the session is draining.
+     */
+    boolean reconnect(PhidgetSession session) throws PhidgetException {
+        UserSessions userSessions = sessionsByUser.get(session.userId());
+        if (userSessions == null) {
+            return true;
+        }
 
-        if (request.getSerialNumber() != null) {
-            sensor.setDeviceSerialNumber(request.getSerialNumber());
+        List<SensorSlot> missing;
+        boolean probe;
+        synchronized (userSessions) {
+            if (userSessions.byConnection.get(session.connectionId()) != session) {
+                return true;
+            }
+
+            missing = session.missingChannels();
+            if (missing.isEmpty()) {
+                return true;
+            }
+            probe = session.openChannelCount() == 0;
+            if (probe) {
+                session.resetServer();
+            }
         }
-        sensor.setHubPort(request.getHubPort());
-        sensor.setChannel(request.getChannel());
-        sensor.setIsRemote(true);
 
-        attachEventHandlers(sensor, sensorId, request);
+        try {
+            if (probe) {
+                reopen(session, missing.removeFirst(), channelOpenExecutor.getOpenTimeoutMillis());
+            }
+        } catch (PhidgetException | RuntimeException e) {
+            if (!session.isConnected()) {
+                return true;
+            }
+            throw e;
+        }
 
-        sensor.open(5000);
+        List<ChannelOpenExecutor.Outcome<SensorSlot>> outcomes = channelOpenExecutor.openAll(missing,
+                (slot, timeout) -> reopen(session, slot, timeout),
+                session::closeChannel);
+        if (!session.isConnected()) {
+            return true;
+        }
 
-        sensors.put(sensorId, sensor);
-        sensorMetadata.put(sensorId, new SensorMetadata(
-                request.getSensorType(),
-                request.getSensorName() != null ? request.getSensorName() : sensorId,
-                request.getHubPort(),
-                request.getChannel()
-        ));
-
-        log.info("Registered sensor: {} on port {} channel {}",
-                request.getSensorType(), request.getHubPort(), request.getChannel());
-
-        SensorStatusResponse response = new SensorStatusResponse();
-        response.setSensorId(sensorId);
-        response.setSensorType(request.getSensorType());
-        response.setSensorName(sensorMetadata.get(sensorId).name);
-        response.setHubPort(request.getHubPort());
-        response.setChannel(request.getChannel());
-        response.setAttached(sensor.getAttached());
-        response.setStatus("Registered");
+        int failed = 0;
+        for (int i = 0; i < missing.size(); i++) {
+            ChannelOpenExecutor.Outcome<SensorSlot> outcome = outcomes.get(i);
+            if (outcome.value() == null) {
+                failed++;
+                log.debug("Could not reopen sensor {} on connection {}: {} ({})", missing.get(i).sensorId(),
+                        session.connectionId(), outcome.status(), outcome.error());
+            }
+        }
+        if (failed > 0) {
+            log.warn("Reopened {} of {} sensors on connection {}", missing.size() - failed, missing.size(),
+                    session.connectionId());
+        }
+        return failed == 0;
+    }
 
-        return response;
+    private SensorSlot reopen(PhidgetSession session, SensorSlot slot, int openTimeoutMillis) throws PhidgetException {
+        long start = System.nanoTime();
+        try {
+            session.reopen(slot, openTimeoutMillis);
+        } catch (PhidgetException | RuntimeException e) {
+            metrics.recordOpen(slot.type(), System.nanoTime() - start, false);
+            throw e;
+        }
+        metrics.recordOpen(slot.type(), System.nanoTime() - start, true);
+        return slot;
+    }
+
+    private void sessionOpened() {
+        synchronized (discoveryLock) {
+            if (openSessions++ == 0) {
+                source.startDiscovery();
+            }
+        }
     }
 
-    private Phidget createSensor(SensorRegistrationRequest request, String sensorId) throws PhidgetException {
-        return switch (request.getSensorType().toUpperCase()) {
-            case "VOLTAGE" -> new VoltageInput();
-            case "VOLTAGERATIO" -> new VoltageRatioInput();
-            case "TEMPERATURE" -> new TemperatureSensor();
-            case "HUMIDITY" -> new HumiditySensor();
-            case "DIGITALINPUT" -> new DigitalInput();
-            case "DIGITALOUTPUT" -> new DigitalOutput();
-            case "DISTANCESENSOR" -> new DistanceSensor();
-            case "LIGHTSENSOR" -> new LightSensor();
-            case "SOUNDSENSOR" -> new SoundSensor();
-            case "PRESSURESENSOR" -> new PressureSensor();
-            default -> throw new IllegalArgumentException("Unsupported sensor type: " + request.getSensorType());
-        };
+    private void sessionClosed() {
+        synchronized (discoveryLock) {
+            if (--openSessions == 0) {
+                source.stopDiscovery();
+            }
+        }
+    }
+
+    private PhidgetSession resolve(Long userId, Long connectionId) {
+        UserSessions userSessions = sessionsByUser.get(userId);
+        if (userSessions == null) {
+            return null;
+        }
+        return connectionId != null ? userSessions.byConnection.get(connectionId) : userSessions.current;
+    }
+
+    private Collection<PhidgetSession> sessionsOf(Long userId, Long connectionId) {
+        if (connectionId != null) {
+            PhidgetSession session = resolve(userId, connectionId);
+            return session != null ? List.of(session) : List.of();
+        }
+        UserSessions userSessions = sessionsByUser.get(userId);
+        return userSessions != null ? userSessions.byConnection.values() : List.of();
+    }
+
+    /**
+     * Session owning the sensor, or null if the sensor is unknown or belongs to another user
+     */
+    private PhidgetSession sessionOf(Long userId, String sensorId) {
+        PhidgetSession session = sessionsBySensor.get(sensorId);
+        return session != null && session.userId() == userId ? session : null;
     }
 
-    private void attachEventHandlers(Phidget sensor, String sensorId, SensorRegistrationRequest request) {
-        sensor.addAttachListener(event -> {
-            log.info("Sensor {} attached", sensorId);
-            updateSensorData(sensorId, null, true);
-        });
+    public ConnectionStatusResponse getConnectionStatus(Long userId, Long connectionId) {
+        PhidgetSession session = resolve(userId, connectionId);
+        if (session != null) {
+            return session.getConnectionStatus();
+        }
 
-        sensor.addDetachListener(event -> {
-            log.warn("Sensor {} detached", sensorId);
-            updateSensorData(sensorId, null, false);
-        });
+        ConnectionStatusResponse response = new ConnectionStatusResponse();
+        response.setConnectionId(connectionId);
+        response.setConnected(false);
+        response.setMessage("Disconnected");
+        return response;
+    }
 
-        attachDataChangeHandlers(sensor, sensorId, request.getSensorType());
+    /**
+     * Status of all open sessions of the user
+     */
+    public List<ConnectionStatusResponse> getConnections(Long userId) {
+        List<ConnectionStatusResponse> connections = new ArrayList<>();
+        for (PhidgetSession session : sessionsOf(userId, null)) {
+            connections.add(session.getConnectionStatus());
+        }
+        return connections;
     }
 
-    private void attachDataChangeHandlers(Phidget sensor, String sensorId, String sensorType) {
-        switch (sensorType.toUpperCase()) {
-            case "VOLTAGE" -> ((VoltageInput) sensor).addVoltageChangeListener(event ->
-                    updateSensorData(sensorId, event.getVoltage(), true));
+    public SensorStatusResponse registerSensor(Long userId, Long connectionId, SensorRegistrationRequest request) throws PhidgetException {
+        PhidgetSession session = resolve(userId, connectionId);
+        if (session == null) {
+            throw new IllegalStateException("Not connected to Phidget server");
+        }
 
-            case "VOLTAGERATIO" -> ((VoltageRatioInput) sensor).addVoltageRatioChangeListener(event ->
-                    updateSensorData(sensorId, event.getVoltageRatio(), true));
+        return register(session, request, channelOpenExecutor.getOpenTimeoutMillis());
+    }
 
-            case "TEMPERATURE" -> ((TemperatureSensor) sensor).addTemperatureChangeListener(event ->
-                    updateSensorData(sensorId, event.getTemperature(), true));
+    /**
+     * Register several sensors on one session, opening their channels concurrently.
+     * Each sensor gets its own result; one failing channel does not fail the batch.
+     */
+    public SensorBatchRegistrationResponse registerSensors(Long userId, Long connectionId,
+                                                           List<SensorRegistrationRequest> requests) {
+        PhidgetSession session = resolve(userId, connectionId);
+        if (session == null) {
+            throw new IllegalStateException("Not connected to Phidget server");
+        }
 
-            case "HUMIDITY" -> ((HumiditySensor) sensor).addHumidityChangeListener(event ->
-                    updateSensorData(sensorId, event.getHumidity(), true));
+        List<ChannelOpenExecutor.Outcome<SensorStatusResponse>> outcomes = channelOpenExecutor.openAll(requests,
+                (request, timeout) -> register(session, request, timeout),
+                registered -> unregisterSensor(userId, registered.getSensorId()));
+
+        SensorBatchRegistrationResponse response = new SensorBatchRegistrationResponse();
+        List<SensorBatchRegistrationResponse.Result> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            SensorRegistrationRequest request = requests.get(i);
+            ChannelOpenExecutor.Outcome<SensorStatusResponse> outcome = outcomes.get(i);
+
+            SensorBatchRegistrationResponse.Result result = new SensorBatchRegistrationResponse.Result();
+            result.setIndex(i);
+            result.setSensorType(request.getSensorType());
+            result.setHubPort(request.getHubPort());
+            result.setChannel(request.getChannel());
+            result.setStatus(switch (outcome.status()) {
+                case OPENED -> "REGISTERED";
+                case FAILED -> "FAILED";
+                case TIMED_OUT -> "TIMED_OUT";
+            });
+            result.setSensor(outcome.value());
+            result.setError(outcome.error());
+            results.add(result);
+        }
 
-            case "DIGITALINPUT" -> ((DigitalInput) sensor).addStateChangeListener(event ->
-                    updateSensorData(sensorId, event.getState() ? 1.0 : 0.0, true));
+        int registered = (int) results.stream().filter(r -> r.getSensor() != null).count();
+        response.setRegistered(registered);
+        response.setFailed(requests.size() - registered);
+        response.setResults(results);
 
-            case "DISTANCESENSOR" -> ((DistanceSensor) sensor).addDistanceChangeListener(event ->
-                    updateSensorData(sensorId, (double) event.getDistance(), true));
+        log.info("Batch registration on connection {}: {} of {} sensors registered",
+                session.connectionId(), registered, requests.size());
+        return response;
+    }
 
-            case "LIGHTSENSOR" -> ((LightSensor) sensor).addIlluminanceChangeListener(event ->
-                    updateSensorData(sensorId, event.getIlluminance(), true));
+    /**
+     * Open a new sensor and persist it. If it can't be persisted, it is closed again,
+     * so every registered sensor survives a restart.
+     */
+    private SensorStatusResponse register(PhidgetSession session, SensorRegistrationRequest request,
+                                          int openTimeoutMillis) throws PhidgetException {
+        String sensorId = UUID.randomUUID().toString();
+        SensorType type = SensorType.from(request.getSensorType());
+        if (type == SensorType.VIRTUAL) {
+            throw new IllegalArgumentException("Virtual sensors are registered with an expression");
+        }
+        SensorSettings settings = SensorSettings.DEFAULT.merge(request.getDataInterval(), request.getChangeTrigger(),
+                request.getDeadband(), request.getDeadbandMode());
 
-            case "SOUNDSENSOR" -> ((SoundSensor) sensor).addSPLChangeListener(event ->
-                    updateSensorData(sensorId, event.getDB(), true));
+        SensorStatusResponse response = open(session, sensorId, type,
+                request.getSensorName() != null ? request.getSensorName() : sensorId,
+                request.getHubPort(), request.getChannel(), request.getSerialNumber(), settings, openTimeoutMillis);
 
-            case "PRESSURESENSOR" -> ((PressureSensor) sensor).addPressureChangeListener(event ->
-                    updateSensorData(sensorId, event.getPressure(), true));
+        try {
+            sensorRepository.save(RegisteredSensor.builder()
+                    .connection(connectionRepository.getReferenceById(session.connectionId()))
+                    .phidgetSensorId(sensorId)
+                    .sensorType(type.name())
+                    .sensorName(response.getSensorName())
+                    .hubPort(request.getHubPort())
+                    .channel(request.getChannel())
+                    .serialNumber(request.getSerialNumber())
+                    .dataInterval(settings.dataInterval())
+                    .changeTrigger(settings.changeTrigger())
+                    .deadband(settings.deadband())
+                    .deadbandMode(settings.deadbandMode())
+                    .isAttached(response.isAttached())
+                    .build());
+        } catch (RuntimeException e) {
+            close(session, sensorId);
+            throw e;
         }
+        return response;
     }
 
-    private void updateSensorData(String sensorId, Double value, boolean attached) {
-        SensorMetadata metadata = sensorMetadata.get(sensorId);
-        if (metadata == null) return;
+    private SensorStatusResponse open(PhidgetSession session, String sensorId, SensorType type, String name,
+                                      int hubPort, int channel, Integer serialNumber, SensorSettings settings,
+                                      int openTimeoutMillis) throws PhidgetException {
+        long start = System.nanoTime();
+        SensorStatusResponse response;
+        try {
+            response = session.openSensor(sensorId, type, name, hubPort, channel, serialNumber, settings, openTimeoutMillis);
+        } catch (PhidgetException | RuntimeException e) {
+            metrics.recordOpen(type, System.nanoTime() - start, false);
+            throw e;
+        }
+        metrics.recordOpen(type, System.nanoTime() - start, true);
+        index(sensorId, session);
+        return response;
+    }
 
-        SensorDataResponse response = new SensorDataResponse();
-        response.setSensorId(sensorId);
-        response.setSensorType(metadata.type);
-        response.setSensorName(metadata.name);
-        response.setHubPort(metadata.hubPort);
-        response.setChannel(metadata.channel);
-        response.setValue(value);
-        response.setUnit(getUnit(metadata.type));
-        response.setTimestamp(System.currentTimeMillis());
-        response.setAttached(attached);
+    /**
+     * Register a sensor computed by an expression from other sensors of the session.
+     * Its readings are published like those of a physical sensor, whenever an input changes.
+     *
+     * @throws IllegalArgumentException if the expression is invalid or its inputs are not sensors of the session
+     */
+    public SensorStatusResponse registerVirtualSensor(Long userId, Long connectionId, VirtualSensorRequest request) {
+        PhidgetSession session = resolve(userId, connectionId);
+        if (session == null) {
+            throw new IllegalStateException("Not connected to Phidget server");
+        }
 
-        latestSensorData.put(sensorId, response);
+        SensorExpression expression = SensorExpression.compile(request.getExpression());
+        Map<String, String> bindings = request.getInputs();
+        for (String name : bindings.keySet()) {
+            if (!expression.inputs().contains(name)) {
+                throw new IllegalArgumentException("Input " + name + " is not used by the expression");
+            }
+        }
+        if (new HashSet<>(bindings.values()).size() < bindings.size()) {
+            throw new IllegalArgumentException("Each input must be a different sensor");
+        }
+
+        String sensorId = UUID.randomUUID().toString();
+        SensorSettings settings = SensorSettings.DEFAULT.merge(null, null, request.getDeadband(), request.getDeadbandMode());
+        String unit = request.getUnit() != null ? request.getUnit() : "";
+        SensorStatusResponse response = openVirtual(session, sensorId, request.getSensorName(), unit, expression,
+                bindings, settings);
+
+        try {
+            sensorRepository.save(RegisteredSensor.builder()
+                    .connection(connectionRepository.getReferenceById(session.connectionId()))
+                    .phidgetSensorId(sensorId)
+                    .sensorType(SensorType.VIRTUAL.name())
+                    .sensorName(request.getSensorName())
+                    .hubPort(-1)
+                    .channel(-1)
+                    .unit(unit)
+                    .expression(expression.source())
+                    .expressionInputs(bindings)
+                    .deadband(settings.deadband())
+                    .deadbandMode(settings.deadbandMode())
+                    .isAttached(response.isAttached())
+                    .build());
+        } catch (RuntimeException e) {
+            closeQuietly(session, sensorId);
+            throw e;
+        }
+        return response;
     }
 
-    private String getUnit(String sensorType) {
-        return switch (sensorType.toUpperCase()) {
-            case "TEMPERATURE" -> "°C";
-            case "HUMIDITY" -> "%";
-            case "VOLTAGE" -> "V";
-            case "VOLTAGERATIO" -> "V/V";
-            case "DIGITALINPUT", "DIGITALOUTPUT" -> "binary";
-            case "DISTANCESENSOR" -> "mm";
-            case "LIGHTSENSOR" -> "lux";
-            case "SOUNDSENSOR" -> "dB";
-            case "PRESSURESENSOR" -> "kPa";
-            default -> "";
-        };
+    private SensorStatusResponse openVirtual(PhidgetSession session, String sensorId, String name, String unit,
+                                             SensorExpression expression, Map<String, String> bindings,
+                                             SensorSettings settings) {
+        SensorStatusResponse response = session.openVirtual(sensorId, name, unit, expression, bindings, settings);
+        index(sensorId, session);
+        return response;
     }
 
-    public void unregisterSensor(String sensorId) throws PhidgetException {
-        Phidget sensor = sensors.get(sensorId);
-        if (sensor != null) {
-            sensor.close();
-            sensors.remove(sensorId);
-            sensorMetadata.remove(sensorId);
-            latestSensorData.remove(sensorId);
-            log.info("Unregistered sensor: {}", sensorId);
+    private void index(String sensorId, PhidgetSession session) {
+        sessionsBySensor.put(sensorId, session);
+        if (!session.isConnected()) {
+            // Disconnected while opening; the disconnect may have swept the index before this put
+            sessionsBySensor.remove(sensorId, session);
         }
     }
 
-    public Map<String, SensorStatusResponse> getAllSensors() throws PhidgetException {
-        Map<String, SensorStatusResponse> statusMap = new ConcurrentHashMap<>();
+    private void closeQuietly(PhidgetSession session, String sensorId) {
+        try {
+            close(session, sensorId);
+        } catch (PhidgetException e) {
+            log.warn("Failed to close sensor {}: {}", sensorId, e.getMessage());
+        }
+    }
 
-        for (Map.Entry<String, Phidget> entry : sensors.entrySet()) {
-            String sensorId = entry.getKey();
-            Phidget sensor = entry.getValue();
-            SensorMetadata metadata = sensorMetadata.get(sensorId);
+    /**
+     * Close an open sensor without touching its persisted registration
+     */
+    private boolean close(PhidgetSession session, String sensorId) throws PhidgetException {
+        sessionsBySensor.remove(sensorId, session);
+        return session.unregisterSensor(sensorId);
+    }
 
-            SensorStatusResponse status = new SensorStatusResponse();
-            status.setSensorId(sensorId);
-            status.setSensorType(metadata.type);
-            status.setSensorName(metadata.name);
-            status.setHubPort(metadata.hubPort);
-            status.setChannel(metadata.channel);
-            status.setAttached(sensor.getAttached());
-            status.setStatus(sensor.getAttached() ? "Attached" : "Detached");
+    /**
+     * Change sampling settings of a registered sensor. Only non-null fields are updated;
+     * device-side settings take effect immediately if the channel is attached.
+     */
+    public SensorStatusResponse updateSensorSettings(Long userId, String sensorId, SensorSettingsRequest request) throws PhidgetException {
+        PhidgetSession session = sessionOf(userId, sensorId);
+        if (session == null) {
+            return null;
+        }
 
-            statusMap.put(sensorId, status);
+        SensorStatusResponse response = session.updateSensorSettings(sensorId, request);
+        if (response != null) {
+            sensorRepository.findByPhidgetSensorId(sensorId).ifPresent(row -> {
+                row.setDataInterval(response.getDataInterval());
+                row.setChangeTrigger(response.getChangeTrigger());
+                row.setDeadband(response.getDeadband());
+                row.setDeadbandMode(response.getDeadbandMode());
+                sensorRepository.save(row);
+            });
         }
+        return response;
+    }
 
+    /**
+     * Returns false if the user has no such sensor
+     */
+    public boolean unregisterSensor(Long userId, String sensorId) throws PhidgetException {
+        PhidgetSession session = sessionOf(userId, sensorId);
+        if (session == null) {
+            return false;
+        }
+        sensorRepository.deleteByPhidgetSensorId(sensorId);
+        return close(session, sensorId);
+    }
+
+    public Map<String, SensorStatusResponse> getAllSensors(Long userId, Long connectionId, SensorFilter filter) {
+        Map<String, SensorStatusResponse> statusMap = new HashMap<>();
+        for (PhidgetSession session : sessionsOf(userId, connectionId)) {
+            session.collectSensors(filter, statusMap);
+        }
         return statusMap;
     }
 
     /**
-     * Get latest sensor data for all sensors
+     * Slots of the user's sensors, e.g. to describe them without reading their values
+     */
+    public List<SensorSlot> getSensorSlots(Long userId, Long connectionId, SensorFilter filter) {
+        List<SensorSlot> slots = new ArrayList<>();
+        for (PhidgetSession session : sessionsOf(userId, connectionId)) {
+            session.collectSlots(filter, slots);
+        }
+        return slots;
+    }
+
+    /**
+     * Latest data for the user's sensors. DTOs are built here, on the reader's side.
+     */
+    public Map<String, SensorDataResponse> getLatestSensorData(Long userId, Long connectionId, SensorFilter filter) {
+        Map<String, SensorDataResponse> data = new HashMap<>();
+        for (PhidgetSession session : sessionsOf(userId, connectionId)) {
+            session.collectLatest(filter, data);
+        }
+        return data;
+    }
+
+    /**
+     * Current data version. If it equals a version a client has already seen, nothing changed since.
+     */
+    public long getDataVersion() {
+        return ingest.getDataVersion();
+    }
+
+    /**
+     * A version such that every write at or below it is already visible in the slots
      */
-    public Map<String, SensorDataResponse> getLatestSensorData() {
-        return new ConcurrentHashMap<>(latestSensorData);
+    public long getPublishedVersion() {
+        return ingest.getPublishedVersion();
     }
 
     /**
-     * Get latest data for a specific sensor
+     * Version of the user's sensor data, or of one connection, for ETags. Unlike the
+     * data version it only moves when the user's own sensors are written, added or
+     * removed, so other users' readings don't invalidate it.
      */
-    public SensorDataResponse getSensorData(String sensorId) {
-        return latestSensorData.get(sensorId);
+    public long getUserDataVersion(Long userId, Long connectionId) {
+        long published = ingest.getPublishedVersion();
+        long latest = 0;
+        if (connectionId == null) {
+            UserSessions userSessions = sessionsByUser.get(userId);
+            latest = userSessions != null ? userSessions.structureVersion : 0;
+        }
+        for (PhidgetSession session : sessionsOf(userId, connectionId)) {
+            latest = Math.max(latest, session.latestVersion());
+        }
+        // A write newer than the published version may still be followed by an older one becoming
+        // visible; the global version can't repeat, so it stands in until those are published
+        return latest <= published ? latest : published;
     }
 
-    private record SensorMetadata(String type, String name, Integer hubPort, Integer channel) {}
-}
\ No newline at end of file
+    /**
+     * Sensors written after the given version, or everything if sensors were
+     * added or removed since then
+     */
+    public SensorDataDeltaResponse getSensorDataSince(Long userId, Long connectionId, long since, SensorFilter filter) {
+        long version = ingest.getPublishedVersion();
+        Collection<PhidgetSession> sessions = sessionsOf(userId, connectionId);
+
+        boolean full = since > version;
+        if (connectionId == null) {
+            UserSessions userSessions = sessionsByUser.get(userId);
+            full |= userSessions != null && since < userSessions.structureVersion;
+        }
+        for (PhidgetSession session : sessions) {
+            full |= session.isStructureChangedSince(since);
+        }
+
+        Map<String, SensorDataResponse> changed = new HashMap<>();
+        for (PhidgetSession session : sessions) {
+            session.collectSince(since, full, filter, changed);
+        }
+
+        SensorDataDeltaResponse response = new SensorDataDeltaResponse();
+        response.setVersion(version);
+        response.setFull(full);
+        response.setSensors(changed);
+        return response;
+    }
+
+    public boolean isRegistered(Long userId, String sensorId) {
+        return sessionOf(userId, sensorId) != null;
+    }
+
+    public SensorDataResponse getSensorData(Long userId, String sensorId) {
+        PhidgetSession session = sessionOf(userId, sensorId);
+        return session != null ? session.getSensorData(sensorId) : null;
+    }
+}
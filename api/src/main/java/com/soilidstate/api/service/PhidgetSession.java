@@ -0,0 +1,639 @@
+package com.soilidstate.api.service;
+
+import com.phidget22.PhidgetException;
+import com.soilidstate.api.dto.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runtime state of one user's connection to one Phidget server (SBC4 hub).
+ * <p>
+ * Each session registers its server with the {@link SensorSource} under its own
+ * server name and opens its channels on that name, so sessions of different users
+ * and hubs are independent of each other.
+ * <p>
+ * A sensor's slot outlives its channel: when the server is lost, the channels are
+ * closed and reopened into the same slots, so ids, latest values and virtual sensors
+ * over them survive a reconnect.
+ * <p>
+ * The lifecycle is a {@link ConnectionState} machine with compare-and-set transitions.
+ * Opening channels takes no lock: each open counts itself in flight and then checks
+ * that the session is still connected, while a disconnect first switches to DRAINING
+ * and then waits for the count to reach zero. Either the open sees DRAINING and backs
+ * out, or the disconnect sees the open and waits for it, so a channel is never opened
+ * into a session that is being torn down.
+ */
+@Slf4j
+final class PhidgetSession {
+
+    private final long connectionId;
+    private final long userId;
+    private final String serverName;
+    private final SensorIngestService ingest;
+    private final SensorSource source;
+
+    private final AtomicReference<ConnectionState> state = new AtomicReference<>(ConnectionState.DISCONNECTED);
+    /** Opens running on this session; a disconnect waits for them while DRAINING */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object drained = new Object();
+
+    /** Written before the transition to CONNECTED, so readers that saw CONNECTED see them */
+    private volatile String currentServer;
+    private volatile Integer currentPort;
+    private volatile Long connectedAt;
+    private volatile ConnectionRequest request;
+
+    /** Set while the {@link ConnectionSupervisor} is recovering the session */
+    private volatile Long lostAt;
+    private volatile int reconnectAttempts;
+
+    private final Map<String, SensorChannel> sensors = new ConcurrentHashMap<>();
+    private final Map<String, SensorSlot> latestSensorData = new ConcurrentHashMap<>();
+    /** Serial numbers of channels opened with one, for reopening them */
+    private final Map<String, Integer> serialNumbers = new ConcurrentHashMap<>();
+    /** Indexes for filtered listings, maintained on register and unregister */
+    private final Map<SensorType, Set<SensorSlot>> slotsByType = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<SensorSlot>> slotsByHubPort = new ConcurrentHashMap<>();
+
+    /** Version of the last registration or removal; deltas older than this fall back to a full snapshot */
+    private volatile long structureVersion;
+
+    PhidgetSession(long connectionId, long userId, SensorIngestService ingest, SensorSource source) {
+        this.connectionId = connectionId;
+        this.userId = userId;
+        this.serverName = "conn-" + connectionId;
+        this.ingest = ingest;
+        this.source = source;
+    }
+
+    long connectionId() {
+        return connectionId;
+    }
+
+    long userId() {
+        return userId;
+    }
+
+    String serverAddress() {
+        return currentServer;
+    }
+
+    Integer serverPort() {
+        return currentPort;
+    }
+
+    Long connectedAt() {
+        return connectedAt;
+    }
+
+    ConnectionState state() {
+        return state.get();
+    }
+
+    ConnectionStatusResponse connect(ConnectionRequest request) throws PhidgetException {
+        if (!state.compareAndSet(ConnectionState.DISCONNECTED, ConnectionState.CONNECTING)) {
+            throw new IllegalStateException("Connection " + connectionId + " is " + state.get());
+        }
+        try {
+            source.addServer(serverName, request);
+
+            this.request = request;
+            currentServer = request.getServerAddress();
+            currentPort = request.getPort();
+            connectedAt = System.currentTimeMillis();
+            state.set(ConnectionState.CONNECTED);
+
+            log.info("Connected to Phidget server: {}:{} (connection {}, user {})",
+                    request.getServerAddress(), request.getPort(), connectionId, userId);
+
+            ConnectionStatusResponse response = getConnectionStatus();
+            response.setMessage("Successfully connected to Phidget server");
+            return response;
+
+        } catch (PhidgetException | RuntimeException e) {
+            state.set(ConnectionState.DISCONNECTED);
+            log.error("Failed to connect to Phidget server", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Stop accepting opens, wait up to {@code drainTimeoutMillis} for opens in flight,
+     * then close all channels and unregister the server. Returns false, doing nothing,
+     * if the session is not connected, so each session is torn down exactly once.
+     */
+    boolean disconnect(long drainTimeoutMillis) throws PhidgetException {
+        if (!state.compareAndSet(ConnectionState.CONNECTED, ConnectionState.DRAINING)) {
+            return false;
+        }
+        if (!awaitDrained(drainTimeoutMillis)) {
+            // A late open sees DRAINING and closes its own channel
+            log.warn("{} channel opens still running on connection {}, disconnecting anyway",
+                    inFlight.get(), connectionId);
+        }
+
+        for (Map.Entry<String, SensorChannel> entry : sensors.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (PhidgetException e) {
+                log.error("Error closing sensor: {}", entry.getKey(), e);
+            }
+        }
+        latestSensorData.values().forEach(ingest::removeSensor);
+        sensors.clear();
+        latestSensorData.clear();
+        serialNumbers.clear();
+        slotsByType.clear();
+        slotsByHubPort.clear();
+        structureVersion = ingest.nextVersion();
+
+        try {
+            source.removeServer(serverName);
+        } finally {
+            request = null;
+            currentServer = null;
+            currentPort = null;
+            connectedAt = null;
+            lostAt = null;
+            state.set(ConnectionState.DISCONNECTED);
+        }
+
+        log.info("Disconnected from Phidget server (connection {})", connectionId);
+        return true;
+    }
+
+    private boolean awaitDrained(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (drained) {
+            while (inFlight.get() > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    drained.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count an open in flight. Must be paired with {@link #endOpen()}.
+     *
+     * @throws IllegalStateException if the session is not connected
+     */
+    private void beginOpen() {
+        inFlight.incrementAndGet();
+        if (state.get() != ConnectionState.CONNECTED) {
+            endOpen();
+            throw new IllegalStateException("Not connected to Phidget server");
+        }
+    }
+
+    private void endOpen() {
+        if (inFlight.decrementAndGet() == 0 && state.get() == ConnectionState.DRAINING) {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Close a channel that finished opening after the session stopped accepting opens
+     */
+    private void rejectIfDraining(String sensorId, SensorChannel channel) {
+        if (state.get() != ConnectionState.CONNECTED) {
+            closeQuietly(sensorId, channel);
+            throw new IllegalStateException("Connection " + connectionId + " was closed while the channel was opening");
+        }
+    }
+
+    ConnectionStatusResponse getConnectionStatus() {
+        ConnectionStatusResponse response = new ConnectionStatusResponse();
+        response.setConnectionId(connectionId);
+        ConnectionState current = state.get();
+        response.setConnected(current == ConnectionState.CONNECTED);
+        response.setServerAddress(currentServer);
+        response.setPort(currentPort);
+        response.setConnectedAt(connectedAt);
+        response.setState(current.name());
+        Long lost = lostAt;
+        // Reconnecting is not a lifecycle state: the session stays CONNECTED and accepts registrations
+        if (current == ConnectionState.CONNECTED && lost != null) {
+            response.setReconnecting(true);
+            response.setLostAt(lost);
+            response.setReconnectAttempts(reconnectAttempts);
+            response.setMessage("Server lost, reconnecting");
+        } else {
+            response.setMessage(switch (current) {
+                case CONNECTING -> "Connecting";
+                case CONNECTED -> "Connected";
+                case DRAINING -> "Disconnecting";
+                case DISCONNECTED -> "Disconnected";
+            });
+        }
+        return response;
+    }
+
+    boolean isReconnecting() {
+        return lostAt != null;
+    }
+
+    void markLost(long timestamp) {
+        reconnectAttempts = 0;
+        lostAt = timestamp;
+    }
+
+    Long lostAt() {
+        return lostAt;
+    }
+
+    /**
+     * Returns the number of failed attempts so far
+     */
+    int markReconnectFailed() {
+        return ++reconnectAttempts;
+    }
+
+    void markRecovered() {
+        lostAt = null;
+    }
+
+    /**
+     * True if at least {@code ratio} of the session's channels, and at least
+     * {@code minChannels}, are detached
+     */
+    boolean isDetachStorm(double ratio, int minChannels) {
+        int channels = 0;
+        int detached = 0;
+        for (SensorSlot slot : latestSensorData.values()) {
+            if (slot.type() == SensorType.VIRTUAL) continue;
+            channels++;
+            if (!slot.isAttached()) {
+                detached++;
+            }
+        }
+        return channels >= minChannels && channels > 0 && detached >= ratio * channels;
+    }
+
+    /**
+     * Close all channels, keeping their slots, and register the server again
+     */
+    void resetServer() throws PhidgetException {
+        for (Map.Entry<String, SensorChannel> entry : sensors.entrySet()) {
+            if (!(entry.getValue() instanceof VirtualSensor) && sensors.remove(entry.getKey(), entry.getValue())) {
+                closeQuietly(entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            source.removeServer(serverName);
+        } catch (PhidgetException e) {
+            log.debug("Failed to remove lost server {}: {}", serverName, e.getMessage());
+        }
+        source.addServer(serverName, request);
+    }
+
+    /**
+     * Open channels, not counting virtual sensors
+     */
+    int openChannelCount() {
+        int open = 0;
+        for (SensorChannel channel : sensors.values()) {
+            if (!(channel instanceof VirtualSensor)) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Slots of sensors whose channel is not open
+     */
+    List<SensorSlot> missingChannels() {
+        List<SensorSlot> missing = new ArrayList<>();
+        for (SensorSlot slot : latestSensorData.values()) {
+            if (slot.type() != SensorType.VIRTUAL && !sensors.containsKey(slot.sensorId())) {
+                missing.add(slot);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Open a new channel into the existing slot of a sensor, e.g. after the server was lost
+     */
+    SensorSlot reopen(SensorSlot slot, int openTimeoutMillis) throws PhidgetException {
+        beginOpen();
+        try {
+            SensorChannel channel = source.open(serverName, serialNumbers.get(slot.sensorId()), slot, openTimeoutMillis);
+            rejectIfDraining(slot.sensorId(), channel);
+            // The slot is removed before the channel on unregister, so checking it after the put catches a race
+            if (sensors.putIfAbsent(slot.sensorId(), channel) != null || latestSensorData.get(slot.sensorId()) != slot) {
+                sensors.remove(slot.sensorId(), channel);
+                channel.close();
+                throw new IllegalStateException("Sensor " + slot.sensorId() + " was removed while reconnecting");
+            }
+            return slot;
+        } finally {
+            endOpen();
+        }
+    }
+
+    /**
+     * Close a reopened channel again, keeping its slot
+     */
+    void closeChannel(SensorSlot slot) throws PhidgetException {
+        SensorChannel channel = sensors.remove(slot.sensorId());
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private static void closeQuietly(String sensorId, SensorChannel channel) {
+        try {
+            channel.close();
+        } catch (PhidgetException e) {
+            log.debug("Error closing channel of sensor {}: {}", sensorId, e.getMessage());
+        }
+    }
+
+    /**
+     * Create and open a channel, waiting up to {@code openTimeoutMillis} for it to attach.
+     * The sensor id is new on registration and the stored one on restore.
+     * Safe to call concurrently for different channels.
+     */
+    SensorStatusResponse openSensor(String sensorId, SensorType type, String name, int hubPort, int channel,
+                                    Integer serialNumber, SensorSettings settings, int openTimeoutMillis) throws PhidgetException {
+        beginOpen();
+        SensorSlot slot = new SensorSlot(sensorId, userId, connectionId, type, name, hubPort, channel);
+        SensorChannel sensor;
+        try {
+            slot.setSettings(settings);
+            sensor = source.open(serverName, serialNumber, slot, openTimeoutMillis);
+            rejectIfDraining(sensorId, sensor);
+
+            if (serialNumber != null) {
+                serialNumbers.put(sensorId, serialNumber);
+            }
+            track(slot, sensor);
+        } finally {
+            endOpen();
+        }
+
+        log.info("Opened sensor {}: {} on port {} channel {} (connection {})",
+                sensorId, type, hubPort, channel, connectionId);
+
+        SensorStatusResponse response = toStatus(slot, "Registered");
+        response.setAttached(sensor.isAttached());
+        return response;
+    }
+
+    /**
+     * Create a virtual sensor over sensors of this session. {@code bindings} maps each
+     * input of the expression to a sensor id.
+     *
+     * @throws IllegalArgumentException if an input is not bound to a sensor of this session
+     */
+    SensorStatusResponse openVirtual(String sensorId, String name, String unit, SensorExpression expression,
+                                     Map<String, String> bindings, SensorSettings settings) {
+        beginOpen();
+        try {
+            return createVirtual(sensorId, name, unit, expression, bindings, settings);
+        } finally {
+            endOpen();
+        }
+    }
+
+    private SensorStatusResponse createVirtual(String sensorId, String name, String unit, SensorExpression expression,
+                                               Map<String, String> bindings, SensorSettings settings) {
+        List<String> names = expression.inputs();
+        SensorSlot[] inputs = new SensorSlot[names.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            String inputId = bindings.get(names.get(i));
+            if (inputId == null) {
+                throw new IllegalArgumentException("Input " + names.get(i) + " is not bound to a sensor");
+            }
+            inputs[i] = latestSensorData.get(inputId);
+            if (inputs[i] == null) {
+                throw new IllegalArgumentException("Input sensor " + inputId + " is not open on connection " + connectionId);
+            }
+        }
+
+        SensorSlot slot = new SensorSlot(sensorId, userId, connectionId, SensorType.VIRTUAL, name, -1, -1, unit);
+        slot.setSettings(settings);
+        VirtualSensor sensor = new VirtualSensor(slot, expression, bindings, inputs, ingest);
+        track(slot, sensor);
+        sensor.start();
+
+        log.info("Opened virtual sensor {} = {} (connection {})", sensorId, expression, connectionId);
+        return toStatus(slot, "Registered");
+    }
+
+    /**
+     * Start serving an opened channel and its slot from this session
+     */
+    void track(SensorSlot slot, SensorChannel sensor) {
+        sensors.put(slot.sensorId(), sensor);
+        latestSensorData.put(slot.sensorId(), slot);
+        slotsByType.computeIfAbsent(slot.type(), t -> ConcurrentHashMap.newKeySet()).add(slot);
+        slotsByHubPort.computeIfAbsent(slot.hubPort(), p -> ConcurrentHashMap.newKeySet()).add(slot);
+        structureVersion = ingest.nextVersion();
+    }
+
+    /**
+     * Change sampling settings of a registered sensor. Only non-null fields are updated;
+     * device-side settings take effect immediately if the channel is attached.
+     */
+    SensorStatusResponse updateSensorSettings(String sensorId, SensorSettingsRequest request) throws PhidgetException {
+        SensorSlot slot = latestSensorData.get(sensorId);
+        if (slot == null) {
+            return null;
+        }
+
+        SensorSettings settings = slot.settings().merge(request.getDataInterval(), request.getChangeTrigger(),
+                request.getDeadband(), request.getDeadbandMode());
+        slot.setSettings(settings);
+
+        // Without an open channel the settings are applied when it is reopened and attaches
+        SensorChannel sensor = sensors.get(sensorId);
+        if (sensor != null) {
+            sensor.applySettings(settings);
+        }
+
+        log.info("Updated settings of sensor {}: {}", sensorId, settings);
+        return toStatus(slot, "Updated");
+    }
+
+    private SensorStatusResponse toStatus(SensorSlot slot, String status) {
+        SensorSettings settings = slot.settings();
+
+        SensorStatusResponse response = new SensorStatusResponse();
+        response.setSensorId(slot.sensorId());
+        response.setSensorType(slot.type().name());
+        response.setSensorName(slot.name());
+        response.setHubPort(slot.hubPort());
+        response.setChannel(slot.channel());
+        response.setUnit(slot.unit());
+        response.setAttached(slot.isAttached());
+        response.setStatus(status);
+        response.setDataInterval(settings.dataInterval());
+        response.setChangeTrigger(settings.changeTrigger());
+        response.setDeadband(settings.deadband());
+        response.setDeadbandMode(settings.deadbandMode());
+        if (sensors.get(slot.sensorId()) instanceof VirtualSensor virtual) {
+            response.setExpression(virtual.expression().source());
+            response.setInputs(virtual.bindings());
+        }
+        return response;
+    }
+
+    /**
+     * Close and forget a sensor. Its channel may already be closed while the session reconnects.
+     */
+    boolean unregisterSensor(String sensorId) throws PhidgetException {
+        SensorSlot slot = latestSensorData.remove(sensorId);
+        if (slot == null) {
+            return false;
+        }
+        serialNumbers.remove(sensorId);
+        structureVersion = ingest.nextVersion();
+        unindex(slotsByType, slot.type(), slot);
+        unindex(slotsByHubPort, slot.hubPort(), slot);
+        ingest.removeSensor(slot);
+        SensorChannel sensor = sensors.remove(sensorId);
+        if (sensor != null) {
+            sensor.close();
+        }
+        log.info("Unregistered sensor: {}", sensorId);
+        return true;
+    }
+
+    int channelCount() {
+        return sensors.size();
+    }
+
+    int slotCount() {
+        return latestSensorData.size();
+    }
+
+    boolean isConnected() {
+        return state.get() == ConnectionState.CONNECTED;
+    }
+
+    private static <K> void unindex(Map<K, Set<SensorSlot>> index, K key, SensorSlot slot) {
+        index.computeIfPresent(key, (k, slots) -> {
+            slots.remove(slot);
+            return slots.isEmpty() ? null : slots;
+        });
+    }
+
+    /**
+     * Smallest indexed set that can contain all matches of the filter
+     */
+    private Collection<SensorSlot> candidates(SensorFilter filter) {
+        Collection<SensorSlot> candidates = latestSensorData.values();
+        if (filter.type() != null) {
+            Set<SensorSlot> ofType = slotsByType.get(filter.type());
+            if (ofType == null) {
+                return Set.of();
+            }
+            candidates = ofType;
+        }
+        if (filter.hubPort() != null) {
+            Set<SensorSlot> onPort = slotsByHubPort.get(filter.hubPort());
+            if (onPort == null) {
+                return Set.of();
+            }
+            if (onPort.size() < candidates.size()) {
+                candidates = onPort;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Status of the matching sensors. Attach state comes from the attach and detach
+     * events recorded in the slots, not from the channels.
+     */
+    void collectSensors(SensorFilter filter, Map<String, SensorStatusResponse> statusMap) {
+        for (SensorSlot slot : candidates(filter)) {
+            if (!filter.matches(slot)) continue;
+
+            SensorStatusResponse status = toStatus(slot, null);
+            status.setStatus(status.isAttached() ? "Attached" : "Detached");
+            statusMap.put(slot.sensorId(), status);
+        }
+    }
+
+    void collectSlots(SensorFilter filter, Collection<SensorSlot> out) {
+        for (SensorSlot slot : candidates(filter)) {
+            if (filter.matches(slot)) {
+                out.add(slot);
+            }
+        }
+    }
+
+    /**
+     * Add the latest data of the matching sensors of this session to {@code out}.
+     * DTOs are built here, on the reader's side.
+     */
+    void collectLatest(SensorFilter filter, Map<String, SensorDataResponse> out) {
+        for (SensorSlot slot : candidates(filter)) {
+            if (!filter.matches(slot)) continue;
+            SensorDataResponse response = slot.toResponse();
+            if (response != null) {
+                out.put(slot.sensorId(), response);
+            }
+        }
+    }
+
+    /**
+     * Highest version of this session: of its last registration or removal, or of its latest sensor write
+     */
+    long latestVersion() {
+        long latest = structureVersion;
+        for (SensorSlot slot : latestSensorData.values()) {
+            latest = Math.max(latest, slot.version());
+        }
+        return latest;
+    }
+
+    /**
+     * True if sensors were added or removed after {@code since}, so a delta would miss removals
+     */
+    boolean isStructureChangedSince(long since) {
+        return since < structureVersion;
+    }
+
+    /**
+     * Add matching sensors written after {@code since} to {@code out}, or all of them if {@code full}
+     */
+    void collectSince(long since, boolean full, SensorFilter filter, Map<String, SensorDataResponse> out) {
+        for (SensorSlot slot : candidates(filter)) {
+            if ((full || slot.version() > since) && filter.matches(slot)) {
+                SensorDataResponse data = slot.toResponse();
+                if (data != null) {
+                    out.put(slot.sensorId(), data);
+                }
+            }
+        }
+    }
+
+    SensorDataResponse getSensorData(String sensorId) {
+        SensorSlot slot = latestSensorData.get(sensorId);
+        return slot != null ? slot.toResponse() : null;
+    }
+}
@@ -0,0 +1,409 @@
+package com.soilidstate.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, memory-mapped journal of readings, kept on disk until they have been
+ * written to the database.
+ * <p>
+ * The journal is a sequence of fixed-size segment files. One appender thread writes
+ * records into the newest segment and rolls over to a new one when it is full; one
+ * replay thread reads records from the oldest segment in order and acknowledges them
+ * once the database has them. Acknowledged positions are saved in a checkpoint file
+ * and fully acknowledged segments are deleted. Appending is a copy into the mapped
+ * file; {@link #sync()} forces it to disk, so callers choose how many appends share an fsync.
+ * <pre>
+ * record = u16:idLength utf8:sensorId i64:timestamp f64:value i32:checksum
+ * </pre>
+ * Segments are zero-filled with real writes when created, so a zero id length marks
+ * the end of the written data and their disk space is allocated up front: a full disk
+ * fails the roll to a new segment, and appends are dropped until one can be created,
+ * instead of faulting a later write into a sparse mapping. On open, each segment is
+ * scanned up to its first torn or corrupt record and appending continues in a new segment.
+ */
+@Slf4j
+final class ReadingJournal implements AutoCloseable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int FIXED_SIZE = 2 + 8 + 8 + 4;
+    private static final int FILL_BUFFER = 64 * 1024;
+    private static final long ROLL_RETRY_NANOS = 1_000_000_000L;
+    static final int MAX_ID_LENGTH = 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    /** Oldest first; the appender adds at the tail, the replayer removes at the head */
+    private final ConcurrentLinkedDeque<Segment> segments = new ConcurrentLinkedDeque<>();
+
+    // Appender state
+    private Segment writeSegment;
+    private final List<Segment> unsynced = new ArrayList<>();
+    private final byte[] idBuffer = new byte[MAX_ID_LENGTH];
+    private volatile long dropped;
+    /** The last roll failed; logged once until a roll succeeds */
+    private boolean rollFailed;
+    private long nextRollAttempt;
+
+    // Replayer state
+    private Segment readSegment;
+    private int readOffset;
+
+    private static final class Segment {
+        final long sequence;
+        final Path path;
+        final MappedByteBuffer buffer;
+        /** End of the records the replayer may read; written by the appender after each record */
+        volatile int committed;
+        /** No more records will be appended */
+        volatile boolean sealed;
+
+        Segment(long sequence, Path path, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Open or create the journal in {@code directory}, recovering unacknowledged records
+     *
+     * @param maxBytes appends are dropped while the unacknowledged segments take this much space
+     */
+    ReadingJournal(Path directory, int segmentSize, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, maxBytes / segmentSize);
+        Files.createDirectories(directory);
+
+        long[] checkpoint = readCheckpoint();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+
+        long nextSequence = checkpoint[0];
+        for (Path file : files) {
+            long sequence = Long.parseLong(file.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            if (sequence < checkpoint[0]) {
+                Files.delete(file);
+                continue;
+            }
+            Segment segment = map(sequence, file);
+            segment.committed = scan(segment.buffer);
+            segment.sealed = true;
+            segments.add(segment);
+        }
+
+        readSegment = segments.peekFirst();
+        readOffset = readSegment != null && readSegment.sequence == checkpoint[0]
+                ? (int) Math.min(checkpoint[1], readSegment.committed)
+                : 0;
+        if (!segments.isEmpty()) {
+            log.info("Reading journal recovered {} segments with {} bytes to replay", segments.size(), pendingBytes());
+        }
+
+        writeSegment = create(nextSequence);
+        if (readSegment == null) {
+            readSegment = writeSegment;
+        }
+    }
+
+    /**
+     * Append a reading. Appender thread only. Returns false if the journal is full.
+     */
+    boolean append(String sensorId, long timestamp, double value) {
+        int idLength = encode(sensorId);
+        if (idLength <= 0) {
+            return false;
+        }
+        int size = FIXED_SIZE + idLength;
+        MappedByteBuffer buffer = writeSegment.buffer;
+        int offset = writeSegment.committed;
+        // Keep room for the zero end marker
+        if (offset + size + 2 > segmentSize) {
+            if (segments.size() >= maxSegments || !roll()) {
+                dropped++;
+                return false;
+            }
+            buffer = writeSegment.buffer;
+            offset = 0;
+        }
+
+        buffer.putShort(offset, (short) idLength);
+        buffer.put(offset + 2, idBuffer, 0, idLength);
+        int p = offset + 2 + idLength;
+        buffer.putLong(p, timestamp);
+        buffer.putDouble(p + 8, value);
+        buffer.putInt(p + 16, checksum(buffer, offset, p + 16));
+        writeSegment.committed = offset + size;
+        return true;
+    }
+
+    /**
+     * Force appended records to disk. Appender thread only.
+     */
+    void sync() {
+        for (Segment segment : unsynced) {
+            segment.buffer.force();
+        }
+        unsynced.clear();
+        writeSegment.buffer.force();
+    }
+
+    /**
+     * Read up to {@code max} records following the last one read. Replay thread only.
+     * Records are read again after a restart unless they were {@link #acknowledge() acknowledged}.
+     */
+    int read(String[] sensorIds, long[] timestamps, double[] values, int max) {
+        int n = 0;
+        while (n < max && readSegment != null) {
+            // Sealed is set after the last record, so read it first
+            boolean sealed = readSegment.sealed;
+            int committed = readSegment.committed;
+            if (readOffset >= committed) {
+                Segment next = sealed ? nextAfter(readSegment) : null;
+                if (next == null) {
+                    break;
+                }
+                readSegment = next;
+                readOffset = 0;
+                continue;
+            }
+            ByteBuffer buffer = readSegment.buffer;
+            int idLength = buffer.getShort(readOffset) & 0xFFFF;
+            byte[] id = new byte[idLength];
+            buffer.get(readOffset + 2, id);
+            int p = readOffset + 2 + idLength;
+            sensorIds[n] = new String(id, StandardCharsets.UTF_8);
+            timestamps[n] = buffer.getLong(p);
+            values[n] = buffer.getDouble(p + 8);
+            readOffset = p + 20;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Mark everything read so far as written to the database and delete finished segments.
+     * Replay thread only.
+     */
+    void acknowledge() {
+        if (readSegment == null) {
+            return;
+        }
+        writeCheckpoint(readSegment.sequence, readOffset);
+        Segment oldest;
+        while ((oldest = segments.peekFirst()) != null && oldest != readSegment && oldest.sealed) {
+            segments.pollFirst();
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete journal segment {}: {}", oldest.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Bytes appended but not yet read by the replayer; approximate when read from another thread
+     */
+    long pendingBytes() {
+        long pending = 0;
+        for (Segment segment : segments) {
+            pending += segment.committed;
+        }
+        Segment current = readSegment;
+        return current != null ? pending - readOffset : pending;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Appends dropped because the journal was full
+     */
+    long dropped() {
+        return dropped;
+    }
+
+    @Override
+    public void close() {
+        sync();
+        writeSegment.sealed = true;
+    }
+
+    /**
+     * Start a new segment; false if it could not be created, e.g. because the disk is full
+     */
+    private boolean roll() {
+        // Don't try to create a file for every reading while the disk stays full
+        if (rollFailed && System.nanoTime() - nextRollAttempt < 0) {
+            return false;
+        }
+        Segment next;
+        try {
+            next = create(writeSegment.sequence + 1);
+        } catch (IOException e) {
+            nextRollAttempt = System.nanoTime() + ROLL_RETRY_NANOS;
+            if (!rollFailed) {
+                rollFailed = true;
+                log.warn("Cannot create reading journal segment, dropping readings until it can: {}", e.getMessage());
+            }
+            return false;
+        }
+        if (rollFailed) {
+            rollFailed = false;
+            log.info("Reading journal segments can be created again, {} readings dropped so far", dropped);
+        }
+        writeSegment.sealed = true;
+        // Not forced yet; the next sync covers it
+        unsynced.add(writeSegment);
+        writeSegment = next;
+        return true;
+    }
+
+    private Segment create(long sequence) throws IOException {
+        Path path = directory.resolve("%020d%s".formatted(sequence, SEGMENT_SUFFIX));
+        Segment segment;
+        try {
+            segment = map(sequence, path);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        segments.add(segment);
+        return segment;
+    }
+
+    private Segment map(long sequence, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            preallocate(channel);
+            // The mapping stays valid after the channel is closed
+            return new Segment(sequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    /**
+     * Write zeros up to the segment size. Mapping alone would leave a sparse file whose
+     * blocks are allocated on first touch, where a full disk kills the writing thread.
+     */
+    private void preallocate(FileChannel channel) throws IOException {
+        long position = channel.size();
+        if (position >= segmentSize) {
+            return;
+        }
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(FILL_BUFFER, segmentSize - position));
+        while (position < segmentSize) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), segmentSize - position));
+            position += channel.write(zeros, position);
+        }
+    }
+
+    private Segment nextAfter(Segment segment) {
+        for (Segment s : segments) {
+            if (s.sequence > segment.sequence) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * End of the intact records of a recovered segment
+     */
+    private int scan(ByteBuffer buffer) {
+        int offset = 0;
+        while (offset + 2 <= segmentSize) {
+            int idLength = buffer.getShort(offset) & 0xFFFF;
+            int end = offset + FIXED_SIZE + idLength;
+            if (idLength == 0 || idLength > MAX_ID_LENGTH || end > segmentSize
+                    || buffer.getInt(end - 4) != checksum(buffer, offset, end - 4)) {
+                break;
+            }
+            offset = end;
+        }
+        return offset;
+    }
+
+    /**
+     * UTF-8 encode into the id buffer without allocating for ASCII ids; returns the length, or -1 if too long
+     */
+    private int encode(String sensorId) {
+        int length = sensorId.length();
+        if (length > MAX_ID_LENGTH) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = sensorId.charAt(i);
+            if (c >= 0x80) {
+                byte[] utf8 = sensorId.getBytes(StandardCharsets.UTF_8);
+                if (utf8.length > MAX_ID_LENGTH) {
+                    return -1;
+                }
+                System.arraycopy(utf8, 0, idBuffer, 0, utf8.length);
+                return utf8.length;
+            }
+            idBuffer[i] = (byte) c;
+        }
+        return length;
+    }
+
+    /**
+     * FNV-1a over the record bytes; detects torn and partially flushed records
+     */
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (buffer.get(i) & 0xFF)) * 0x01000193;
+        }
+        return h;
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return new long[]{0, 0};
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 16) {
+            return new long[]{0, 0};
+        }
+        return new long[]{buffer.getLong(), buffer.getLong()};
+    }
+
+    private void writeCheckpoint(long sequence, long offset) {
+        Path file = directory.resolve(CHECKPOINT);
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(16).putLong(sequence).putLong(offset).flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(buffer);
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Only costs duplicates: the records are replayed again after a restart
+            log.warn("Failed to save journal checkpoint: {}", e.getMessage());
+        }
+    }
+}
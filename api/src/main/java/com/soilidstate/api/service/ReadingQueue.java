@@ -0,0 +1,161 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.ReadingPersistenceProperties.OverflowPolicy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded FIFO of readings held in parallel primitive arrays, so queuing a reading
+ * does not allocate. Producers are the sensor callbacks, the consumer is the batch writer.
+ */
+final class ReadingQueue {
+
+    private final String[] sensorIds;
+    private final long[] timestamps;
+    private final double[] values;
+    private final int capacity;
+
+    private final OverflowPolicy policy;
+    private final long blockNanos;
+    private final int sampleRate;
+    private final int sampleThreshold;
+    private final int signalThreshold;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private int head;
+    private int size;
+    private long sampleCounter;
+    private long dropped;
+    private boolean flushRequested;
+
+    ReadingQueue(int capacity, OverflowPolicy policy, long blockNanos,
+                 int sampleRate, double sampleThreshold, int signalThreshold) {
+        this.capacity = capacity;
+        this.sensorIds = new String[capacity];
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.policy = policy;
+        this.blockNanos = blockNanos;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.sampleThreshold = (int) (capacity * sampleThreshold);
+        this.signalThreshold = Math.min(signalThreshold, capacity);
+    }
+
+    /**
+     * Queue a reading, applying the overflow policy when full. Returns false if the reading was dropped.
+     */
+    boolean offer(String sensorId, long timestamp, double value) {
+        lock.lock();
+        try {
+            if (policy == OverflowPolicy.SAMPLE && size >= sampleThreshold && sampleCounter++ % sampleRate != 0) {
+                dropped++;
+                return false;
+            }
+            if (size == capacity) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    long nanos = blockNanos;
+                    while (size == capacity && nanos > 0) {
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+                    if (size == capacity) {
+                        dropped++;
+                        return false;
+                    }
+                } else {
+                    // DROP_OLDEST, and SAMPLE once thinning was not enough
+                    sensorIds[head] = null;
+                    head = (head + 1) % capacity;
+                    size--;
+                    dropped++;
+                }
+            }
+
+            int tail = (head + size) % capacity;
+            sensorIds[tail] = sensorId;
+            timestamps[tail] = timestamp;
+            values[tail] = value;
+            size++;
+
+            if (size == signalThreshold) {
+                notEmpty.signal();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until a full batch is queued or the timeout elapses, then move up to
+     * {@code max} readings into the given arrays. Returns the number moved.
+     */
+    int drainTo(String[] ids, long[] ts, double[] vs, int max, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (size < signalThreshold && nanos > 0 && !flushRequested) {
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            flushRequested = false;
+
+            int n = Math.min(size, max);
+            for (int i = 0; i < n; i++) {
+                int idx = (head + i) % capacity;
+                ids[i] = sensorIds[idx];
+                ts[i] = timestamps[idx];
+                vs[i] = values[idx];
+                sensorIds[idx] = null;
+            }
+            head = (head + n) % capacity;
+            size -= n;
+
+            if (n > 0) {
+                notFull.signalAll();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wake a consumer blocked in {@link #drainTo} so it flushes what is queued
+     */
+    void wakeUp() {
+        lock.lock();
+        try {
+            flushRequested = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
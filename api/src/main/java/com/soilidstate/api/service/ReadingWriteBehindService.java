@@ -0,0 +1,300 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.ReadingPersistenceProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists raw readings to sensor_readings without blocking the sensor callbacks.
+ * <p>
+ * Readings are queued in a bounded {@link ReadingQueue}; a single background thread
+ * flushes them as JDBC batches whenever a batch fills up or the flush interval passes.
+ * With {@code reWriteBatchedInserts} enabled on the driver each batch is sent as
+ * multi-row INSERT statements.
+ * <p>
+ * With the journal enabled the writer thread appends the queued readings to a
+ * {@link ReadingJournal} instead, forcing it to disk every fsync interval, and a
+ * replay thread copies the journal to the database in order. Failed batches are
+ * retried with exponential backoff rather than dropped, so a database outage only
+ * fills the journal, and readings not yet written when the service stops are
+ * replayed after the next start. A batch may be written twice if the service stops
+ * between inserting it and acknowledging it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.readings", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ReadingWriteBehindService implements SensorDataListener {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO sensor_readings (sensor_id, reading_time, value) " +
+            "VALUES (?, to_timestamp(?::double precision / 1000), ?)";
+
+    private final ReadingPersistenceProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final SensorMetrics metrics;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private ReadingQueue queue;
+    private ReadingJournal journal;
+    private Thread writer;
+    private Thread replayer;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        queue = new ReadingQueue(
+                properties.getQueueCapacity(),
+                properties.getOverflowPolicy(),
+                properties.getBlockTimeout().toNanos(),
+                properties.getSampleRate(),
+                properties.getSampleThreshold(),
+                properties.getBatchSize());
+
+        ReadingPersistenceProperties.Journal journalProperties = properties.getJournal();
+        if (journalProperties.isEnabled()) {
+            try {
+                journal = new ReadingJournal(
+                        journalProperties.getDirectory(),
+                        Math.toIntExact(journalProperties.getSegmentSize().toBytes()),
+                        journalProperties.getMaxSize().toBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open reading journal in " + journalProperties.getDirectory(), e);
+            }
+            metrics.gauge("readings.journal.pending", "Bytes of journaled readings not yet written to the database",
+                    journal::pendingBytes);
+            metrics.gauge("readings.journal.segments", "Reading journal segment files", journal::segmentCount);
+            metrics.functionCounter("readings.journal.dropped", "Readings dropped because the journal was full",
+                    journal::dropped);
+        }
+
+        running = true;
+        writer = Thread.ofPlatform()
+                .name("reading-writer")
+                .daemon(true)
+                .start(journal != null ? this::runJournalWriter : this::runWriter);
+        if (journal != null) {
+            replayer = Thread.ofPlatform()
+                    .name("reading-replayer")
+                    .daemon(true)
+                    .start(this::runReplayer);
+        }
+
+        log.info("Reading write-behind started (capacity={}, batch={}, policy={})",
+                properties.getQueueCapacity(), properties.getBatchSize(), properties.getOverflowPolicy());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        queue.wakeUp();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (replayer != null) {
+            // Whatever it has not written stays in the journal
+            replayer.interrupt();
+            replayer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    @Override
+    public void onSensorData(SensorSlot slot, long timestamp, double value) {
+        queue.offer(slot.sensorId(), timestamp, value);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDroppedCount() {
+        return queue.dropped();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getJournalPendingBytes() {
+        return journal != null ? journal.pendingBytes() : 0;
+    }
+
+    private void runWriter() {
+        int batchSize = properties.getBatchSize();
+        String[] ids = new String[batchSize];
+        long[] timestamps = new long[batchSize];
+        double[] values = new double[batchSize];
+        long flushMillis = properties.getFlushInterval().toMillis();
+
+        while (true) {
+            int n;
+            try {
+                n = queue.drainTo(ids, timestamps, values, batchSize, flushMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (n > 0) {
+                writeBatch(ids, timestamps, values, n);
+            } else if (!running) {
+                break;
+            }
+        }
+        log.info("Reading write-behind stopped ({} written, {} dropped, {} failed)",
+                written.get(), queue.dropped(), failed.get());
+    }
+
+    private void writeBatch(String[] ids, long[] timestamps, double[] values, int n) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                insert(ids, timestamps, values, n);
+                written.addAndGet(n);
+                return;
+            } catch (DataAccessException e) {
+                if (attempt >= properties.getMaxRetries()) {
+                    failed.addAndGet(n);
+                    log.error("Dropping {} readings after {} failed attempts", n, attempt, e);
+                    return;
+                }
+                log.warn("Failed to write {} readings (attempt {}), retrying: {}", n, attempt, e.getMessage());
+                try {
+                    Thread.sleep(200L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    failed.addAndGet(n);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move queued readings into the journal, forcing it to disk every fsync interval.
+     * Batches the journal fails to take are written straight to the database.
+     */
+    private void runJournalWriter() {
+        int batchSize = properties.getBatchSize();
+        String[] ids = new String[batchSize];
+        long[] timestamps = new long[batchSize];
+        double[] values = new double[batchSize];
+        long fsyncNanos = properties.getJournal().getFsyncInterval().toNanos();
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+
+        while (true) {
+            int n;
+            try {
+                n = queue.drainTo(ids, timestamps, values, batchSize, fsyncNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                for (int i = 0; i < n; i++) {
+                    dirty |= journal.append(ids[i], timestamps[i], values[i]);
+                }
+                long now = System.nanoTime();
+                if (dirty && now - lastSync >= fsyncNanos) {
+                    journal.sync();
+                    lastSync = now;
+                    dirty = false;
+                }
+            } catch (RuntimeException | Error e) {
+                // An I/O error on the mapped files; keep the readings by writing them directly,
+                // possibly twice if some were journaled before the failure
+                log.error("Reading journal failed, writing {} readings directly to the database", n, e);
+                writeBatch(ids, timestamps, values, n);
+            }
+            if (n == 0 && !running) {
+                break;
+            }
+        }
+        try {
+            journal.close();
+        } catch (RuntimeException | Error e) {
+            log.error("Failed to close the reading journal", e);
+        }
+        log.info("Reading journal writer stopped ({} dropped by the queue, {} by the journal)",
+                queue.dropped(), journal.dropped());
+    }
+
+    /**
+     * Copy the journal to the database in order, waiting out database outages
+     */
+    private void runReplayer() {
+        int batchSize = properties.getBatchSize();
+        String[] ids = new String[batchSize];
+        long[] timestamps = new long[batchSize];
+        double[] values = new double[batchSize];
+        long flushMillis = properties.getFlushInterval().toMillis();
+        long maxBackoff = properties.getJournal().getMaxRetryBackoff().toMillis();
+
+        try {
+            replay:
+            while (true) {
+                int n = journal.read(ids, timestamps, values, batchSize);
+                if (n == 0) {
+                    if (!running && !writer.isAlive()) {
+                        break;
+                    }
+                    Thread.sleep(flushMillis);
+                    continue;
+                }
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        insert(ids, timestamps, values, n);
+                        break;
+                    } catch (DataAccessException e) {
+                        if (!running) {
+                            // Left unacknowledged, so it is replayed after the next start
+                            break replay;
+                        }
+                        long backoff = Math.min(maxBackoff, 200L << Math.min(attempt - 1, 16));
+                        log.warn("Failed to write {} journaled readings (attempt {}), retrying in {} ms: {}",
+                                n, attempt, backoff, e.getMessage());
+                        Thread.sleep(backoff);
+                    }
+                }
+                written.addAndGet(n);
+                journal.acknowledge();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Reading replay stopped ({} written, {} bytes left in the journal)", written.get(), journal.pendingBytes());
+    }
+
+    private void insert(String[] ids, long[] timestamps, double[] values, int n) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, ids[i]);
+                ps.setLong(2, timestamps[i]);
+                ps.setDouble(3, values[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return n;
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.soilidstate.api.service;
+
+/**
+ * Mutable min/max/sum/count/first/last accumulator for one time bucket.
+ * Not thread-safe; guarded by the owning sensor's rollup state.
+ */
+final class RollupBucket {
+
+    long bucketStart;
+    double min;
+    double max;
+    double sum;
+    long count;
+    double first;
+    long firstAt;
+    double last;
+    long lastAt;
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void add(long timestamp, double value) {
+        if (count == 0) {
+            min = max = first = last = value;
+            firstAt = lastAt = timestamp;
+        } else {
+            if (value < min) min = value;
+            if (value > max) max = value;
+            if (timestamp < firstAt) {
+                first = value;
+                firstAt = timestamp;
+            }
+            if (timestamp >= lastAt) {
+                last = value;
+                lastAt = timestamp;
+            }
+        }
+        sum += value;
+        count++;
+    }
+
+    /**
+     * Fold a finer bucket into this one without looking at raw readings
+     */
+    void merge(RollupBucket other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+            first = other.first;
+            firstAt = other.firstAt;
+            last = other.last;
+            lastAt = other.lastAt;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (other.firstAt < firstAt) {
+                first = other.first;
+                firstAt = other.firstAt;
+            }
+            if (other.lastAt >= lastAt) {
+                last = other.last;
+                lastAt = other.lastAt;
+            }
+        }
+        sum += other.sum;
+        count += other.count;
+    }
+
+    void reset(long bucketStart) {
+        this.bucketStart = bucketStart;
+        count = 0;
+        sum = 0;
+    }
+
+    RollupBucket copy() {
+        RollupBucket copy = new RollupBucket();
+        copy.bucketStart = bucketStart;
+        copy.merge(this);
+        return copy;
+    }
+}
@@ -0,0 +1,41 @@
+package com.soilidstate.api.service;
+
+/**
+ * Bucket sizes maintained by {@link SensorRollupService}, finest first
+ */
+public enum RollupResolution {
+    MINUTE(60_000L, "sensor_rollups_minute"),
+    HOUR(3_600_000L, "sensor_rollups_hour"),
+    DAY(86_400_000L, "sensor_rollups_day");
+
+    private final long millis;
+    private final String table;
+
+    RollupResolution(long millis, String table) {
+        this.millis = millis;
+        this.table = table;
+    }
+
+    public long millis() {
+        return millis;
+    }
+
+    String table() {
+        return table;
+    }
+
+    /**
+     * Start of the bucket containing the timestamp (UTC aligned)
+     */
+    public long bucketStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, millis);
+    }
+
+    public static RollupResolution parse(String value) {
+        try {
+            return valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported resolution: " + value + " (expected minute, hour or day)");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.soilidstate.api.service;
+
+import com.phidget22.PhidgetException;
+
+/**
+ * An open channel of a {@link SensorSource}, feeding one {@link SensorSlot}
+ */
+public interface SensorChannel {
+
+    /**
+     * Attach state as reported by the device library
+     */
+    boolean isAttached() throws PhidgetException;
+
+    /**
+     * Push data interval and change trigger to the device, if it is attached
+     */
+    void applySettings(SensorSettings settings) throws PhidgetException;
+
+    void close() throws PhidgetException;
+}
@@ -0,0 +1,28 @@
+package com.soilidstate.api.service;
+
+/**
+ * Receives every sensor update published by {@link SensorIngestService}.
+ * Implementations run on the {@link SensorEventDispatcher} consumer threads
+ * ({@code sensor-dispatch-N}): all events of one sensor arrive in order on the same
+ * thread, while different sensors may be handled concurrently. They must not block
+ * and should not allocate per call; use {@link SensorSlot#toResponse()} only when a
+ * DTO is needed. {@link #onSensorRemoved} runs on the thread removing the sensor and
+ * may race with a last event of it, which then sees {@link SensorSlot#isActive()} false.
+ */
+public interface SensorDataListener {
+
+    /**
+     * A new reading has been stored in the slot
+     */
+    void onSensorData(SensorSlot slot, long timestamp, double value);
+
+    /**
+     * The channel attached or detached
+     */
+    default void onAttachChange(SensorSlot slot, long timestamp, boolean attached) {}
+
+    /**
+     * Called after a sensor has been unregistered or its connection closed
+     */
+    default void onSensorRemoved(String sensorId) {}
+}
@@ -0,0 +1,233 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorDispatchProperties;
+import com.soilidstate.api.dto.DispatchStatsResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves sensor events off the phidget22 callback threads.
+ * <p>
+ * Callbacks only publish into a {@link SensorEventRing} and return. Each ring has
+ * one consumer thread that runs the {@link SensorIngestService} stage and the
+ * listeners behind it. Sensors are sharded by id, so all events of one sensor go
+ * through the same ring and are handled in order.
+ * <p>
+ * A full ring drops data events, which the next reading supersedes. Attach and detach
+ * events are never dropped: when they don't fit, the sensor's latest state is parked
+ * in a per-shard map together with the ring position it was parked at, and later
+ * state changes of that sensor go to the map too until it has been handled. The
+ * consumer delivers a parked state once it has drained every event published before
+ * it, so an older attach change still in the ring never overrides it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorEventDispatcher {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SensorDispatchProperties properties;
+    private final SensorIngestService ingest;
+    private final SensorMetrics metrics;
+
+    private Shard[] shards;
+    private volatile boolean running;
+
+    private final class Shard {
+        private final SensorEventRing ring = new SensorEventRing(properties.getRingCapacity());
+        private final AtomicLong dispatched = new AtomicLong();
+        /** Attach states that did not fit in the ring, latest per sensor */
+        private final Map<SensorSlot, PendingState> pendingStates = new ConcurrentHashMap<>();
+        private Thread consumer;
+        private volatile boolean waiting;
+    }
+
+    /**
+     * @param after ring position the state was first parked at; it is due once the consumer reaches it
+     */
+    private record PendingState(boolean attached, long timestamp, long after) {
+    }
+
+    @PostConstruct
+    void start() {
+        int count = Math.max(1, properties.getShards());
+        shards = new Shard[count];
+        running = true;
+        for (int i = 0; i < count; i++) {
+            Shard shard = new Shard();
+            shards[i] = shard;
+            shard.consumer = Thread.ofPlatform()
+                    .name("sensor-dispatch-" + i)
+                    .daemon(true)
+                    .start(() -> consume(shard));
+        }
+        metrics.gauge("sensor.dispatch.depth", "Events queued for dispatch", this::getDepth);
+        metrics.functionCounter("sensor.dispatch.dropped", "Events dropped because a dispatch ring was full", this::getDropped);
+        log.info("Sensor dispatch started ({} shards, {} events each)", count, shards[0].ring.capacity());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.consumer);
+        }
+        for (Shard shard : shards) {
+            shard.consumer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Called from a data-change callback. Never blocks; drops the event if the shard is full.
+     */
+    public void dispatchData(SensorSlot slot, double value) {
+        publish(slot, SensorEventRing.DATA, value);
+    }
+
+    /**
+     * Called from an attach or detach callback. Never blocks and never drops the change.
+     */
+    public void dispatchAttached(SensorSlot slot, boolean attached) {
+        Shard shard = shards[shardOf(slot)];
+        long timestamp = System.currentTimeMillis();
+        // While a state of this sensor is pending, queueing behind it in the ring would reorder them
+        if (!shard.pendingStates.containsKey(slot)
+                && shard.ring.tryOffer(slot, attached ? SensorEventRing.ATTACH : SensorEventRing.DETACH, timestamp,
+                System.nanoTime(), 0)) {
+            if (shard.waiting) {
+                LockSupport.unpark(shard.consumer);
+            }
+            return;
+        }
+        // A replaced state keeps its position: the ring got no state change of this sensor since
+        shard.pendingStates.merge(slot, new PendingState(attached, timestamp, shard.ring.tailPosition()),
+                (parked, latest) -> new PendingState(latest.attached(), latest.timestamp(), parked.after()));
+        if (shard.waiting) {
+            LockSupport.unpark(shard.consumer);
+        }
+    }
+
+    private void publish(SensorSlot slot, byte kind, double value) {
+        Shard shard = shards[shardOf(slot)];
+        if (shard.ring.offer(slot, kind, System.currentTimeMillis(), System.nanoTime(), value) && shard.waiting) {
+            LockSupport.unpark(shard.consumer);
+        }
+    }
+
+    private int shardOf(SensorSlot slot) {
+        int h = slot.sensorId().hashCode();
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % shards.length;
+    }
+
+    private void consume(Shard shard) {
+        // One handler per consumer, created once, so draining allocates nothing
+        SensorEventRing.Handler handler = this::deliver;
+        int batch = properties.getDrainBatch();
+
+        while (true) {
+            int limit = batch;
+            if (!shard.pendingStates.isEmpty()) {
+                // Stop draining at the next parked state, so it is delivered between the events around it
+                long due = deliverPending(shard);
+                if (due != Long.MAX_VALUE) {
+                    limit = (int) Math.min(batch, due - shard.ring.headPosition());
+                }
+            }
+            int n = shard.ring.drain(handler, limit);
+            if (n > 0) {
+                shard.dispatched.addAndGet(n);
+                continue;
+            }
+            if (!running) {
+                break;
+            }
+            shard.waiting = true;
+            if (shard.ring.isEmpty() && shard.pendingStates.isEmpty() && running) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            shard.waiting = false;
+        }
+    }
+
+    /**
+     * Hand over the parked attach states that are due, i.e. all events published before
+     * them have been drained. Each is removed before it is delivered, so a change arriving
+     * meanwhile is parked again or, once none is pending, goes through the ring and is
+     * delivered after this one. Returns the position of the next state not yet due, or
+     * {@link Long#MAX_VALUE} if there is none.
+     */
+    private long deliverPending(Shard shard) {
+        long head = shard.ring.headPosition();
+        long next = Long.MAX_VALUE;
+        for (Map.Entry<SensorSlot, PendingState> entry : shard.pendingStates.entrySet()) {
+            PendingState state = entry.getValue();
+            if (state.after() > head) {
+                next = Math.min(next, state.after());
+            } else if (shard.pendingStates.remove(entry.getKey(), state)) {
+                deliver(entry.getKey(), state.attached() ? SensorEventRing.ATTACH : SensorEventRing.DETACH,
+                        state.timestamp(), 0, 0);
+                shard.dispatched.incrementAndGet();
+            } else {
+                // Replaced meanwhile; the replacement is picked up on the next pass
+                next = Math.min(next, head);
+            }
+        }
+        return next;
+    }
+
+    private void deliver(SensorSlot slot, byte kind, long timestamp, long enqueuedNanos, double value) {
+        try {
+            if (kind == SensorEventRing.DATA) {
+                ingest.updateSensorData(slot, value, timestamp, enqueuedNanos);
+            } else {
+                ingest.updateAttached(slot, kind == SensorEventRing.ATTACH, timestamp);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to handle event of sensor {}", slot.sensorId(), e);
+        }
+    }
+
+    private int getDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.ring.size();
+        }
+        return depth;
+    }
+
+    private long getDropped() {
+        long dropped = 0;
+        for (Shard shard : shards) {
+            dropped += shard.ring.dropped();
+        }
+        return dropped;
+    }
+
+    public DispatchStatsResponse getStats() {
+        DispatchStatsResponse stats = new DispatchStatsResponse();
+        int[] depth = new int[shards.length];
+        long dispatched = 0;
+        long dropped = 0;
+        for (int i = 0; i < shards.length; i++) {
+            depth[i] = shards[i].ring.size();
+            dispatched += shards[i].dispatched.get();
+            dropped += shards[i].ring.dropped();
+        }
+        stats.setShards(shards.length);
+        stats.setCapacityPerShard(shards[0].ring.capacity());
+        stats.setDepth(depth);
+        stats.setDispatched(dispatched);
+        stats.setDropped(dropped);
+        return stats;
+    }
+}
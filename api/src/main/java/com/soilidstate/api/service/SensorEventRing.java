@@ -0,0 +1,184 @@
+package com.soilidstate.api.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring of sensor events.
+ * <p>
+ * Follows Vyukov's bounded queue: every cell carries a sequence number telling
+ * producers whether it is free and the consumer whether it is published. Producers
+ * claim a position with one CAS on {@code tail}; the single consumer advances
+ * {@code head} without atomics. Events live in preallocated primitive arrays, so
+ * offering and draining never allocate. When the ring is full the offer fails and
+ * the producer never blocks; {@link #offer} counts the event as dropped, while
+ * {@link #tryOffer} leaves it to the caller to keep it elsewhere.
+ */
+final class SensorEventRing {
+
+    static final byte DATA = 0;
+    static final byte ATTACH = 1;
+    static final byte DETACH = 2;
+
+    /**
+     * Receives drained events; called on the consumer thread
+     */
+    @FunctionalInterface
+    interface Handler {
+        void handle(SensorSlot slot, byte kind, long timestamp, long enqueuedNanos, double value);
+    }
+
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle TAIL;
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TAIL = lookup.findVarHandle(SensorEventRing.class, "tail", long.class);
+            HEAD = lookup.findVarHandle(SensorEventRing.class, "head", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final long[] sequence;
+    private final SensorSlot[] slots;
+    private final byte[] kinds;
+    private final long[] timestamps;
+    private final long[] enqueuedNanos;
+    private final double[] values;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    @SuppressWarnings("unused")
+    private long tail;
+    @SuppressWarnings("unused")
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two, at least 2
+     */
+    SensorEventRing(int capacity) {
+        this.capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.sequence = new long[this.capacity];
+        this.slots = new SensorSlot[this.capacity];
+        this.kinds = new byte[this.capacity];
+        this.timestamps = new long[this.capacity];
+        this.enqueuedNanos = new long[this.capacity];
+        this.values = new double[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            sequence[i] = i;
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Publish an event. Returns false and counts a drop if the ring is full.
+     */
+    boolean offer(SensorSlot slot, byte kind, long timestamp, long nanos, double value) {
+        if (tryOffer(slot, kind, timestamp, nanos, value)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Publish an event. Returns false if the ring is full, leaving it to the caller to keep the event.
+     */
+    boolean tryOffer(SensorSlot slot, byte kind, long timestamp, long nanos, double value) {
+        long pos = (long) TAIL.getVolatile(this);
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = (long) SEQUENCE.getAcquire(sequence, index) - pos;
+            if (diff == 0) {
+                long witness = (long) TAIL.compareAndExchange(this, pos, pos + 1);
+                if (witness == pos) {
+                    slots[index] = slot;
+                    kinds[index] = kind;
+                    timestamps[index] = timestamp;
+                    enqueuedNanos[index] = nanos;
+                    values[index] = value;
+                    // Volatile, not just release: a consumer about to park must see it or be unparked
+                    SEQUENCE.setVolatile(sequence, index, pos + 1);
+                    return true;
+                }
+                pos = witness;
+            } else if (diff < 0) {
+                // The consumer has not freed this cell yet: full
+                return false;
+            } else {
+                pos = (long) TAIL.getVolatile(this);
+            }
+        }
+    }
+
+    /**
+     * Hand up to {@code max} events to the handler in publication order.
+     * Must only be called from the single consumer thread.
+     */
+    int drain(Handler handler, int max) {
+        long pos = (long) HEAD.getOpaque(this);
+        int n = 0;
+        while (n < max) {
+            int index = (int) pos & mask;
+            if ((long) SEQUENCE.getAcquire(sequence, index) != pos + 1) {
+                break;
+            }
+            SensorSlot slot = slots[index];
+            byte kind = kinds[index];
+            long timestamp = timestamps[index];
+            long nanos = enqueuedNanos[index];
+            double value = values[index];
+            slots[index] = null;
+            SEQUENCE.setRelease(sequence, index, pos + capacity);
+            HEAD.setOpaque(this, ++pos);
+            n++;
+
+            handler.handle(slot, kind, timestamp, nanos, value);
+        }
+        return n;
+    }
+
+    /**
+     * Position the next published event gets; every event offered so far is before it
+     */
+    long tailPosition() {
+        return (long) TAIL.getVolatile(this);
+    }
+
+    /**
+     * Position of the next event to drain. Must only be called from the single consumer thread.
+     */
+    long headPosition() {
+        return (long) HEAD.getOpaque(this);
+    }
+
+    /**
+     * Called by the consumer after announcing it is about to park, hence the volatile read
+     */
+    boolean isEmpty() {
+        long pos = (long) HEAD.getOpaque(this);
+        return (long) SEQUENCE.getVolatile(sequence, (int) pos & mask) != pos + 1;
+    }
+
+    /**
+     * Approximate number of queued events
+     */
+    int size() {
+        long size = (long) TAIL.getVolatile(this) - (long) HEAD.getOpaque(this);
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+}
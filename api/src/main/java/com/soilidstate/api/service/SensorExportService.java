@@ -0,0 +1,242 @@
+package com.soilidstate.api.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.soilidstate.api.config.SensorExportProperties;
+import com.soilidstate.api.entity.RegisteredSensor;
+import com.soilidstate.api.repository.RegisteredSensorRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Streams persisted readings from sensor_readings as CSV or NDJSON.
+ * <p>
+ * Each sensor is read with its own index-ordered query through a server-side cursor,
+ * {@code fetchSize} rows at a time, and every row is written to the output as soon as
+ * it is fetched, so heap use does not depend on the size of the export. All sensors
+ * are read in one read-only transaction, so the export is a consistent snapshot.
+ * A semaphore caps concurrent exports, keeping most of the connection pool for the
+ * write-behind writers and the API.
+ */
+@Slf4j
+@Service
+public class SensorExportService {
+
+    private static final String SELECT_SQL = """
+            SELECT (extract(epoch FROM reading_time) * 1000)::bigint AS reading_ms, value
+            FROM sensor_readings
+            WHERE sensor_id = ?
+              AND reading_time >= to_timestamp(?::double precision / 1000)
+              AND reading_time < to_timestamp(?::double precision / 1000)
+            ORDER BY reading_time
+            """;
+
+    private static final int WRITE_BUFFER = 64 * 1024;
+
+    /** A sensor to export, with the name and unit written to each row */
+    public record ExportedSensor(String sensorId, String name, String unit) {
+    }
+
+    private final SensorExportProperties properties;
+    private final RegisteredSensorRepository sensorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Semaphore permits;
+
+    public SensorExportService(SensorExportProperties properties, RegisteredSensorRepository sensorRepository,
+                               DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.sensorRepository = sensorRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.getFetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // The PostgreSQL driver only uses a cursor inside a transaction
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setTimeout((int) properties.getTimeout().toSeconds());
+        this.permits = new Semaphore(properties.getMaxConcurrent());
+    }
+
+    public int getMaxSensors() {
+        return properties.getMaxSensors();
+    }
+
+    /**
+     * The user's registered sensors matching the type and hub port of the filter, on one
+     * connection or on all of them if {@code connectionId} is null. Read from the database,
+     * so sensors of disconnected connections and sensors that failed to reopen are included.
+     */
+    public List<ExportedSensor> findSensors(Long userId, Long connectionId, SensorFilter filter) {
+        List<RegisteredSensor> rows = connectionId != null
+                ? sensorRepository.findByUserIdAndConnectionIdOrderBySensorName(userId, connectionId)
+                : sensorRepository.findByUserIdOrderBySensorName(userId);
+        List<ExportedSensor> sensors = new ArrayList<>(rows.size());
+        for (RegisteredSensor row : rows) {
+            if ((filter.type() == null || filter.type().name().equals(row.getSensorType()))
+                    && (filter.hubPort() == null || filter.hubPort().equals(row.getHubPort()))) {
+                sensors.add(new ExportedSensor(row.getPhidgetSensorId(), row.getSensorName(), unitOf(row)));
+            }
+        }
+        return sensors;
+    }
+
+    /**
+     * Units are stored for virtual sensors only; the others have their type's unit
+     */
+    private static String unitOf(RegisteredSensor row) {
+        if (row.getUnit() != null) {
+            return row.getUnit();
+        }
+        try {
+            return SensorType.from(row.getSensorType()).unit();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reserve one of the export slots; false if all are in use.
+     * The caller must {@link #release()} it once the export is done.
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Write the readings of the sensors in [from, to) to {@code out}, sensor by sensor in time order.
+     * The stream is flushed but not closed.
+     */
+    public void export(List<ExportedSensor> sensors, long from, long to, ExportFormat format, OutputStream out)
+            throws IOException {
+        long start = System.nanoTime();
+        RowWriter writer = format == ExportFormat.CSV ? new CsvWriter(out) : new NdjsonWriter(out, jsonFactory);
+        long[] rows = new long[1];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (ExportedSensor sensor : sensors) {
+                    RowCallbackHandler handler = rs -> {
+                        try {
+                            writer.write(sensor, rs.getLong(1), rs.getDouble(2));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        rows[0]++;
+                    };
+                    jdbcTemplate.query(SELECT_SQL, handler, sensor.sensorId(), from, to);
+                }
+            });
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; the transaction has been rolled back
+            throw e.getCause();
+        }
+        log.info("Exported {} readings of {} sensors as {} in {} ms", rows[0], sensors.size(), format,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private interface RowWriter {
+        void write(ExportedSensor sensor, long timestamp, double value) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * sensor_id,sensor_name,unit,time,timestamp,value with an ISO-8601 UTC time and epoch millis
+     */
+    private static final class CsvWriter implements RowWriter {
+        private final Writer out;
+        private ExportedSensor current;
+        private String prefix;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER);
+            this.out.write("sensor_id,sensor_name,unit,time,timestamp,value\n");
+        }
+
+        @Override
+        public void write(ExportedSensor sensor, long timestamp, double value) throws IOException {
+            if (sensor != current) {
+                current = sensor;
+                prefix = escape(sensor.sensorId()) + ',' + escape(sensor.name()) + ',' + escape(sensor.unit()) + ',';
+            }
+            out.write(prefix);
+            out.write(Instant.ofEpochMilli(timestamp).toString());
+            out.write(',');
+            out.write(Long.toString(timestamp));
+            out.write(',');
+            out.write(Double.toString(value));
+            out.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+
+        private static String escape(String field) {
+            if (field == null) {
+                return "";
+            }
+            if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+                return field;
+            }
+            return '"' + field.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    /**
+     * One {"sensorId", "sensorName", "unit", "timestamp", "value"} object per line
+     */
+    private static final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator out;
+        private boolean empty = true;
+
+        NdjsonWriter(OutputStream out, JsonFactory factory) throws IOException {
+            this.out = factory.createGenerator(out);
+            this.out.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        @Override
+        public void write(ExportedSensor sensor, long timestamp, double value) throws IOException {
+            out.writeStartObject();
+            out.writeStringField("sensorId", sensor.sensorId());
+            out.writeStringField("sensorName", sensor.name());
+            out.writeStringField("unit", sensor.unit());
+            out.writeNumberField("timestamp", timestamp);
+            out.writeNumberField("value", value);
+            out.writeEndObject();
+            empty = false;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!empty) {
+                // The pretty printer only separates objects; end the last line too
+                out.writeRaw('\n');
+            }
+            out.flush();
+        }
+    }
+}
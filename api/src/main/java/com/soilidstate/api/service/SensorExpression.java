@@ -0,0 +1,396 @@
+package com.soilidstate.api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Arithmetic expression over named sensor inputs, compiled once into a tree of
+ * nodes that evaluates on primitives without allocating.
+ * <p>
+ * Supports numbers, input names, {@code + - * / ^}, unary minus, parentheses and
+ * these functions; sub-expressions without inputs are folded into constants.
+ * <pre>
+ * abs(x) sqrt(x) exp(x) ln(x) log10(x) pow(x, y) min(a, b, ...) max(a, b, ...)
+ * clamp(x, lo, hi)
+ * poly(x, c0, c1, ..., cn)           c0 + c1*x + ... + cn*x^n
+ * curve(x, x0, y0, x1, y1, ...)      piecewise linear calibration curve, x0 &lt; x1 &lt; ...,
+ *                                    clamped to y0 and yn outside the points
+ * </pre>
+ * Example, volumetric water content from a VWC probe and VPD from temperature and humidity:
+ * <pre>
+ * curve(raw, 0.0, 0, 1.1, 10, 1.3, 15, 1.82, 40, 2.2, 50)
+ * 0.6108 * exp(17.27 * t / (t + 237.3)) * (1 - rh / 100)
+ * </pre>
+ */
+public final class SensorExpression {
+
+    static final int MAX_LENGTH = 2000;
+    static final int MAX_INPUTS = 16;
+
+    private final String source;
+    private final List<String> inputs;
+    private final Node root;
+
+    private SensorExpression(String source, List<String> inputs, Node root) {
+        this.source = source;
+        this.inputs = inputs;
+        this.root = root;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static SensorExpression compile(String source) {
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Expression is empty");
+        }
+        if (source.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Expression is longer than " + MAX_LENGTH + " characters");
+        }
+        Parser parser = new Parser(source);
+        Node root = parser.parse();
+        return new SensorExpression(source, List.copyOf(parser.inputs), root);
+    }
+
+    public String source() {
+        return source;
+    }
+
+    /**
+     * Input names in order of first use; {@link #evaluate} takes their values in this order
+     */
+    public List<String> inputs() {
+        return inputs;
+    }
+
+    public double evaluate(double[] values) {
+        return root.eval(values);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    @FunctionalInterface
+    private interface Node {
+        double eval(double[] v);
+    }
+
+    private record Constant(double value) implements Node {
+        @Override
+        public double eval(double[] v) {
+            return value;
+        }
+    }
+
+    private interface Unary {
+        double apply(double x);
+    }
+
+    private interface Binary {
+        double apply(double x, double y);
+    }
+
+    /**
+     * Recursive descent parser. Grammar, lowest precedence first:
+     * <pre>
+     * sum     = product (("+" | "-") product)*
+     * product = unary (("*" | "/") unary)*
+     * unary   = "-" unary | power
+     * power   = primary ("^" unary)?
+     * primary = number | name | name "(" sum ("," sum)* ")" | "(" sum ")"
+     * </pre>
+     */
+    private static final class Parser {
+        private final String s;
+        private int pos;
+        private final List<String> inputs = new ArrayList<>();
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Node parse() {
+            Node node = sum();
+            skipSpace();
+            if (pos < s.length()) {
+                throw error("Unexpected '" + s.charAt(pos) + "'");
+            }
+            return node;
+        }
+
+        private Node sum() {
+            Node left = product();
+            while (true) {
+                if (accept('+')) {
+                    left = binary(left, product(), Double::sum);
+                } else if (accept('-')) {
+                    left = binary(left, product(), (x, y) -> x - y);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node product() {
+            Node left = unary();
+            while (true) {
+                if (accept('*')) {
+                    left = binary(left, unary(), (x, y) -> x * y);
+                } else if (accept('/')) {
+                    left = binary(left, unary(), (x, y) -> x / y);
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        private Node unary() {
+            if (accept('-')) {
+                return unary(unary(), x -> -x);
+            }
+            return power();
+        }
+
+        private Node power() {
+            Node base = primary();
+            if (accept('^')) {
+                // Right associative, and binds tighter than a unary minus on its left: -2^2 = -4
+                return binary(base, unary(), Math::pow);
+            }
+            return base;
+        }
+
+        private Node primary() {
+            skipSpace();
+            if (pos >= s.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = s.charAt(pos);
+            if (accept('(')) {
+                Node inner = sum();
+                expect(')');
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return new Constant(number());
+            }
+            if (Character.isLetter(c) || c == '_') {
+                String name = name();
+                if (accept('(')) {
+                    return function(name, arguments());
+                }
+                return input(name);
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+
+        private List<Node> arguments() {
+            List<Node> args = new ArrayList<>();
+            if (accept(')')) {
+                return args;
+            }
+            do {
+                args.add(sum());
+            } while (accept(','));
+            expect(')');
+            return args;
+        }
+
+        private Node input(String name) {
+            int index = inputs.indexOf(name);
+            if (index < 0) {
+                if (inputs.size() == MAX_INPUTS) {
+                    throw error("More than " + MAX_INPUTS + " inputs");
+                }
+                index = inputs.size();
+                inputs.add(name);
+            }
+            int i = index;
+            return v -> v[i];
+        }
+
+        private Node function(String name, List<Node> args) {
+            return switch (name) {
+                case "abs" -> unary(one(name, args), Math::abs);
+                case "sqrt" -> unary(one(name, args), Math::sqrt);
+                case "exp" -> unary(one(name, args), Math::exp);
+                case "ln" -> unary(one(name, args), Math::log);
+                case "log10" -> unary(one(name, args), Math::log10);
+                case "pow" -> {
+                    arity(name, args, 2);
+                    yield binary(args.get(0), args.get(1), Math::pow);
+                }
+                case "min" -> fold(name, args, Math::min);
+                case "max" -> fold(name, args, Math::max);
+                case "clamp" -> {
+                    arity(name, args, 3);
+                    Node x = args.get(0);
+                    yield binary(binary(x, args.get(1), Math::max), args.get(2), Math::min);
+                }
+                case "poly" -> poly(args);
+                case "curve" -> curve(args);
+                default -> throw error("Unknown function " + name);
+            };
+        }
+
+        private Node one(String name, List<Node> args) {
+            arity(name, args, 1);
+            return args.get(0);
+        }
+
+        private void arity(String name, List<Node> args, int n) {
+            if (args.size() != n) {
+                throw error(name + " takes " + n + (n == 1 ? " argument" : " arguments"));
+            }
+        }
+
+        private Node fold(String name, List<Node> args, Binary op) {
+            if (args.isEmpty()) {
+                throw error(name + " needs at least one argument");
+            }
+            Node result = args.get(0);
+            for (int i = 1; i < args.size(); i++) {
+                result = binary(result, args.get(i), op);
+            }
+            return result;
+        }
+
+        private Node poly(List<Node> args) {
+            if (args.size() < 2) {
+                throw error("poly needs a value and at least one coefficient");
+            }
+            Node x = args.get(0);
+            double[] c = constants("poly", args.subList(1, args.size()));
+            // Horner's scheme
+            return unary(x, value -> {
+                double y = c[c.length - 1];
+                for (int i = c.length - 2; i >= 0; i--) {
+                    y = y * value + c[i];
+                }
+                return y;
+            });
+        }
+
+        private Node curve(List<Node> args) {
+            if (args.size() < 5 || args.size() % 2 == 0) {
+                throw error("curve needs a value and at least two x, y points");
+            }
+            Node x = args.get(0);
+            double[] points = constants("curve", args.subList(1, args.size()));
+            int n = points.length / 2;
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = points[2 * i];
+                ys[i] = points[2 * i + 1];
+                if (i > 0 && xs[i] <= xs[i - 1]) {
+                    throw error("curve points must be in increasing x order");
+                }
+            }
+            return unary(x, value -> interpolate(xs, ys, value));
+        }
+
+        private double[] constants(String name, List<Node> args) {
+            double[] values = new double[args.size()];
+            for (int i = 0; i < values.length; i++) {
+                if (!(args.get(i) instanceof Constant constant)) {
+                    throw error(name + " coefficients must be constants");
+                }
+                values[i] = constant.value();
+            }
+            return values;
+        }
+
+        private static Node unary(Node x, Unary op) {
+            if (x instanceof Constant c) {
+                return new Constant(op.apply(c.value()));
+            }
+            return v -> op.apply(x.eval(v));
+        }
+
+        private static Node binary(Node x, Node y, Binary op) {
+            if (x instanceof Constant a && y instanceof Constant b) {
+                return new Constant(op.apply(a.value(), b.value()));
+            }
+            return v -> op.apply(x.eval(v), y.eval(v));
+        }
+
+        private double number() {
+            int start = pos;
+            while (pos < s.length() && (Character.isDigit(s.charAt(pos)) || s.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (pos < s.length() && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+                int mark = pos++;
+                if (pos < s.length() && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) {
+                    pos++;
+                }
+                if (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                    while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                        pos++;
+                    }
+                } else {
+                    pos = mark;
+                }
+            }
+            try {
+                return Double.parseDouble(s.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number " + s.substring(start, pos));
+            }
+        }
+
+        private String name() {
+            int start = pos;
+            while (pos < s.length() && (Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_')) {
+                pos++;
+            }
+            return s.substring(start, pos);
+        }
+
+        private boolean accept(char c) {
+            skipSpace();
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+    }
+
+    static double interpolate(double[] xs, double[] ys, double x) {
+        int n = xs.length;
+        if (x <= xs[0]) {
+            return ys[0];
+        }
+        if (x >= xs[n - 1]) {
+            return ys[n - 1];
+        }
+        int i = Arrays.binarySearch(xs, x);
+        if (i >= 0) {
+            return ys[i];
+        }
+        int hi = -i - 1;
+        int lo = hi - 1;
+        return ys[lo] + (ys[hi] - ys[lo]) * (x - xs[lo]) / (xs[hi] - xs[lo]);
+    }
+}
@@ -0,0 +1,35 @@
+package com.soilidstate.api.service;
+
+/**
+ * Selects sensors of a listing. Null fields match everything.
+ *
+ * @param namePrefix case-sensitive prefix of the sensor name
+ */
+public record SensorFilter(SensorType type, Integer hubPort, Integer channel, Boolean attached, String namePrefix) {
+
+    public static final SensorFilter NONE = new SensorFilter(null, null, null, null, null);
+
+    /**
+     * Build a filter from request parameters
+     *
+     * @throws IllegalArgumentException if the sensor type is unknown
+     */
+    public static SensorFilter of(String type, Integer hubPort, Integer channel, Boolean attached, String namePrefix) {
+        return new SensorFilter(
+                type != null && !type.isEmpty() ? SensorType.from(type) : null,
+                hubPort, channel, attached,
+                namePrefix != null && !namePrefix.isEmpty() ? namePrefix : null);
+    }
+
+    public boolean isEmpty() {
+        return type == null && hubPort == null && channel == null && attached == null && namePrefix == null;
+    }
+
+    public boolean matches(SensorSlot slot) {
+        return (type == null || type == slot.type())
+                && (hubPort == null || hubPort == slot.hubPort())
+                && (channel == null || channel == slot.channel())
+                && (namePrefix == null || slot.name().startsWith(namePrefix))
+                && (attached == null || attached == slot.isAttached());
+    }
+}
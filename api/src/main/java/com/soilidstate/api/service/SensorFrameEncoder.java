@@ -0,0 +1,275 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.SensorDataResponse;
+import com.soilidstate.api.dto.SensorHistoryResponse;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Encodes sensor data as compact binary frames for clients on slow links.
+ * <p>
+ * A data frame carries a dictionary of the static sensor metadata (id, type, name,
+ * unit, hub port, channel) and the readings as (sensor index, timestamp, value)
+ * tuples. The dictionary has a version, a hash of its content; a client that sends
+ * the version it already holds gets frames without the dictionary. All numbers are
+ * big-endian; "varint" is an unsigned LEB128, "zigzag" a zig-zag encoded varint and
+ * timestamps are epoch millis.
+ * <pre>
+ * frame      = "SF" u8:formatVersion(2) u8:kind(1 = data, 2 = history) body
+ * data       = i64:dataVersion u8:flags(1 = full, 2 = has dictionary) i64:dictionaryVersion
+ *              [varint:count entry*] varint:count i64:baseTimestamp reading*
+ * entry      = string:sensorId string:sensorType string:sensorName string:unit zigzag:hubPort zigzag:channel
+ * reading    = varint:sensorIndex varint:timestamp-baseTimestamp u8:flags(1 = attached, 2 = has value) [f64:value]
+ * history    = string:sensorId string:unit varint:count [i64:firstTimestamp zigzag:delta* f64:value*]
+ * string     = varint:byteLength utf8
+ * </pre>
+ * Virtual sensors have no hub port or channel; both are -1. Version 1 wrote hub port and
+ * channel as plain varints, which readers of unsigned 32-bit varints can't decode for -1;
+ * readers must check the format version and reject unknown ones.
+ */
+@Service
+public class SensorFrameEncoder {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.soilidstate.frame";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    /** Request header with the dictionary version the client holds; response header with the frame's */
+    public static final String DICTIONARY_HEADER = "X-Sensor-Dictionary";
+
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte KIND_DATA = 1;
+    private static final byte KIND_HISTORY = 2;
+
+    private static final int FLAG_FULL = 1;
+    private static final int FLAG_DICTIONARY = 2;
+    private static final int FLAG_ATTACHED = 1;
+    private static final int FLAG_VALUE = 2;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * @param dictionaryVersion hex string, as sent in {@link #DICTIONARY_HEADER}
+     */
+    public record Frame(byte[] bytes, String dictionaryVersion) {
+    }
+
+    /**
+     * True if the Accept header explicitly asks for frames; wildcards alone mean JSON
+     */
+    public static boolean isAccepted(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return false;
+        }
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (type.equalsTypeAndSubtype(MEDIA_TYPE) && type.getQualityValue() > 0) {
+                    return true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return false;
+    }
+
+    /**
+     * Encode latest readings against a dictionary of all sensors in scope, which may
+     * include sensors without a reading in this frame.
+     *
+     * @param sensors        sensors of the dictionary; readings of other sensors are appended to it
+     * @param knownDictionary dictionary version the client holds, or null
+     */
+    public Frame encodeData(Collection<SensorSlot> sensors, Collection<SensorDataResponse> readings,
+                            long dataVersion, boolean full, String knownDictionary) {
+        List<Entry> dictionary = new ArrayList<>(sensors.size());
+        for (SensorSlot slot : sensors) {
+            dictionary.add(new Entry(slot.sensorId(), slot.type().name(), slot.name(), slot.unit(), slot.hubPort(), slot.channel()));
+        }
+        // Sorted, so the same sensors always give the same indexes and version
+        dictionary.sort(Comparator.comparing(Entry::sensorId));
+
+        Map<String, Integer> indexes = new HashMap<>(dictionary.size() * 2);
+        for (int i = 0; i < dictionary.size(); i++) {
+            indexes.put(dictionary.get(i).sensorId(), i);
+        }
+        for (SensorDataResponse reading : readings) {
+            if (!indexes.containsKey(reading.getSensorId())) {
+                // Registered after the dictionary was collected
+                indexes.put(reading.getSensorId(), dictionary.size());
+                dictionary.add(new Entry(reading.getSensorId(), reading.getSensorType(), reading.getSensorName(),
+                        reading.getUnit(), reading.getHubPort(), reading.getChannel()));
+            }
+        }
+
+        long dictionaryHash = hash(dictionary);
+        String version = Long.toHexString(dictionaryHash);
+        boolean sendDictionary = !version.equals(knownDictionary);
+
+        long base = Long.MAX_VALUE;
+        for (SensorDataResponse reading : readings) {
+            base = Math.min(base, timestampOf(reading));
+        }
+        if (base == Long.MAX_VALUE) {
+            base = 0;
+        }
+
+        Buffer out = new Buffer(64 + readings.size() * 14 + (sendDictionary ? dictionary.size() * 64 : 0));
+        out.writeHeader(KIND_DATA);
+        out.writeLong(dataVersion);
+        out.writeByte((full ? FLAG_FULL : 0) | (sendDictionary ? FLAG_DICTIONARY : 0));
+        out.writeLong(dictionaryHash);
+        if (sendDictionary) {
+            out.writeVarint(dictionary.size());
+            for (Entry entry : dictionary) {
+                out.writeString(entry.sensorId());
+                out.writeString(entry.sensorType());
+                out.writeString(entry.sensorName());
+                out.writeString(entry.unit());
+                // Zig-zag, so the -1 of virtual sensors takes one byte
+                out.writeVarint(zigZag(entry.hubPort()));
+                out.writeVarint(zigZag(entry.channel()));
+            }
+        }
+
+        out.writeVarint(readings.size());
+        out.writeLong(base);
+        for (SensorDataResponse reading : readings) {
+            out.writeVarint(indexes.get(reading.getSensorId()));
+            out.writeVarint(timestampOf(reading) - base);
+            Double value = reading.getValue();
+            out.writeByte((reading.isAttached() ? FLAG_ATTACHED : 0) | (value != null ? FLAG_VALUE : 0));
+            if (value != null) {
+                out.writeDouble(value);
+            }
+        }
+        return new Frame(out.toByteArray(), version);
+    }
+
+    /**
+     * Encode a history query; timestamps are delta encoded against the previous one
+     */
+    public byte[] encodeHistory(SensorHistoryResponse history) {
+        int count = history.getCount();
+        Buffer out = new Buffer(64 + count * 11);
+        out.writeHeader(KIND_HISTORY);
+        out.writeString(history.getSensorId());
+        out.writeString(history.getUnit());
+        out.writeVarint(count);
+        if (count > 0) {
+            long[] timestamps = history.getTimestamps();
+            double[] values = history.getValues();
+            out.writeLong(timestamps[0]);
+            for (int i = 1; i < count; i++) {
+                // History is in time order; zig-zag keeps a clock step backwards encodable
+                out.writeVarint(zigZag(timestamps[i] - timestamps[i - 1]));
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeDouble(values[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static long timestampOf(SensorDataResponse reading) {
+        return reading.getTimestamp() != null ? reading.getTimestamp() : 0;
+    }
+
+    private static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long hash(List<Entry> dictionary) {
+        long h = FNV_OFFSET;
+        for (Entry entry : dictionary) {
+            h = hash(h, entry.sensorId());
+            h = hash(h, entry.sensorType());
+            h = hash(h, entry.sensorName());
+            h = hash(h, entry.unit());
+            h = (h ^ entry.hubPort()) * FNV_PRIME;
+            h = (h ^ entry.channel()) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long hash(long h, String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                h = (h ^ s.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Separator, so ("ab", "c") and ("a", "bc") differ
+        return (h ^ 0xff) * FNV_PRIME;
+    }
+
+    private record Entry(String sensorId, String sensorType, String sensorName, String unit, int hubPort, int channel) {
+        Entry(String sensorId, String sensorType, String sensorName, String unit, Integer hubPort, Integer channel) {
+            this(sensorId, sensorType, sensorName, unit, hubPort != null ? hubPort : 0, channel != null ? channel : 0);
+        }
+    }
+
+    /**
+     * Growable big-endian byte buffer; unlike a DataOutputStream it has no locking or checked exceptions
+     */
+    private static final class Buffer {
+        private byte[] bytes;
+        private int size;
+
+        Buffer(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeHeader(byte kind) {
+            writeByte('S');
+            writeByte('F');
+            writeByte(FORMAT_VERSION);
+            writeByte(kind);
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeDouble(double v) {
+            writeLong(Double.doubleToRawLongBits(v));
+        }
+
+        void writeVarint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void writeString(String s) {
+            byte[] utf8 = s != null ? s.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            writeVarint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.soilidstate.api.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity ring of readings for one sensor, stored as primitive arrays.
+ * <p>
+ * Safe for a single writer and any number of readers. The writer announces the slot it
+ * is about to overwrite through {@code claimed} before touching the arrays, and publishes
+ * the new {@code head} afterwards. Readers copy without locking and then discard anything
+ * the writer may have overwritten while they were copying.
+ */
+final class SensorHistoryBuffer {
+
+    private static final VarHandle HEAD;
+    private static final VarHandle CLAIMED;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(SensorHistoryBuffer.class, "head", long.class);
+            CLAIMED = lookup.findVarHandle(SensorHistoryBuffer.class, "claimed", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] timestamps;
+    private final double[] values;
+    private final int capacity;
+
+    /** Number of readings published so far */
+    @SuppressWarnings("unused")
+    private long head;
+
+    /** Number of readings the writer has started writing */
+    @SuppressWarnings("unused")
+    private long claimed;
+
+    SensorHistoryBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Append a reading. Must only be called from one thread at a time.
+     */
+    void append(long timestamp, double value) {
+        long h = (long) HEAD.getOpaque(this);
+        CLAIMED.setOpaque(this, h + 1);
+        VarHandle.storeStoreFence();
+
+        int i = (int) (h % capacity);
+        timestamps[i] = timestamp;
+        values[i] = value;
+
+        HEAD.setRelease(this, h + 1);
+    }
+
+    /**
+     * Copy the newest readings with {@code from <= timestamp <= to}, at most {@code limit},
+     * in ascending time order.
+     */
+    Range read(long from, long to, int limit) {
+        int max = Math.min(Math.max(limit, 0), capacity);
+        long[] ts = new long[max];
+        double[] vs = new double[max];
+        long[] copied = new long[max];
+
+        long h = (long) HEAD.getAcquire(this);
+        long oldest = Math.max(0, h - capacity);
+
+        // Walk newest to oldest so the limit keeps the most recent readings
+        int n = 0;
+        for (long idx = h - 1; idx >= oldest && n < max; idx--) {
+            int i = (int) (idx % capacity);
+            long t = timestamps[i];
+            if (t < from) break;
+            if (t <= to) {
+                ts[n] = t;
+                vs[n] = values[i];
+                copied[n] = idx;
+                n++;
+            }
+        }
+
+        VarHandle.loadLoadFence();
+        long firstValid = (long) CLAIMED.getOpaque(this) - capacity;
+
+        // Copies are newest first, so anything the writer lapped is a suffix
+        while (n > 0 && copied[n - 1] < firstValid) {
+            n--;
+        }
+
+        reverse(ts, vs, n);
+        return new Range(Arrays.copyOf(ts, n), Arrays.copyOf(vs, n));
+    }
+
+    private static void reverse(long[] ts, double[] vs, int n) {
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            long t = ts[i];
+            ts[i] = ts[j];
+            ts[j] = t;
+            double v = vs[i];
+            vs[i] = vs[j];
+            vs[j] = v;
+        }
+    }
+
+    record Range(long[] timestamps, double[] values) {}
+}
@@ -0,0 +1,71 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorHistoryProperties;
+import com.soilidstate.api.dto.SensorHistoryResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a bounded in-memory history of readings per sensor
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorHistoryService implements SensorDataListener {
+
+    private final SensorHistoryProperties properties;
+
+    private final Map<String, SensorHistoryBuffer> buffers = new ConcurrentHashMap<>();
+    private final Map<String, String> units = new ConcurrentHashMap<>();
+
+    @Override
+    public void onSensorData(SensorSlot slot, long timestamp, double value) {
+        SensorHistoryBuffer buffer = buffers.get(slot.sensorId());
+        if (buffer == null) {
+            buffer = buffers.computeIfAbsent(slot.sensorId(),
+                    id -> new SensorHistoryBuffer(properties.capacityFor(slot.type().name())));
+            units.put(slot.sensorId(), slot.unit());
+            // Removal deactivates the slot before dropping its buffer; if that raced with us, drop it again
+            if (!slot.isActive()) {
+                onSensorRemoved(slot.sensorId());
+                return;
+            }
+        }
+        buffer.append(timestamp, value);
+    }
+
+    @Override
+    public void onSensorRemoved(String sensorId) {
+        buffers.remove(sensorId);
+        units.remove(sensorId);
+    }
+
+    /**
+     * Get readings for a sensor between {@code from} and {@code to} (epoch millis, inclusive),
+     * newest {@code limit} points in ascending time order
+     */
+    public SensorHistoryResponse getHistory(String sensorId, long from, long to, int limit) {
+        int effectiveLimit = Math.min(limit, properties.getMaxQueryLimit());
+
+        SensorHistoryResponse response = new SensorHistoryResponse();
+        response.setSensorId(sensorId);
+        response.setUnit(units.get(sensorId));
+
+        SensorHistoryBuffer buffer = buffers.get(sensorId);
+        if (buffer == null) {
+            response.setTimestamps(new long[0]);
+            response.setValues(new double[0]);
+            return response;
+        }
+
+        SensorHistoryBuffer.Range range = buffer.read(from, to, effectiveLimit);
+        response.setCount(range.timestamps().length);
+        response.setTimestamps(range.timestamps());
+        response.setValues(range.values());
+        return response;
+    }
+}
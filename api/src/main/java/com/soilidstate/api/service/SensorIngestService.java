@@ -0,0 +1,146 @@
+package com.soilidstate.api.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Shared ingest stage for all sessions: versions every write into a {@link SensorSlot}
+ * and fans it out to the {@link SensorDataListener}s, then re-evaluates the
+ * {@link VirtualSensor}s computed from the slot. Fed by {@link SensorEventDispatcher}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorIngestService {
+
+    /**
+     * Bumped by every data write; each slot carries the version it was last written at.
+     * Seeded from the boot time, 1024 versions per millisecond, so versions keep growing
+     * across restarts and ETags or {@code since} values from a previous run never match
+     * new data. The seed stays below 2^53, so JavaScript clients read versions exactly.
+     */
+    private final AtomicLong dataVersion = new AtomicLong(System.currentTimeMillis() << 10);
+    /** Writers share it while assigning a version and writing the slot; readers take it exclusively to see no gaps */
+    private final StampedLock publishGate = new StampedLock();
+
+    private final List<SensorDataListener> listeners;
+    private final SensorMetrics metrics;
+    private SensorDataListener[] listenerArray;
+
+    @PostConstruct
+    void init() {
+        // Indexed loop on the hot path avoids an iterator per event
+        listenerArray = listeners.toArray(SensorDataListener[]::new);
+    }
+
+    /**
+     * Hot path: runs for every change event, on the sensor's dispatch thread. Writes
+     * primitives into the sensor's preallocated slot and hands them to listeners
+     * without allocating.
+     */
+    public void updateSensorData(SensorSlot slot, double value, long timestamp, long enqueuedNanos) {
+        metrics.recordEvent(slot.type());
+        if (!slot.isActive() || slot.withinDeadband(value)) return;
+
+        long stamp = publishGate.readLock();
+        try {
+            slot.writeValue(value, timestamp, dataVersion.incrementAndGet());
+        } finally {
+            publishGate.unlockRead(stamp);
+        }
+        metrics.recordVisible(enqueuedNanos);
+
+        SensorDataListener[] targets = listenerArray;
+        for (int i = 0; i < targets.length; i++) {
+            try {
+                targets[i].onSensorData(slot, timestamp, value);
+            } catch (RuntimeException e) {
+                log.error("Sensor listener {} failed for sensor {}", targets[i].getClass().getSimpleName(), slot.sensorId(), e);
+            }
+        }
+
+        VirtualSensor[] dependents = slot.dependents();
+        for (int i = 0; i < dependents.length; i++) {
+            try {
+                dependents[i].onInput(slot, value, timestamp, enqueuedNanos);
+            } catch (RuntimeException e) {
+                log.error("Virtual sensor {} failed for input {}", dependents[i].slot().sensorId(), slot.sensorId(), e);
+            }
+        }
+    }
+
+    public void updateAttached(SensorSlot slot, boolean attached, long timestamp) {
+        if (!slot.isActive()) return;
+
+        long stamp = publishGate.readLock();
+        try {
+            slot.writeAttached(attached, timestamp, dataVersion.incrementAndGet());
+        } finally {
+            publishGate.unlockRead(stamp);
+        }
+        metrics.recordAttachChange(attached);
+
+        SensorDataListener[] targets = listenerArray;
+        for (int i = 0; i < targets.length; i++) {
+            try {
+                targets[i].onAttachChange(slot, timestamp, attached);
+            } catch (RuntimeException e) {
+                log.error("Sensor listener {} failed for sensor {}", targets[i].getClass().getSimpleName(), slot.sensorId(), e);
+            }
+        }
+
+        VirtualSensor[] dependents = slot.dependents();
+        for (int i = 0; i < dependents.length; i++) {
+            dependents[i].onInputAttached(slot, attached, timestamp);
+        }
+    }
+
+    /**
+     * Deactivate a slot and tell listeners to drop its state
+     */
+    public void removeSensor(SensorSlot slot) {
+        slot.deactivate();
+        for (SensorDataListener listener : listenerArray) {
+            try {
+                listener.onSensorRemoved(slot.sensorId());
+            } catch (RuntimeException e) {
+                log.error("Sensor listener {} failed removing sensor {}", listener.getClass().getSimpleName(), slot.sensorId(), e);
+            }
+        }
+        for (VirtualSensor dependent : slot.dependents()) {
+            dependent.onInputRemoved(slot);
+        }
+    }
+
+    /**
+     * Allocate a version for a registration or removal
+     */
+    public long nextVersion() {
+        return dataVersion.incrementAndGet();
+    }
+
+    /**
+     * Current data version. If it equals a version a client has already seen, nothing changed since.
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * A version such that every write at or below it is already visible in the slots
+     */
+    public long getPublishedVersion() {
+        long stamp = publishGate.writeLock();
+        try {
+            return dataVersion.get();
+        } finally {
+            publishGate.unlockWrite(stamp);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.soilidstate.api.service;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the sensor pipeline.
+ * <p>
+ * Tags are limited to sensor type and outcome, never sensor or user ids, and all
+ * hot-path meters are created up front, so recording is an array lookup plus an
+ * atomic add.
+ */
+@Service
+public class SensorMetrics {
+
+    private static final SensorType[] TYPES = SensorType.values();
+
+    private final MeterRegistry registry;
+    private final Counter[] events = new Counter[TYPES.length];
+    private final Timer[] openSuccess = new Timer[TYPES.length];
+    private final Timer[] openFailure = new Timer[TYPES.length];
+    private final Timer ingestLatency;
+    private final Counter attached;
+    private final Counter detached;
+
+    public SensorMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        for (SensorType type : TYPES) {
+            events[type.ordinal()] = Counter.builder("sensor.events")
+                    .description("Data change events received from Phidget channels")
+                    .tag("type", type.name())
+                    .register(registry);
+            openSuccess[type.ordinal()] = openTimer(type, "success");
+            openFailure[type.ordinal()] = openTimer(type, "failure");
+        }
+
+        ingestLatency = Timer.builder("sensor.ingest.latency")
+                .description("Time from the Phidget callback until the value is visible in the latest-data snapshot")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        attached = Counter.builder("sensor.attach.changes")
+                .description("Channel attach and detach events")
+                .tag("state", "attached")
+                .register(registry);
+        detached = Counter.builder("sensor.attach.changes")
+                .description("Channel attach and detach events")
+                .tag("state", "detached")
+                .register(registry);
+    }
+
+    private Timer openTimer(SensorType type, String outcome) {
+        return Timer.builder("sensor.open")
+                .description("Time to create and open a Phidget channel")
+                .tag("type", type.name())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    void recordEvent(SensorType type) {
+        events[type.ordinal()].increment();
+    }
+
+    /**
+     * @param enqueuedNanos {@link System#nanoTime()} taken in the Phidget callback
+     */
+    void recordVisible(long enqueuedNanos) {
+        ingestLatency.record(System.nanoTime() - enqueuedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordAttachChange(boolean isAttached) {
+        (isAttached ? attached : detached).increment();
+    }
+
+    void recordOpen(SensorType type, long nanos, boolean success) {
+        (success ? openSuccess : openFailure)[type.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Register a counter backed by an existing monotonic count, read on scrape
+     */
+    void functionCounter(String name, String description, Supplier<Number> count) {
+        FunctionCounter.builder(name, count, c -> c.get().doubleValue())
+                .description(description)
+                .register(registry);
+    }
+
+    /**
+     * Register a gauge read on scrape, e.g. a map size
+     */
+    void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value)
+                .description(description)
+                .register(registry);
+    }
+}
@@ -0,0 +1,334 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorRollupProperties;
+import com.soilidstate.api.dto.SensorAggregateResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains minute, hour and day aggregates per sensor as readings arrive.
+ * <p>
+ * Readings only touch the open minute bucket. When a minute closes it is folded into
+ * the open hour bucket, and closed hours into the open day bucket, so coarser
+ * resolutions never rescan raw data. Closed buckets are upserted in the background
+ * with merge semantics, which also lets partial buckets flushed at shutdown be
+ * completed after a restart. While the database is unavailable at most
+ * {@code maxPending} closed buckets are kept; a dropped minute or hour bucket loses
+ * its resolution, not its readings, which are already in the next coarser bucket.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorRollupService implements SensorDataListener {
+
+    private static final RollupResolution[] LEVELS = RollupResolution.values();
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO %s AS t (sensor_id, bucket_start, min_value, max_value, sum_value, sample_count,
+                                 first_value, first_at, last_value, last_at)
+            VALUES (?, to_timestamp(?::double precision / 1000), ?, ?, ?, ?,
+                    ?, to_timestamp(?::double precision / 1000), ?, to_timestamp(?::double precision / 1000))
+            ON CONFLICT (sensor_id, bucket_start) DO UPDATE SET
+                min_value = LEAST(t.min_value, EXCLUDED.min_value),
+                max_value = GREATEST(t.max_value, EXCLUDED.max_value),
+                sum_value = t.sum_value + EXCLUDED.sum_value,
+                sample_count = t.sample_count + EXCLUDED.sample_count,
+                first_value = CASE WHEN EXCLUDED.first_at < t.first_at THEN EXCLUDED.first_value ELSE t.first_value END,
+                first_at = LEAST(t.first_at, EXCLUDED.first_at),
+                last_value = CASE WHEN EXCLUDED.last_at >= t.last_at THEN EXCLUDED.last_value ELSE t.last_value END,
+                last_at = GREATEST(t.last_at, EXCLUDED.last_at)
+            """;
+
+    private static final String SELECT_SQL = """
+            SELECT (extract(epoch FROM bucket_start) * 1000)::bigint AS bucket_ms,
+                   min_value, max_value, sum_value, sample_count, first_value, last_value
+            FROM %s
+            WHERE sensor_id = ?
+              AND bucket_start >= to_timestamp(?::double precision / 1000)
+              AND bucket_start <= to_timestamp(?::double precision / 1000)
+            ORDER BY bucket_start DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SensorRollupProperties properties;
+    private final SensorMetrics metrics;
+
+    private final Map<String, SensorRollups> rollups = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<ClosedBucket> closed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    /** Drops already logged; only touched by the flushing thread */
+    private long reportedDrops;
+
+    @PostConstruct
+    void init() {
+        metrics.gauge("sensor.rollups.pending", "Closed rollup buckets waiting to be persisted", pending::get);
+        metrics.functionCounter("sensor.rollups.dropped", "Closed rollup buckets dropped because too many were pending",
+                dropped::get);
+    }
+
+    @Override
+    public void onSensorData(SensorSlot slot, long timestamp, double value) {
+        SensorRollups state = rollups.get(slot.sensorId());
+        if (state == null) {
+            state = rollups.computeIfAbsent(slot.sensorId(), SensorRollups::new);
+            // Removal deactivates the slot before dropping its state; if that raced with us, drop it again
+            if (!slot.isActive()) {
+                rollups.remove(slot.sensorId(), state);
+                return;
+            }
+        }
+        state.add(timestamp, value);
+    }
+
+    @Override
+    public void onSensorRemoved(String sensorId) {
+        SensorRollups state = rollups.remove(sensorId);
+        if (state != null) {
+            state.closeAll();
+        }
+    }
+
+    /**
+     * Close buckets of sensors that have gone quiet and persist everything closed so far
+     */
+    @Scheduled(fixedDelayString = "${app.rollups.flush-interval:5s}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        rollups.values().forEach(state -> state.closeElapsed(now));
+        writeClosed();
+
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            log.warn("Dropped {} closed rollup buckets, {} still pending", drops - reportedDrops, pending.get());
+            reportedDrops = drops;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Persist partial buckets; the upsert merges them with the rest after a restart
+        rollups.values().forEach(SensorRollups::closeAll);
+        writeClosed();
+    }
+
+    /**
+     * Get the latest {@code limit} aggregates of a sensor in the range, oldest first,
+     * including the bucket still being filled
+     */
+    public SensorAggregateResponse getAggregates(String sensorId, RollupResolution resolution,
+                                                 long from, long to, int limit) {
+        // Newest first, so the limit keeps the most recent buckets
+        List<SensorAggregateResponse.Bucket> buckets = new ArrayList<>(jdbcTemplate.query(
+                SELECT_SQL.formatted(resolution.table()),
+                (rs, i) -> toBucket(rs.getLong("bucket_ms"), rs.getDouble("min_value"), rs.getDouble("max_value"),
+                        rs.getDouble("sum_value"), rs.getLong("sample_count"),
+                        rs.getDouble("first_value"), rs.getDouble("last_value")),
+                sensorId, from, to, limit));
+        Collections.reverse(buckets);
+
+        SensorRollups state = rollups.get(sensorId);
+        if (state != null) {
+            for (RollupBucket open : state.snapshot(resolution)) {
+                if (open.bucketStart >= from && open.bucketStart <= to) {
+                    mergeOpenBucket(buckets, open, limit);
+                }
+            }
+        }
+
+        SensorAggregateResponse response = new SensorAggregateResponse();
+        response.setSensorId(sensorId);
+        response.setResolution(resolution.name().toLowerCase());
+        response.setBuckets(buckets);
+        return response;
+    }
+
+    private void mergeOpenBucket(List<SensorAggregateResponse.Bucket> buckets, RollupBucket open, int limit) {
+        if (!buckets.isEmpty()) {
+            SensorAggregateResponse.Bucket tail = buckets.get(buckets.size() - 1);
+            if (tail.getBucketStart() == open.bucketStart) {
+                // Partially persisted before a restart: combine with what is in memory
+                long count = tail.getCount() + open.count;
+                tail.setMin(Math.min(tail.getMin(), open.min));
+                tail.setMax(Math.max(tail.getMax(), open.max));
+                tail.setAvg((tail.getAvg() * tail.getCount() + open.sum) / count);
+                tail.setCount(count);
+                tail.setLast(open.last);
+                return;
+            }
+        }
+        if (limit <= 0) return;
+        if (buckets.size() >= limit) {
+            // The open bucket is the newest
+            buckets.remove(0);
+        }
+        buckets.add(toBucket(open.bucketStart, open.min, open.max, open.sum, open.count, open.first, open.last));
+    }
+
+    private static SensorAggregateResponse.Bucket toBucket(long start, double min, double max, double sum,
+                                                          long count, double first, double last) {
+        SensorAggregateResponse.Bucket bucket = new SensorAggregateResponse.Bucket();
+        bucket.setBucketStart(start);
+        bucket.setMin(min);
+        bucket.setMax(max);
+        bucket.setAvg(count > 0 ? sum / count : 0);
+        bucket.setCount(count);
+        bucket.setFirst(first);
+        bucket.setLast(last);
+        return bucket;
+    }
+
+    private void writeClosed() {
+        if (closed.isEmpty()) return;
+
+        Map<RollupResolution, List<Object[]>> batches = new EnumMap<>(RollupResolution.class);
+        List<ClosedBucket> drained = new ArrayList<>();
+        ClosedBucket next;
+        while ((next = closed.poll()) != null) {
+            pending.decrementAndGet();
+            drained.add(next);
+            RollupBucket b = next.bucket();
+            batches.computeIfAbsent(next.resolution(), r -> new ArrayList<>()).add(new Object[]{
+                    next.sensorId(), b.bucketStart, b.min, b.max, b.sum, b.count,
+                    b.first, b.firstAt, b.last, b.lastAt});
+        }
+
+        batches.forEach((resolution, rows) -> {
+            try {
+                // One transaction per resolution so a failed batch can be re-queued without double counting
+                transactionTemplate.executeWithoutResult(tx ->
+                        jdbcTemplate.batchUpdate(UPSERT_SQL.formatted(resolution.table()), rows));
+            } catch (DataAccessException | TransactionException e) {
+                log.error("Failed to persist {} {} rollup buckets, will retry", rows.size(), resolution, e);
+                drained.stream()
+                        .filter(b -> b.resolution() == resolution)
+                        .forEach(this::enqueue);
+            }
+        });
+    }
+
+    private void enqueue(ClosedBucket bucket) {
+        if (pending.incrementAndGet() > properties.getMaxPending()) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        closed.add(bucket);
+    }
+
+    private record ClosedBucket(String sensorId, RollupResolution resolution, RollupBucket bucket) {}
+
+    /**
+     * Open buckets of one sensor, one per resolution
+     */
+    private final class SensorRollups {
+        private final String sensorId;
+        private final RollupBucket[] open = new RollupBucket[LEVELS.length];
+
+        private SensorRollups(String sensorId) {
+            this.sensorId = sensorId;
+            for (int i = 0; i < LEVELS.length; i++) {
+                open[i] = new RollupBucket();
+            }
+        }
+
+        synchronized void add(long timestamp, double value) {
+            RollupBucket minute = open[0];
+            long start = LEVELS[0].bucketStart(timestamp);
+            if (minute.isEmpty()) {
+                minute.reset(start);
+            } else if (start > minute.bucketStart) {
+                close(0);
+                minute.reset(start);
+            }
+            // Late readings are folded into the current minute
+            minute.add(timestamp, value);
+        }
+
+        synchronized void closeElapsed(long now) {
+            for (int i = 0; i < LEVELS.length; i++) {
+                RollupBucket bucket = open[i];
+                if (!bucket.isEmpty() && LEVELS[i].bucketStart(now) > bucket.bucketStart) {
+                    close(i);
+                }
+            }
+        }
+
+        synchronized void closeAll() {
+            for (int i = 0; i < LEVELS.length; i++) {
+                if (!open[i].isEmpty()) {
+                    close(i);
+                }
+            }
+        }
+
+        /**
+         * Copies of the open buckets at the given resolution. Finer open buckets have not been
+         * folded in yet, so they are merged here; at most two buckets result.
+         */
+        synchronized List<RollupBucket> snapshot(RollupResolution resolution) {
+            List<RollupBucket> views = new ArrayList<>(2);
+            for (int i = resolution.ordinal(); i >= 0; i--) {
+                RollupBucket bucket = open[i];
+                if (bucket.isEmpty()) continue;
+
+                long start = resolution.bucketStart(bucket.bucketStart);
+                RollupBucket view = views.stream()
+                        .filter(v -> v.bucketStart == start)
+                        .findFirst()
+                        .orElse(null);
+                if (view == null) {
+                    view = new RollupBucket();
+                    view.bucketStart = start;
+                    views.add(view);
+                }
+                view.merge(bucket);
+            }
+            views.sort(Comparator.comparingLong(v -> v.bucketStart));
+            return views;
+        }
+
+        /**
+         * Emit the bucket at this level and fold it into the next coarser one
+         */
+        private void close(int level) {
+            RollupBucket bucket = open[level];
+            enqueue(new ClosedBucket(sensorId, LEVELS[level], bucket.copy()));
+
+            int parentLevel = level + 1;
+            if (parentLevel < LEVELS.length) {
+                RollupBucket parent = open[parentLevel];
+                long parentStart = LEVELS[parentLevel].bucketStart(bucket.bucketStart);
+                if (!parent.isEmpty() && parent.bucketStart != parentStart) {
+                    close(parentLevel);
+                }
+                if (parent.isEmpty()) {
+                    parent.reset(parentStart);
+                }
+                parent.merge(bucket);
+            }
+            bucket.reset(bucket.bucketStart);
+        }
+    }
+}
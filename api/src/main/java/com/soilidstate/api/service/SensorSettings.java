@@ -0,0 +1,29 @@
+package com.soilidstate.api.service;
+
+/**
+ * Per-sensor sampling settings.
+ *
+ * @param dataInterval    device data interval in ms, null to keep the channel default
+ * @param changeTrigger   device-side change trigger in the sensor's unit, null to keep the default
+ * @param deadband        server-side deadband; readings closer than this to the last published value are dropped
+ * @param deadbandPercent whether the deadband is a percentage of the last value rather than an absolute amount
+ */
+public record SensorSettings(Integer dataInterval, Double changeTrigger, double deadband, boolean deadbandPercent) {
+
+    public static final SensorSettings DEFAULT = new SensorSettings(null, null, 0, false);
+
+    public String deadbandMode() {
+        return deadbandPercent ? "PERCENT" : "ABSOLUTE";
+    }
+
+    /**
+     * Apply the non-null fields of a partial update
+     */
+    public SensorSettings merge(Integer dataInterval, Double changeTrigger, Double deadband, String deadbandMode) {
+        return new SensorSettings(
+                dataInterval != null ? dataInterval : this.dataInterval,
+                changeTrigger != null ? changeTrigger : this.changeTrigger,
+                deadband != null ? deadband : this.deadband,
+                deadbandMode != null ? "PERCENT".equalsIgnoreCase(deadbandMode) : this.deadbandPercent);
+    }
+}
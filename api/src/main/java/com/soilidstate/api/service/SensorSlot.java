@@ -0,0 +1,278 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.SensorDataResponse;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Preallocated, mutable latest-value state of one sensor.
+ * <p>
+ * Writes are allocation free and guarded by a sequence lock: the writer makes
+ * {@code seq} odd, stores the primitive fields, then makes it even again. Readers
+ * retry until they see the same even sequence before and after copying, so they
+ * never observe a half-written reading. DTOs are only built when a reader asks.
+ */
+public final class SensorSlot {
+
+    private static final VarHandle SEQ;
+    private static final VarHandle STATE_DIRTY;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SEQ = lookup.findVarHandle(SensorSlot.class, "seq", long.class);
+            STATE_DIRTY = lookup.findVarHandle(SensorSlot.class, "stateDirty", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String sensorId;
+    private final long userId;
+    private final long connectionId;
+    private final SensorType type;
+    private final String name;
+    private final int hubPort;
+    private final int channel;
+    private final String unit;
+
+    @SuppressWarnings("unused")
+    private long seq;
+    private boolean hasValue;
+    private double value;
+    private boolean attached;
+    private long timestamp;
+    private long version;
+
+    @SuppressWarnings("unused")
+    private volatile boolean stateDirty;
+    private volatile boolean active = true;
+    private volatile SensorSettings settings = SensorSettings.DEFAULT;
+    /** Virtual sensors computed from this one; copied on change, read on every write */
+    private volatile VirtualSensor[] dependents = VirtualSensor.NONE;
+
+    public SensorSlot(String sensorId, long userId, long connectionId, SensorType type, String name, int hubPort, int channel) {
+        this(sensorId, userId, connectionId, type, name, hubPort, channel, type.unit());
+    }
+
+    public SensorSlot(String sensorId, long userId, long connectionId, SensorType type, String name, int hubPort, int channel,
+                      String unit) {
+        this.sensorId = sensorId;
+        this.userId = userId;
+        this.connectionId = connectionId;
+        this.type = type;
+        this.name = name;
+        this.hubPort = hubPort;
+        this.channel = channel;
+        this.unit = unit;
+    }
+
+    public String sensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Id of the user owning the sensor
+     */
+    public long userId() {
+        return userId;
+    }
+
+    /**
+     * Id of the Phidget connection (session) the sensor belongs to
+     */
+    public long connectionId() {
+        return connectionId;
+    }
+
+    public SensorType type() {
+        return type;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int hubPort() {
+        return hubPort;
+    }
+
+    public int channel() {
+        return channel;
+    }
+
+    public String unit() {
+        return unit;
+    }
+
+    /**
+     * False once the sensor has been unregistered; late events are ignored
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    void deactivate() {
+        active = false;
+    }
+
+    /**
+     * Flag the slot as changed since its state was last persisted.
+     * Returns true only for the call that made it dirty, so it is queued once per flush.
+     */
+    boolean markStateDirty() {
+        return !stateDirty && STATE_DIRTY.compareAndSet(this, false, true);
+    }
+
+    /**
+     * Called by the persister before it reads the slot, so a concurrent write marks it dirty again
+     */
+    void clearStateDirty() {
+        stateDirty = false;
+    }
+
+    VirtualSensor[] dependents() {
+        return dependents;
+    }
+
+    synchronized void addDependent(VirtualSensor dependent) {
+        VirtualSensor[] current = dependents;
+        VirtualSensor[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = dependent;
+        dependents = updated;
+    }
+
+    synchronized void removeDependent(VirtualSensor dependent) {
+        dependents = Arrays.stream(dependents)
+                .filter(d -> d != dependent)
+                .toArray(VirtualSensor[]::new);
+    }
+
+    public SensorSettings settings() {
+        return settings;
+    }
+
+    void setSettings(SensorSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * True if the reading is too close to the last published value to be worth publishing.
+     * Called by the writer before {@link #writeValue}, so it can read the fields directly.
+     */
+    boolean withinDeadband(double newValue) {
+        SensorSettings s = settings;
+        if (s.deadband() <= 0 || !hasValue) {
+            return false;
+        }
+        double delta = Math.abs(newValue - value);
+        double band = s.deadbandPercent() ? Math.abs(value) * s.deadband() / 100.0 : s.deadband();
+        return delta < band;
+    }
+
+    /**
+     * Record a new reading from an attached channel
+     */
+    void writeValue(double value, long timestamp, long version) {
+        long s = beginWrite();
+        this.hasValue = true;
+        this.value = value;
+        this.attached = true;
+        this.timestamp = timestamp;
+        this.version = version;
+        SEQ.setRelease(this, s + 2);
+    }
+
+    /**
+     * Record an attach or detach; like the device, the slot has no value until the next reading
+     */
+    void writeAttached(boolean attached, long timestamp, long version) {
+        long s = beginWrite();
+        this.hasValue = false;
+        this.value = 0;
+        this.attached = attached;
+        this.timestamp = timestamp;
+        this.version = version;
+        SEQ.setRelease(this, s + 2);
+    }
+
+    private long beginWrite() {
+        // Normally a single writer per channel; the CAS keeps attach and data events from interleaving
+        while (true) {
+            long s = (long) SEQ.getVolatile(this);
+            if ((s & 1) == 0 && SEQ.compareAndSet(this, s, s + 1)) {
+                return s;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Version of the last write, 0 if the slot was never written
+     */
+    public long version() {
+        while (true) {
+            long s1 = (long) SEQ.getAcquire(this);
+            long v = version;
+            VarHandle.loadLoadFence();
+            if ((s1 & 1) == 0 && s1 == (long) SEQ.getOpaque(this)) {
+                return v;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public boolean isAttached() {
+        while (true) {
+            long s1 = (long) SEQ.getAcquire(this);
+            boolean a = attached;
+            VarHandle.loadLoadFence();
+            if ((s1 & 1) == 0 && s1 == (long) SEQ.getOpaque(this)) {
+                return a;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Build a consistent DTO of the current state, or null if the slot was never written
+     */
+    public SensorDataResponse toResponse() {
+        boolean h;
+        double v;
+        boolean a;
+        long ts;
+        long ver;
+        while (true) {
+            long s1 = (long) SEQ.getAcquire(this);
+            h = hasValue;
+            v = value;
+            a = attached;
+            ts = timestamp;
+            ver = version;
+            VarHandle.loadLoadFence();
+            if ((s1 & 1) == 0 && s1 == (long) SEQ.getOpaque(this)) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        if (ver == 0) {
+            return null;
+        }
+
+        SensorDataResponse response = new SensorDataResponse();
+        response.setSensorId(sensorId);
+        response.setSensorType(type.name());
+        response.setSensorName(name);
+        response.setHubPort(hubPort);
+        response.setChannel(channel);
+        response.setValue(h ? v : null);
+        response.setUnit(unit);
+        response.setTimestamp(ts);
+        response.setAttached(a);
+        response.setVersion(ver);
+        return response;
+    }
+}
@@ -0,0 +1,133 @@
+package com.soilidstate.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.soilidstate.api.config.SensorSnapshotProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized latest-data snapshots, shared by all requests of a user.
+ * <p>
+ * A snapshot is the JSON body of {@code GET /sensors/data}, encoded once, plus its
+ * gzip variant. It is checked again when the data version moved on, but at most once
+ * per {@code minRebuildInterval}, and only re-encoded if the user's own data version
+ * changed; requests in between write the same bytes. Only one request rebuilds a
+ * snapshot at a time, the others keep serving the previous one.
+ */
+@Slf4j
+@Service
+public class SensorSnapshotCache {
+
+    /**
+     * An encoded snapshot; the arrays must not be modified
+     *
+     * @param version user data version the snapshot includes, for its ETag
+     */
+    public record Snapshot(long version, byte[] json, byte[] gzip) {
+    }
+
+    private record Scope(long userId, Long connectionId) {
+    }
+
+    private static final class Entry {
+        private final ReentrantLock rebuild = new ReentrantLock();
+        private volatile Snapshot snapshot;
+        /** Global data version when the snapshot was last checked */
+        private volatile long dataVersion;
+        private volatile long builtAtNanos;
+    }
+
+    private final PhidgetService phidgetService;
+    private final ObjectMapper objectMapper;
+    private final long minRebuildNanos;
+    private final Cache<Scope, Entry> entries;
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public SensorSnapshotCache(PhidgetService phidgetService, ObjectMapper objectMapper,
+                               SensorSnapshotProperties properties, SensorMetrics metrics) {
+        this.phidgetService = phidgetService;
+        this.objectMapper = objectMapper;
+        this.minRebuildNanos = properties.getMinRebuildInterval().toNanos();
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfterAccess(properties.getIdleTimeout())
+                .build();
+        metrics.functionCounter("sensor.snapshot.rebuilds", "Latest-data snapshots serialized", rebuilds::get);
+        metrics.gauge("sensor.snapshot.entries", "Cached latest-data snapshots", entries::estimatedSize);
+    }
+
+    /**
+     * Current snapshot of the user's sensors, or of one connection
+     */
+    public Snapshot get(long userId, Long connectionId) {
+        Entry entry = entries.get(new Scope(userId, connectionId), scope -> new Entry());
+
+        Snapshot snapshot = entry.snapshot;
+        if (snapshot != null && !isStale(entry)) {
+            return snapshot;
+        }
+
+        // Someone else is rebuilding: serve the previous snapshot instead of waiting
+        if (snapshot != null && !entry.rebuild.tryLock()) {
+            return snapshot;
+        }
+        if (snapshot == null) {
+            entry.rebuild.lock();
+        }
+        try {
+            snapshot = entry.snapshot;
+            if (snapshot == null || isStale(entry)) {
+                // Read first, so a write racing with the check makes the next request look again
+                long dataVersion = phidgetService.getDataVersion();
+                long version = phidgetService.getUserDataVersion(userId, connectionId);
+                if (snapshot == null || snapshot.version() != version) {
+                    snapshot = build(version, userId, connectionId);
+                    entry.snapshot = snapshot;
+                }
+                entry.dataVersion = dataVersion;
+                entry.builtAtNanos = System.nanoTime();
+            }
+            return snapshot;
+        } finally {
+            entry.rebuild.unlock();
+        }
+    }
+
+    private boolean isStale(Entry entry) {
+        // The plain data version is a volatile read; the user's one would contend with ingest
+        return entry.dataVersion != phidgetService.getDataVersion()
+                && System.nanoTime() - entry.builtAtNanos >= minRebuildNanos;
+    }
+
+    private Snapshot build(long version, long userId, Long connectionId) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(
+                    phidgetService.getLatestSensorData(userId, connectionId, SensorFilter.NONE));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize sensor snapshot", e);
+        }
+        rebuilds.incrementAndGet();
+        return new Snapshot(version, json, gzip(json));
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,47 @@
+package com.soilidstate.api.service;
+
+import com.phidget22.PhidgetException;
+import com.soilidstate.api.dto.ConnectionRequest;
+
+/**
+ * Where sensor channels come from: the phidget22 network library, or a simulator
+ * for load testing without hardware. Selected by {@code app.sensor-source}.
+ * <p>
+ * Channels publish their attach, detach and data events to the
+ * {@link SensorEventDispatcher}.
+ */
+public interface SensorSource {
+
+    /**
+     * Called when the first session opens
+     */
+    void startDiscovery();
+
+    /**
+     * Called when the last session closes
+     */
+    void stopDiscovery();
+
+    /**
+     * Register a server under a session-unique name
+     */
+    void addServer(String serverName, ConnectionRequest request) throws PhidgetException;
+
+    void removeServer(String serverName) throws PhidgetException;
+
+    /**
+     * Be told when a server disappears from the network, before its channels time out
+     */
+    void setServerLostListener(ServerLostListener listener);
+
+    /**
+     * Open the channel addressed by the slot's hub port and channel on the named server,
+     * waiting up to {@code timeoutMillis} for it to attach
+     */
+    SensorChannel open(String serverName, Integer serialNumber, SensorSlot slot, int timeoutMillis) throws PhidgetException;
+
+    @FunctionalInterface
+    interface ServerLostListener {
+        void serverLost(String host, String address, int port);
+    }
+}
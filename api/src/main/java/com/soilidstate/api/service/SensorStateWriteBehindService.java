@@ -0,0 +1,183 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorStatePersistenceProperties;
+import com.soilidstate.api.dto.SensorDataResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps last_value, last_reading_at and is_attached of registered_sensors up to date
+ * without writing once per event.
+ * <p>
+ * Events only flag their slot as dirty; a slot is queued on its first change after a
+ * flush and never again until the next one. Every flush interval the queued slots
+ * are read and written with one {@code UPDATE ... FROM (VALUES ...)} per batch, so
+ * database load is bounded by the number of changed sensors, not the event rate.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.sensor-state", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SensorStateWriteBehindService implements SensorDataListener {
+
+    private static final String UPDATE_HEAD =
+            "UPDATE registered_sensors AS s SET " +
+            "last_value = COALESCE(v.last_value, s.last_value), " +
+            "last_reading_at = COALESCE(v.last_reading_at, s.last_reading_at), " +
+            "is_attached = v.is_attached " +
+            "FROM (VALUES ";
+    private static final String UPDATE_ROW = "(?, ?::double precision, ?::timestamp, ?::boolean)";
+    private static final String UPDATE_TAIL =
+            ") AS v(phidget_sensor_id, last_value, last_reading_at, is_attached) " +
+            "WHERE s.phidget_sensor_id = v.phidget_sensor_id";
+
+    private final SensorStatePersistenceProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final SensorMetrics metrics;
+
+    private final Queue<SensorSlot> dirty = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private ScheduledExecutorService writer;
+    private String fullBatchSql;
+
+    @PostConstruct
+    void start() {
+        fullBatchSql = updateSql(properties.getBatchSize());
+        metrics.gauge("sensor.state.dirty", "Sensors waiting to have their latest state persisted", dirtyCount::get);
+        metrics.functionCounter("sensor.state.written", "Latest sensor states written to registered_sensors", written::get);
+
+        long interval = properties.getFlushInterval().toMillis();
+        writer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("sensor-state-writer").daemon(true).factory());
+        writer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+
+        log.info("Sensor state write-behind started (every {} ms, batch={})", interval, properties.getBatchSize());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        // Final flush so a restart restores the latest values
+        flush();
+    }
+
+    @Override
+    public void onSensorData(SensorSlot slot, long timestamp, double value) {
+        markDirty(slot);
+    }
+
+    @Override
+    public void onAttachChange(SensorSlot slot, long timestamp, boolean attached) {
+        markDirty(slot);
+    }
+
+    private void markDirty(SensorSlot slot) {
+        if (slot.markStateDirty()) {
+            dirty.offer(slot);
+            dirtyCount.incrementAndGet();
+        }
+    }
+
+    public int getDirtyCount() {
+        return dirtyCount.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    synchronized void flush() {
+        int batchSize = properties.getBatchSize();
+        List<SensorSlot> slots = new ArrayList<>(batchSize);
+        List<Object[]> rows = new ArrayList<>(batchSize);
+
+        SensorSlot slot;
+        while ((slot = dirty.poll()) != null) {
+            dirtyCount.decrementAndGet();
+            // Clear before reading: a write from now on queues the slot again
+            slot.clearStateDirty();
+            SensorDataResponse state = slot.toResponse();
+            if (state == null) {
+                continue;
+            }
+            slots.add(slot);
+            rows.add(new Object[]{
+                    state.getSensorId(),
+                    state.getValue(),
+                    state.getValue() != null ? new Timestamp(state.getTimestamp()) : null,
+                    state.isAttached()});
+
+            if (rows.size() == batchSize) {
+                write(slots, rows);
+                slots.clear();
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            write(slots, rows);
+        }
+    }
+
+    private void write(List<SensorSlot> slots, List<Object[]> rows) {
+        String sql = rows.size() == properties.getBatchSize() ? fullBatchSql : updateSql(rows.size());
+        try {
+            jdbcTemplate.update(sql, ps -> {
+                int p = 1;
+                for (Object[] row : rows) {
+                    ps.setString(p++, (String) row[0]);
+                    if (row[1] != null) {
+                        ps.setDouble(p++, (Double) row[1]);
+                    } else {
+                        ps.setNull(p++, Types.DOUBLE);
+                    }
+                    ps.setTimestamp(p++, (Timestamp) row[2]);
+                    ps.setBoolean(p++, (Boolean) row[3]);
+                }
+            });
+            written.addAndGet(rows.size());
+        } catch (DataAccessException e) {
+            // Queue them again; the next flush writes whatever state they have by then
+            failed.addAndGet(rows.size());
+            slots.forEach(this::markDirty);
+            log.warn("Failed to write the state of {} sensors, retrying on the next flush: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    static String updateSql(int rows) {
+        StringBuilder sql = new StringBuilder(UPDATE_HEAD.length() + UPDATE_TAIL.length() + rows * (UPDATE_ROW.length() + 2));
+        sql.append(UPDATE_HEAD);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(UPDATE_ROW);
+        }
+        return sql.append(UPDATE_TAIL).toString();
+    }
+}
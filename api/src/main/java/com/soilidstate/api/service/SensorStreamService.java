@@ -0,0 +1,190 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorStreamProperties;
+import com.soilidstate.api.dto.SensorDataResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes sensor updates to Server-Sent Events clients.
+ * <p>
+ * Each client owns a conflation map holding only the newest reading per sensor,
+ * so a slow client skips intermediate values instead of growing a backlog.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorStreamService implements SensorDataListener {
+
+    static final String EVENT_NAME = "sensor-data";
+
+    private final SensorStreamProperties properties;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    /** Open streams, reserved before a subscriber is added so concurrent opens can't pass the limit */
+    private final AtomicInteger open = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Open a stream of one user's sensors, optionally filtered by connection, sensor type
+     * and hub port. The current value of every matching sensor is sent first.
+     */
+    public SseEmitter subscribe(long userId, Long connectionId, String sensorType, Integer hubPort,
+                                Collection<SensorDataResponse> initial) {
+        if (open.incrementAndGet() > properties.getMaxSubscribers()) {
+            open.decrementAndGet();
+            throw new IllegalStateException("Too many open sensor streams");
+        }
+
+        SseEmitter emitter = createEmitter(properties.getTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, userId, connectionId, sensorType, hubPort);
+
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        subscribers.add(subscriber);
+        initial.forEach(subscriber::offer);
+        subscriber.scheduleDrain();
+
+        log.debug("Opened sensor stream (user={}, connection={}, type={}, hubPort={}), {} active",
+                userId, connectionId, sensorType, hubPort, subscribers.size());
+        return emitter;
+    }
+
+    SseEmitter createEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    @Override
+    public void onSensorData(SensorSlot slot, long timestamp, double value) {
+        publish(slot);
+    }
+
+    @Override
+    public void onAttachChange(SensorSlot slot, long timestamp, boolean attached) {
+        publish(slot);
+    }
+
+    private void publish(SensorSlot slot) {
+        if (subscribers.isEmpty()) return;
+
+        // Materialize the DTO once, and only if some client wants this sensor
+        SensorDataResponse data = null;
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.owns(slot) || !subscriber.matches(slot.type().name(), slot.hubPort())) continue;
+            if (data == null) {
+                data = slot.toResponse();
+                if (data == null) return;
+            }
+            if (subscriber.offer(data)) {
+                subscriber.scheduleDrain();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(s -> s.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final long userId;
+        private final Long connectionId;
+        private final String sensorType;
+        private final Integer hubPort;
+        private final Map<String, SensorDataResponse> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, long userId, Long connectionId, String sensorType, Integer hubPort) {
+            this.emitter = emitter;
+            this.userId = userId;
+            this.connectionId = connectionId;
+            this.sensorType = sensorType;
+            this.hubPort = hubPort;
+        }
+
+        private boolean owns(SensorSlot slot) {
+            return slot.userId() == userId
+                    && (connectionId == null || connectionId == slot.connectionId());
+        }
+
+        private boolean matches(String type, int port) {
+            return (sensorType == null || sensorType.equalsIgnoreCase(type))
+                    && (hubPort == null || hubPort == port);
+        }
+
+        /**
+         * Conflate the reading into the pending map. Returns false if it was filtered out or dropped.
+         */
+        private boolean offer(SensorDataResponse data) {
+            if (closed) return false;
+            if (!matches(data.getSensorType(), data.getHubPort())) return false;
+
+            if (pending.size() >= properties.getMaxPendingPerClient() && !pending.containsKey(data.getSensorId())) {
+                return false;
+            }
+            pending.put(data.getSensorId(), data);
+            return true;
+        }
+
+        private void scheduleDrain() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    Iterator<Map.Entry<String, SensorDataResponse>> it = pending.entrySet().iterator();
+                    while (it.hasNext() && !closed) {
+                        Map.Entry<String, SensorDataResponse> entry = it.next();
+                        // Only remove the value we are sending; a newer one stays queued
+                        if (pending.remove(entry.getKey(), entry.getValue())) {
+                            emitter.send(SseEmitter.event()
+                                    .name(EVENT_NAME)
+                                    .data(entry.getValue(), MediaType.APPLICATION_JSON));
+                        }
+                    }
+                    draining.set(false);
+                } while (!closed && !pending.isEmpty() && draining.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Sensor stream closed by client: {}", e.getMessage());
+                emitter.completeWithError(e);
+                close();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            pending.clear();
+            // Completion, timeout and error may all close it; release the slot once
+            if (subscribers.remove(this)) {
+                open.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.soilidstate.api.service;
+
+/**
+ * Supported Phidget channel classes, resolved once at registration instead of per event
+ */
+public enum SensorType {
+    VOLTAGE("V"),
+    VOLTAGERATIO("V/V"),
+    TEMPERATURE("°C"),
+    HUMIDITY("%"),
+    DIGITALINPUT("binary"),
+    DIGITALOUTPUT("binary"),
+    DISTANCESENSOR("mm"),
+    LIGHTSENSOR("lux"),
+    SOUNDSENSOR("dB"),
+    PRESSURESENSOR("kPa"),
+    /** Computed from other sensors by an expression; the unit is set per sensor */
+    VIRTUAL("");
+
+    private final String unit;
+
+    SensorType(String unit) {
+        this.unit = unit;
+    }
+
+    public String unit() {
+        return unit;
+    }
+
+    public static SensorType from(String sensorType) {
+        try {
+            return valueOf(sensorType.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported sensor type: " + sensorType);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SimulatorProperties;
+import com.soilidstate.api.dto.ConnectionRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic sensor source for load testing without hardware.
+ * <p>
+ * Every server emulates {@code hubs} x {@code channelsPerHub} channels of any type.
+ * A single generator thread emits a slowly varying, noisy value per channel at the
+ * channel's data interval, honours the change trigger like the device does, and
+ * randomly detaches and reattaches channels.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app", name = "sensor-source", havingValue = "simulated")
+public class SimulatedSensorSource implements SensorSource {
+
+    private static final long WAVE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final SimulatorProperties properties;
+    private final SensorEventDispatcher dispatcher;
+
+    private final Set<String> servers = ConcurrentHashMap.newKeySet();
+    private final Set<SimulatedChannel> channels = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService generator;
+
+    @PostConstruct
+    void start() {
+        long tick = properties.getTick().toNanos();
+        generator = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("sensor-simulator").daemon(true).factory());
+        generator.scheduleAtFixedRate(this::tick, tick, tick, TimeUnit.NANOSECONDS);
+        log.warn("Using SIMULATED sensors: {} hubs x {} channels per server",
+                properties.getHubs(), properties.getChannelsPerHub());
+    }
+
+    @PreDestroy
+    void stop() {
+        generator.shutdownNow();
+    }
+
+    @Override
+    public void startDiscovery() {
+        // Nothing to discover
+    }
+
+    @Override
+    public void stopDiscovery() {
+        // Nothing to discover
+    }
+
+    @Override
+    public void addServer(String serverName, ConnectionRequest request) {
+        servers.add(serverName);
+        log.info("Simulating server {} for {}:{}", serverName, request.getServerAddress(), request.getPort());
+    }
+
+    @Override
+    public void removeServer(String serverName) {
+        servers.remove(serverName);
+    }
+
+    @Override
+    public void setServerLostListener(ServerLostListener listener) {
+        // Simulated servers are never lost
+    }
+
+    @Override
+    public SensorChannel open(String serverName, Integer serialNumber, SensorSlot slot, int timeoutMillis) {
+        if (!servers.contains(serverName)) {
+            throw new IllegalStateException("Not connected to Phidget server");
+        }
+        if (slot.hubPort() < 0 || slot.hubPort() >= properties.getHubs()
+                || slot.channel() < 0 || slot.channel() >= properties.getChannelsPerHub()) {
+            throw new IllegalArgumentException("No simulated channel at hub port " + slot.hubPort()
+                    + " channel " + slot.channel());
+        }
+
+        long latency = properties.getOpenLatency().toMillis();
+        if (latency > 0) {
+            try {
+                Thread.sleep(Math.min(latency, timeoutMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        SimulatedChannel channel = new SimulatedChannel(slot, System.nanoTime());
+        channels.add(channel);
+        dispatcher.dispatchAttached(slot, true);
+        return channel;
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (SimulatedChannel channel : channels) {
+            try {
+                channel.step(now);
+            } catch (RuntimeException e) {
+                log.error("Simulated channel {} failed", channel.slot.sensorId(), e);
+            }
+        }
+    }
+
+    private final class SimulatedChannel implements SensorChannel {
+        private final SensorSlot slot;
+        private final double phase = ThreadLocalRandom.current().nextDouble(2 * Math.PI);
+        private volatile boolean attached = true;
+        private long nextEvent;
+        private long nextDetach;
+        private long reattachAt;
+        private boolean hasLast;
+        private double last;
+
+        private SimulatedChannel(SensorSlot slot, long now) {
+            this.slot = slot;
+            this.nextEvent = now;
+            this.nextDetach = now + nextChurn();
+        }
+
+        /**
+         * Runs on the generator thread only
+         */
+        private void step(long now) {
+            if (attached && now - nextDetach >= 0) {
+                attached = false;
+                reattachAt = now + properties.getDetachDuration().toNanos();
+                dispatcher.dispatchAttached(slot, false);
+            } else if (!attached && now - reattachAt >= 0) {
+                attached = true;
+                hasLast = false;
+                nextDetach = now + nextChurn();
+                dispatcher.dispatchAttached(slot, true);
+            }
+
+            if (!attached || slot.type() == SensorType.DIGITALOUTPUT || now - nextEvent < 0) {
+                return;
+            }
+
+            SensorSettings settings = slot.settings();
+            long interval = settings.dataInterval() != null
+                    ? TimeUnit.MILLISECONDS.toNanos(settings.dataInterval())
+                    : properties.getDefaultDataInterval().toNanos();
+            nextEvent += interval;
+            if (nextEvent - now < 0) {
+                nextEvent = now + interval;
+            }
+
+            double value = generate(now);
+            Double trigger = settings.changeTrigger();
+            if (!hasLast || trigger == null || Math.abs(value - last) >= trigger) {
+                hasLast = true;
+                last = value;
+                dispatcher.dispatchData(slot, value);
+            }
+        }
+
+        private double generate(long now) {
+            double wave = Math.sin(2 * Math.PI * (now % WAVE_PERIOD_NANOS) / WAVE_PERIOD_NANOS + phase);
+            double noise = ThreadLocalRandom.current().nextGaussian() * 0.05;
+            return switch (slot.type()) {
+                case VOLTAGE -> 2.5 + 2.0 * (wave + noise);
+                case VOLTAGERATIO -> 0.5 + 0.4 * (wave + noise);
+                case TEMPERATURE -> 20.0 + 5.0 * (wave + noise);
+                case HUMIDITY -> 50.0 + 20.0 * (wave + noise);
+                case DIGITALINPUT, DIGITALOUTPUT -> wave >= 0 ? 1.0 : 0.0;
+                case DISTANCESENSOR -> Math.round(500 + 400 * (wave + noise));
+                case LIGHTSENSOR -> Math.max(0, 300 + 300 * (wave + noise));
+                case SOUNDSENSOR -> 50.0 + 20.0 * (wave + noise);
+                case PRESSURESENSOR -> 101.3 + 2.0 * (wave + noise);
+                case VIRTUAL -> 0.0;
+            };
+        }
+
+        private long nextChurn() {
+            long mean = properties.getMeanTimeBetweenDetaches().toNanos();
+            if (mean <= 0) {
+                return Long.MAX_VALUE / 2;
+            }
+            // Exponentially distributed, like independent random failures
+            return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * mean);
+        }
+
+        @Override
+        public boolean isAttached() {
+            return attached;
+        }
+
+        @Override
+        public void applySettings(SensorSettings settings) {
+            // Settings are read from the slot on every step
+        }
+
+        @Override
+        public void close() {
+            channels.remove(this);
+        }
+    }
+}
@@ -1,38 +1,76 @@
 package com.soilidstate.api.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.soilidstate.api.config.UserCacheProperties;
 import com.soilidstate.api.entity.User;
 import com.soilidstate.api.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Resolves the calling user from their JWT.
+ * <p>
+ * Users are cached by OAuth2 subject, so identifying the caller of a request
+ * normally doesn't touch the database. Concurrent first requests of a subject share
+ * a single lookup, and only creating a user runs in a transaction.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class UserService {
 
+    /**
+     * Profile of a resolved user; callers get a fresh {@link User} built from it
+     */
+    private record CachedUser(Long id, String email, String oauthSubject, String oauthProvider, String displayName) {
+
+        static CachedUser of(User user) {
+            return new CachedUser(user.getId(), user.getEmail(), user.getOauthSubject(),
+                    user.getOauthProvider(), user.getDisplayName());
+        }
+
+        User toUser() {
+            return User.builder()
+                    .id(id)
+                    .email(email)
+                    .oauthSubject(oauthSubject)
+                    .oauthProvider(oauthProvider)
+                    .displayName(displayName)
+                    .build();
+        }
+    }
+
     private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, CachedUser> usersBySubject;
+
+    public UserService(UserRepository userRepository, TransactionTemplate transactionTemplate,
+                       UserCacheProperties properties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.usersBySubject = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersBySubject, "users");
+    }
 
     /**
      * Get or create user from OAuth2 JWT token
      */
-    @Transactional
     public User getOrCreateUser(Authentication authentication) {
         Jwt jwt = (Jwt) authentication.getPrincipal();
 
-        String oauthSubject = jwt.getSubject();
-        String email = jwt.getClaimAsString("email");
-        String name = jwt.getClaimAsString("name");
-        String issuer = jwt.getIssuer().toString();
-
-        // Determine provider from issuer
-        String provider = determineProvider(issuer);
-
-        return userRepository.findByOauthSubject(oauthSubject)
-                .orElseGet(() -> createUser(oauthSubject, email, name, provider));
+        // The loader runs at most once per subject at a time; other callers wait for its result
+        return usersBySubject.get(jwt.getSubject(), subject -> CachedUser.of(
+                userRepository.findByOauthSubject(subject).orElseGet(() -> createUser(jwt)))).toUser();
     }
 
     /**
@@ -40,13 +78,23 @@ public class UserService {
      */
     public User getCurrentUser(Authentication authentication) {
         Jwt jwt = (Jwt) authentication.getPrincipal();
-        String oauthSubject = jwt.getSubject();
 
-        return userRepository.findByOauthSubject(oauthSubject)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        CachedUser user = usersBySubject.get(jwt.getSubject(), subject ->
+                userRepository.findByOauthSubject(subject).map(CachedUser::of).orElse(null));
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
+        return user.toUser();
     }
 
-    private User createUser(String oauthSubject, String email, String name, String provider) {
+    private User createUser(Jwt jwt) {
+        String oauthSubject = jwt.getSubject();
+        String email = jwt.getClaimAsString("email");
+        String name = jwt.getClaimAsString("name");
+
+        // Determine provider from issuer
+        String provider = determineProvider(jwt.getIssuer().toString());
+
         log.info("Creating new user: {} from provider: {}", email, provider);
 
         User user = User.builder()
@@ -56,7 +104,12 @@ public class UserService {
                 .oauthProvider(provider)
                 .build();
 
-        return userRepository.save(user);
+        try {
+            return transactionTemplate.execute(status -> userRepository.save(user));
+        } catch (DataIntegrityViolationException e) {
+            // Created concurrently by another instance
+            return userRepository.findByOauthSubject(oauthSubject).orElseThrow(() -> e);
+        }
     }
 
     private String determineProvider(String issuer) {
@@ -0,0 +1,158 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.SensorDataResponse;
+
+import java.util.Map;
+
+/**
+ * A sensor computed from other sensors of the same session by a {@link SensorExpression}.
+ * <p>
+ * It registers itself as a dependent of its input slots; {@link SensorIngestService}
+ * calls it after every write to an input, on that input's dispatch thread. The inputs'
+ * latest values are kept in a primitive array, so re-evaluating costs one expression
+ * evaluation and no allocation. The result is published through the ingest service
+ * into the sensor's own slot, so it is versioned, deadbanded, streamed and persisted
+ * like a physical reading. A virtual sensor is attached while all of its inputs are
+ * attached and have a value.
+ * <p>
+ * Inputs may be written on different dispatch threads, so updates synchronize on the
+ * virtual sensor. Inputs can only be existing sensors, so the dependency graph has no
+ * cycles and nested virtual sensors always lock in input-to-dependent order.
+ */
+final class VirtualSensor implements SensorChannel {
+
+    static final VirtualSensor[] NONE = new VirtualSensor[0];
+
+    private final SensorSlot slot;
+    private final SensorExpression expression;
+    /** Input name to sensor id, as registered */
+    private final Map<String, String> bindings;
+    /** Input slots, in the order of {@link SensorExpression#inputs()} */
+    private final SensorSlot[] inputs;
+    private final SensorIngestService ingest;
+
+    private final double[] values;
+    private final boolean[] present;
+    private int missing;
+    private boolean attached;
+
+    VirtualSensor(SensorSlot slot, SensorExpression expression, Map<String, String> bindings,
+                  SensorSlot[] inputs, SensorIngestService ingest) {
+        this.slot = slot;
+        this.expression = expression;
+        this.bindings = Map.copyOf(bindings);
+        this.inputs = inputs;
+        this.ingest = ingest;
+        this.values = new double[inputs.length];
+        this.present = new boolean[inputs.length];
+        this.missing = inputs.length;
+    }
+
+    SensorSlot slot() {
+        return slot;
+    }
+
+    SensorExpression expression() {
+        return expression;
+    }
+
+    Map<String, String> bindings() {
+        return bindings;
+    }
+
+    /**
+     * Subscribe to the inputs and compute a first value from their current readings
+     */
+    void start() {
+        for (SensorSlot input : inputs) {
+            input.addDependent(this);
+        }
+        long timestamp = 0;
+        synchronized (this) {
+            for (int i = 0; i < inputs.length; i++) {
+                SensorDataResponse data = inputs[i].toResponse();
+                if (data != null && data.getValue() != null && data.isAttached()) {
+                    set(i, data.getValue());
+                    timestamp = Math.max(timestamp, data.getTimestamp());
+                }
+            }
+            if (missing == 0) {
+                publish(timestamp, System.nanoTime());
+            }
+        }
+    }
+
+    synchronized void onInput(SensorSlot input, double value, long timestamp, long enqueuedNanos) {
+        int i = indexOf(input);
+        if (i < 0) return;
+        set(i, value);
+        if (missing == 0) {
+            publish(timestamp, enqueuedNanos);
+        }
+    }
+
+    synchronized void onInputAttached(SensorSlot input, boolean inputAttached, long timestamp) {
+        int i = indexOf(input);
+        if (i < 0 || inputAttached) return;
+        // A detached input has no value until its next reading
+        if (present[i]) {
+            present[i] = false;
+            missing++;
+        }
+        if (attached) {
+            attached = false;
+            ingest.updateAttached(slot, false, timestamp);
+        }
+    }
+
+    /**
+     * An input was unregistered or closed; the virtual sensor stays detached until it is reopened
+     */
+    void onInputRemoved(SensorSlot input) {
+        onInputAttached(input, false, System.currentTimeMillis());
+    }
+
+    private void set(int i, double value) {
+        if (!present[i]) {
+            present[i] = true;
+            missing--;
+        }
+        values[i] = value;
+    }
+
+    private void publish(long timestamp, long enqueuedNanos) {
+        double result = expression.evaluate(values);
+        if (!Double.isFinite(result)) {
+            // Outside the expression's domain, e.g. ln(0); keep the last good value
+            return;
+        }
+        attached = true;
+        ingest.updateSensorData(slot, result, timestamp, enqueuedNanos);
+    }
+
+    private int indexOf(SensorSlot input) {
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i] == input) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized boolean isAttached() {
+        return attached;
+    }
+
+    @Override
+    public void applySettings(SensorSettings settings) {
+        // Only the server-side deadband applies, and the slot holds it
+    }
+
+    @Override
+    public void close() {
+        for (SensorSlot input : inputs) {
+            input.removeDependent(this);
+        }
+    }
+}
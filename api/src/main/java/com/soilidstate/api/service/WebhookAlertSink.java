@@ -0,0 +1,64 @@
+package com.soilidstate.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soilidstate.api.config.AlertProperties;
+import com.soilidstate.api.dto.AlertEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * POSTs alert notifications as JSON to {@code app.alerts.webhook-url}. Requests are
+ * sent asynchronously, so a slow endpoint does not hold up other sinks; failures are
+ * logged and not retried.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.alerts", name = "webhook-url")
+public class WebhookAlertSink implements AlertSink {
+
+    private final AlertProperties properties;
+    private final ObjectMapper objectMapper;
+    private final URI uri;
+    private final HttpClient http;
+
+    public WebhookAlertSink(AlertProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.uri = URI.create(properties.getWebhookUrl());
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(properties.getWebhookTimeout())
+                .build();
+    }
+
+    @Override
+    public void send(AlertEvent event) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize alert for rule {}", event.getRuleId(), e);
+            return;
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(properties.getWebhookTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        log.warn("Alert webhook failed for rule {}: {}", event.getRuleId(), e.getMessage());
+                    } else if (response.statusCode() >= 400) {
+                        log.warn("Alert webhook answered {} for rule {}", response.statusCode(), event.getRuleId());
+                    }
+                });
+    }
+}
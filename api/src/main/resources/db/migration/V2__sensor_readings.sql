@@ -0,0 +1,12 @@
+-- Raw sensor readings, appended in batches by the write-behind writer
+CREATE TABLE sensor_readings (
+                                 sensor_id VARCHAR(255) NOT NULL,
+                                 reading_time TIMESTAMPTZ NOT NULL,
+                                 value DOUBLE PRECISION NOT NULL
+);
+
+CREATE INDEX idx_readings_sensor_time ON sensor_readings(sensor_id, reading_time);
+CREATE INDEX idx_readings_time ON sensor_readings USING BRIN (reading_time);
+
+COMMENT ON TABLE sensor_readings IS 'Raw sensor readings persisted asynchronously';
+COMMENT ON COLUMN sensor_readings.sensor_id IS 'Runtime sensor id (registered_sensors.phidget_sensor_id)';
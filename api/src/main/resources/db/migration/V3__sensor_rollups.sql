@@ -0,0 +1,23 @@
+-- Per-sensor aggregates maintained at ingest time by the rollup engine.
+-- Sums are stored instead of averages so partial buckets can be merged.
+CREATE TABLE sensor_rollups_minute (
+                                       sensor_id VARCHAR(255) NOT NULL,
+                                       bucket_start TIMESTAMPTZ NOT NULL,
+                                       min_value DOUBLE PRECISION NOT NULL,
+                                       max_value DOUBLE PRECISION NOT NULL,
+                                       sum_value DOUBLE PRECISION NOT NULL,
+                                       sample_count BIGINT NOT NULL,
+                                       first_value DOUBLE PRECISION NOT NULL,
+                                       first_at TIMESTAMPTZ NOT NULL,
+                                       last_value DOUBLE PRECISION NOT NULL,
+                                       last_at TIMESTAMPTZ NOT NULL,
+                                       PRIMARY KEY (sensor_id, bucket_start)
+);
+
+CREATE TABLE sensor_rollups_hour (LIKE sensor_rollups_minute INCLUDING ALL);
+
+CREATE TABLE sensor_rollups_day (LIKE sensor_rollups_minute INCLUDING ALL);
+
+COMMENT ON TABLE sensor_rollups_minute IS 'One-minute sensor aggregates';
+COMMENT ON TABLE sensor_rollups_hour IS 'One-hour sensor aggregates, cascaded from minute buckets';
+COMMENT ON TABLE sensor_rollups_day IS 'One-day (UTC) sensor aggregates, cascaded from hour buckets';
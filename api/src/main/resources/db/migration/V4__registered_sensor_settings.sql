@@ -0,0 +1,18 @@
+-- Registrations are restored on startup and reconnect, so they carry their
+-- sampling settings and keep their sensor id for life.
+ALTER TABLE registered_sensors
+    ADD COLUMN data_interval INTEGER,
+    ADD COLUMN change_trigger DOUBLE PRECISION,
+    ADD COLUMN deadband DOUBLE PRECISION NOT NULL DEFAULT 0,
+    ADD COLUMN deadband_mode VARCHAR(10) NOT NULL DEFAULT 'ABSOLUTE';
+
+DROP INDEX idx_sensor_phidget_id;
+CREATE UNIQUE INDEX idx_sensor_phidget_id ON registered_sensors(phidget_sensor_id);
+
+-- The password itself is never stored; such connections are restored on the user's next connect
+ALTER TABLE phidget_connections
+    ADD COLUMN requires_password BOOLEAN NOT NULL DEFAULT false;
+
+COMMENT ON COLUMN registered_sensors.phidget_sensor_id IS 'Stable sensor id, kept across restarts and reconnects';
+COMMENT ON COLUMN registered_sensors.deadband_mode IS 'ABSOLUTE or PERCENT';
+COMMENT ON COLUMN phidget_connections.requires_password IS 'Whether the server was connected with a password';
@@ -0,0 +1,27 @@
+-- Alert rules evaluated on every reading of their sensor.
+-- Deleting a registered sensor deletes its rules.
+CREATE TABLE alert_rules (
+                             id BIGSERIAL PRIMARY KEY,
+                             user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+                             sensor_id VARCHAR(255) NOT NULL REFERENCES registered_sensors(phidget_sensor_id) ON DELETE CASCADE,
+                             name VARCHAR(255) NOT NULL,
+                             kind VARCHAR(20) NOT NULL,
+                             threshold DOUBLE PRECISION,
+                             hysteresis DOUBLE PRECISION NOT NULL DEFAULT 0,
+                             duration_ms BIGINT NOT NULL DEFAULT 0,
+                             cooldown_ms BIGINT NOT NULL DEFAULT 60000,
+                             enabled BOOLEAN NOT NULL DEFAULT true,
+                             created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                             updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_alert_rule_user ON alert_rules(user_id);
+CREATE INDEX idx_alert_rule_sensor ON alert_rules(sensor_id);
+
+CREATE TRIGGER update_alert_rules_updated_at BEFORE UPDATE ON alert_rules
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+COMMENT ON TABLE alert_rules IS 'Threshold, rate-of-change and staleness alerts on registered sensors';
+COMMENT ON COLUMN alert_rules.kind IS 'ABOVE, BELOW, RATE_OF_CHANGE or STALE';
+COMMENT ON COLUMN alert_rules.duration_ms IS 'STALE: silence before firing; RATE_OF_CHANGE: minimum window of the rate';
+COMMENT ON COLUMN alert_rules.cooldown_ms IS 'A rule that fires again within this time after its last notification is not notified again';
@@ -0,0 +1,8 @@
+-- Virtual sensors are registered sensors of type VIRTUAL, computed from other
+-- sensors of the same connection. They have no hub port or channel (-1).
+ALTER TABLE registered_sensors
+    ADD COLUMN expression TEXT,
+    ADD COLUMN expression_inputs JSONB;
+
+COMMENT ON COLUMN registered_sensors.expression IS 'Expression of a VIRTUAL sensor';
+COMMENT ON COLUMN registered_sensors.expression_inputs IS 'Expression input name to phidget_sensor_id of a VIRTUAL sensor';
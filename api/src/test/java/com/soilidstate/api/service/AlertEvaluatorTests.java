@@ -0,0 +1,85 @@
+package com.soilidstate.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertEvaluatorTests {
+
+    private static AlertEvaluator rule(AlertRuleKind kind, double threshold, double hysteresis,
+                                       long durationMillis, long cooldownMillis) {
+        return new AlertEvaluator(1L, 1L, "sensor", "rule", kind, threshold, hysteresis,
+                durationMillis, cooldownMillis, 0L);
+    }
+
+    @Test
+    void aboveFiresOnceAndResolvesBelowHysteresis() {
+        AlertEvaluator rule = rule(AlertRuleKind.ABOVE, 30, 2, 0, 0);
+
+        assertThat(rule.onReading("Probe", 29, 1)).isEqualTo(AlertEvaluator.NONE);
+        assertThat(rule.onReading("Probe", 31, 2)).isEqualTo(AlertEvaluator.FIRED);
+        assertThat(rule.onReading("Probe", 35, 3)).isEqualTo(AlertEvaluator.NONE);
+        // Inside the hysteresis band: still firing
+        assertThat(rule.onReading("Probe", 29, 4)).isEqualTo(AlertEvaluator.NONE);
+        assertThat(rule.isActive()).isTrue();
+        assertThat(rule.onReading("Probe", 27.9, 5)).isEqualTo(AlertEvaluator.RESOLVED);
+        assertThat(rule.isActive()).isFalse();
+    }
+
+    @Test
+    void belowIsSymmetric() {
+        AlertEvaluator rule = rule(AlertRuleKind.BELOW, 10, 1, 0, 0);
+
+        assertThat(rule.onReading("Probe", 9, 1)).isEqualTo(AlertEvaluator.FIRED);
+        assertThat(rule.onReading("Probe", 10.5, 2)).isEqualTo(AlertEvaluator.NONE);
+        assertThat(rule.onReading("Probe", 11.5, 3)).isEqualTo(AlertEvaluator.RESOLVED);
+    }
+
+    @Test
+    void rateOfChangeIsMeasuredPerMinuteOverTheWindow() {
+        AlertEvaluator rule = rule(AlertRuleKind.RATE_OF_CHANGE, 6, 0, 10_000, 0);
+
+        assertThat(rule.onReading("Probe", 0, 0)).isEqualTo(AlertEvaluator.NONE);
+        // Window not complete yet
+        assertThat(rule.onReading("Probe", 5, 5_000)).isEqualTo(AlertEvaluator.NONE);
+        // 2 in 10 s is 12 per minute
+        assertThat(rule.onReading("Probe", 2, 10_000)).isEqualTo(AlertEvaluator.FIRED);
+        assertThat(rule.lastRate()).isEqualTo(12.0);
+        // 0.5 in 10 s is 3 per minute
+        assertThat(rule.onReading("Probe", 2.5, 20_000)).isEqualTo(AlertEvaluator.RESOLVED);
+    }
+
+    @Test
+    void staleFiresAfterSilenceAndResolvesOnNextReading() {
+        AlertEvaluator rule = rule(AlertRuleKind.STALE, 0, 0, 1_000, 0);
+
+        assertThat(rule.onReading("Probe", 1, 100)).isEqualTo(AlertEvaluator.NONE);
+        assertThat(rule.checkStale(1_000)).isEqualTo(AlertEvaluator.NONE);
+        assertThat(rule.checkStale(1_101)).isEqualTo(AlertEvaluator.FIRED);
+        assertThat(rule.checkStale(2_000)).isEqualTo(AlertEvaluator.NONE);
+        assertThat(rule.onReading("Probe", 1, 2_100)).isEqualTo(AlertEvaluator.RESOLVED);
+        assertThat(rule.sensorName()).isEqualTo("Probe");
+    }
+
+    @Test
+    void pausedStaleRuleDoesNotFire() {
+        AlertEvaluator rule = rule(AlertRuleKind.STALE, 0, 0, 1_000, 0);
+
+        rule.pause();
+        assertThat(rule.checkStale(10_000)).isEqualTo(AlertEvaluator.NONE);
+        rule.onReading("Probe", 1, 10_000);
+        assertThat(rule.checkStale(11_001)).isEqualTo(AlertEvaluator.FIRED);
+    }
+
+    @Test
+    void cooldownSuppressesFlappingNotifications() {
+        AlertEvaluator rule = rule(AlertRuleKind.ABOVE, 30, 0, 0, 60_000);
+
+        assertThat(rule.claimNotification(rule.onReading("Probe", 31, 0), 0)).isTrue();
+        assertThat(rule.claimNotification(rule.onReading("Probe", 29, 1_000), 1_000)).isTrue();
+        // Fires again within the cooldown: neither the firing nor its resolution is notified
+        assertThat(rule.claimNotification(rule.onReading("Probe", 31, 2_000), 2_000)).isFalse();
+        assertThat(rule.claimNotification(rule.onReading("Probe", 29, 3_000), 3_000)).isFalse();
+        assertThat(rule.claimNotification(rule.onReading("Probe", 31, 61_000), 61_000)).isTrue();
+    }
+}
@@ -0,0 +1,238 @@
+package com.soilidstate.api.service;
+
+import com.phidget22.PhidgetException;
+import com.soilidstate.api.dto.ConnectionRequest;
+import com.soilidstate.api.dto.ConnectionStatusResponse;
+import com.soilidstate.api.dto.SensorSettingsRequest;
+import com.soilidstate.api.dto.SensorStatusResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhidgetSessionTests {
+
+    private SensorIngestService ingest;
+    private FakeSource source;
+    private PhidgetSession session;
+
+    @BeforeEach
+    void setUp() throws PhidgetException {
+        ingest = new SensorIngestService(List.of(), new SensorMetrics(new SimpleMeterRegistry()));
+        ingest.init();
+        source = new FakeSource();
+        session = new PhidgetSession(7L, 1L, ingest, source);
+
+        ConnectionRequest request = new ConnectionRequest();
+        request.setServerAddress("sbc4.local");
+        session.connect(request);
+        session.openSensor("a", SensorType.TEMPERATURE, "A", 0, 0, null, SensorSettings.DEFAULT, 100);
+        session.openSensor("b", SensorType.HUMIDITY, "B", 1, 0, 1234, SensorSettings.DEFAULT, 100);
+    }
+
+    @Test
+    void detectsDetachStormOnlyWhenMostChannelsAreDetached() {
+        SensorSlot a = source.opened.get(0).slot;
+        SensorSlot b = source.opened.get(1).slot;
+        ingest.updateAttached(a, true, 1000);
+        ingest.updateAttached(b, true, 1000);
+        ingest.updateAttached(a, false, 2000);
+
+        assertThat(session.isDetachStorm(0.8, 2)).isFalse();
+
+        ingest.updateAttached(b, false, 2000);
+        assertThat(session.isDetachStorm(0.8, 2)).isTrue();
+        assertThat(session.isDetachStorm(0.8, 3)).isFalse();
+    }
+
+    @Test
+    void reopensChannelsIntoExistingSlots() throws PhidgetException {
+        SensorSlot a = source.opened.get(0).slot;
+        ingest.updateSensorData(a, 21.5, 1000, 0);
+
+        session.resetServer();
+
+        assertThat(source.opened).allMatch(channel -> channel.closed);
+        assertThat(source.serverAdds).isEqualTo(2);
+        assertThat(session.openChannelCount()).isZero();
+        List<SensorSlot> missing = session.missingChannels();
+        assertThat(missing).hasSize(2);
+
+        for (SensorSlot slot : missing) {
+            session.reopen(slot, 100);
+        }
+
+        assertThat(session.openChannelCount()).isEqualTo(2);
+        assertThat(session.missingChannels()).isEmpty();
+        assertThat(source.opened.get(2).slot).isSameAs(missing.get(0));
+        assertThat(source.serialNumbers).containsExactlyInAnyOrder(null, 1234, null, 1234);
+        assertThat(session.getSensorData("a").getValue()).isEqualTo(21.5);
+    }
+
+    @Test
+    void unregistersSensorWhoseChannelIsClosed() throws PhidgetException {
+        session.resetServer();
+
+        assertThat(session.unregisterSensor("a")).isTrue();
+
+        assertThat(session.missingChannels()).extracting(SensorSlot::sensorId).containsExactly("b");
+        assertThat(session.getSensorData("a")).isNull();
+    }
+
+    @Test
+    void reportsReconnectingInStatus() {
+        session.markLost(5000);
+        session.markReconnectFailed();
+
+        ConnectionStatusResponse status = session.getConnectionStatus();
+        assertThat(status.getState()).isEqualTo("CONNECTED");
+        assertThat(status.isReconnecting()).isTrue();
+        assertThat(status.getReconnectAttempts()).isEqualTo(1);
+        assertThat(status.getLostAt()).isEqualTo(5000);
+
+        session.markRecovered();
+        status = session.getConnectionStatus();
+        assertThat(status.getState()).isEqualTo("CONNECTED");
+        assertThat(status.isReconnecting()).isFalse();
+        assertThat(status.getLostAt()).isNull();
+    }
+
+    @Test
+    void settingsUpdateKeepsWorkingWithoutChannel() throws PhidgetException {
+        session.resetServer();
+
+        SensorSettingsRequest request = new SensorSettingsRequest();
+        request.setDataInterval(500);
+        SensorStatusResponse response = session.updateSensorSettings("a", request);
+
+        assertThat(response.getDataInterval()).isEqualTo(500);
+    }
+
+    @Test
+    void disconnectDrainsOpenInFlight() throws Exception {
+        source.entered = new CountDownLatch(1);
+        source.release = new CountDownLatch(1);
+        AtomicReference<Exception> openFailure = new AtomicReference<>();
+        Thread opener = Thread.ofPlatform().start(() -> {
+            try {
+                session.openSensor("c", SensorType.LIGHTSENSOR, "C", 2, 0, null, SensorSettings.DEFAULT, 100);
+            } catch (Exception e) {
+                openFailure.set(e);
+            }
+        });
+        source.entered.await();
+
+        Thread disconnector = Thread.ofPlatform().start(() -> {
+            try {
+                session.disconnect(5000);
+            } catch (PhidgetException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (session.state() != ConnectionState.DRAINING) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> session.openSensor("d", SensorType.VOLTAGE, "D", 3, 0, null, SensorSettings.DEFAULT, 100))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(disconnector.isAlive()).isTrue();
+
+        source.release.countDown();
+        opener.join();
+        disconnector.join();
+
+        assertThat(openFailure.get()).isInstanceOf(IllegalStateException.class);
+        assertThat(session.state()).isEqualTo(ConnectionState.DISCONNECTED);
+        assertThat(source.opened).hasSize(3).allMatch(channel -> channel.closed);
+        assertThat(session.slotCount()).isZero();
+    }
+
+    @Test
+    void tearsDownOnlyOnce() throws PhidgetException {
+        assertThat(session.disconnect(100)).isTrue();
+        assertThat(session.disconnect(100)).isFalse();
+
+        assertThat(source.serverRemoves).isEqualTo(1);
+        assertThat(session.getConnectionStatus().getState()).isEqualTo("DISCONNECTED");
+        assertThatThrownBy(() -> session.openSensor("e", SensorType.VOLTAGE, "E", 0, 1, null, SensorSettings.DEFAULT, 100))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static final class FakeSource implements SensorSource {
+        final List<FakeChannel> opened = new ArrayList<>();
+        final List<Integer> serialNumbers = new ArrayList<>();
+        int serverAdds;
+        int serverRemoves;
+        /** When set, opens signal entered and block until release */
+        CountDownLatch entered;
+        CountDownLatch release;
+
+        @Override
+        public void startDiscovery() {
+        }
+
+        @Override
+        public void stopDiscovery() {
+        }
+
+        @Override
+        public void addServer(String serverName, ConnectionRequest request) {
+            serverAdds++;
+        }
+
+        @Override
+        public void removeServer(String serverName) {
+            serverRemoves++;
+        }
+
+        @Override
+        public void setServerLostListener(ServerLostListener listener) {
+        }
+
+        @Override
+        public SensorChannel open(String serverName, Integer serialNumber, SensorSlot slot, int timeoutMillis) {
+            if (entered != null) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            FakeChannel channel = new FakeChannel(slot);
+            opened.add(channel);
+            serialNumbers.add(serialNumber);
+            return channel;
+        }
+    }
+
+    private static final class FakeChannel implements SensorChannel {
+        final SensorSlot slot;
+        boolean closed;
+
+        FakeChannel(SensorSlot slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean isAttached() {
+            return !closed;
+        }
+
+        @Override
+        public void applySettings(SensorSettings settings) {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
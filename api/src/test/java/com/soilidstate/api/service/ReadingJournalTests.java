@@ -0,0 +1,136 @@
+package com.soilidstate.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadingJournalTests {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path directory;
+
+    private final String[] ids = new String[100];
+    private final long[] timestamps = new long[100];
+    private final double[] values = new double[100];
+
+    @Test
+    void readsAppendedReadingsInOrderAcrossSegments() throws IOException {
+        ReadingJournal journal = new ReadingJournal(directory, SEGMENT_SIZE, 1 << 20);
+        for (int i = 0; i < 30; i++) {
+            assertThat(journal.append("sensor-" + (i % 3), 1000 + i, i * 0.5)).isTrue();
+        }
+
+        int n = journal.read(ids, timestamps, values, 100);
+
+        assertThat(n).isEqualTo(30);
+        assertThat(journal.segmentCount()).isGreaterThan(1);
+        for (int i = 0; i < 30; i++) {
+            assertThat(ids[i]).isEqualTo("sensor-" + (i % 3));
+            assertThat(timestamps[i]).isEqualTo(1000 + i);
+            assertThat(values[i]).isEqualTo(i * 0.5);
+        }
+    }
+
+    @Test
+    void replaysOnlyUnacknowledgedReadingsAfterReopen() throws IOException {
+        ReadingJournal journal = new ReadingJournal(directory, SEGMENT_SIZE, 1 << 20);
+        for (int i = 0; i < 20; i++) {
+            journal.append("s", i, i);
+        }
+        assertThat(journal.read(ids, timestamps, values, 12)).isEqualTo(12);
+        journal.acknowledge();
+        // Read but never acknowledged, e.g. the database insert failed
+        journal.read(ids, timestamps, values, 5);
+        journal.close();
+
+        ReadingJournal reopened = new ReadingJournal(directory, SEGMENT_SIZE, 1 << 20);
+        int n = reopened.read(ids, timestamps, values, 100);
+
+        assertThat(n).isEqualTo(8);
+        assertThat(timestamps[0]).isEqualTo(12);
+        assertThat(timestamps[7]).isEqualTo(19);
+    }
+
+    @Test
+    void deletesAcknowledgedSegments() throws IOException {
+        ReadingJournal journal = new ReadingJournal(directory, SEGMENT_SIZE, 1 << 20);
+        for (int i = 0; i < 40; i++) {
+            journal.append("s", i, i);
+        }
+        int segments = journal.segmentCount();
+
+        journal.read(ids, timestamps, values, 100);
+        journal.acknowledge();
+
+        assertThat(journal.segmentCount()).isLessThan(segments);
+        assertThat(segmentFiles()).hasSize(journal.segmentCount());
+        assertThat(journal.pendingBytes()).isZero();
+    }
+
+    @Test
+    void ignoresTornRecordAtEndOfSegment() throws IOException {
+        ReadingJournal journal = new ReadingJournal(directory, SEGMENT_SIZE, 1 << 20);
+        journal.append("s", 1, 1.0);
+        journal.append("s", 2, 2.0);
+        journal.close();
+
+        // Corrupt the value of the second record, as if it was only partly flushed
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), 23 + 2 + 1 + 8);
+        }
+
+        ReadingJournal reopened = new ReadingJournal(directory, SEGMENT_SIZE, 1 << 20);
+        int n = reopened.read(ids, timestamps, values, 100);
+
+        assertThat(n).isEqualTo(1);
+        assertThat(timestamps[0]).isEqualTo(1);
+    }
+
+    @Test
+    void dropsNewReadingsWhenFull() throws IOException {
+        ReadingJournal journal = new ReadingJournal(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE);
+        int appended = 0;
+        for (int i = 0; i < 100; i++) {
+            if (journal.append("s", i, i)) {
+                appended++;
+            }
+        }
+
+        assertThat(appended).isLessThan(100);
+        assertThat(journal.dropped()).isEqualTo(100 - appended);
+        assertThat(journal.read(ids, timestamps, values, 100)).isEqualTo(appended);
+        assertThat(timestamps[0]).isZero();
+    }
+
+    @Test
+    void preallocatesSegmentFiles() throws IOException {
+        ReadingJournal journal = new ReadingJournal(directory, SEGMENT_SIZE, 1 << 20);
+        for (int i = 0; i < 30; i++) {
+            journal.append("s", i, i);
+        }
+
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+        for (Path segment : segmentFiles()) {
+            assertThat(Files.size(segment)).isEqualTo(SEGMENT_SIZE);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+}
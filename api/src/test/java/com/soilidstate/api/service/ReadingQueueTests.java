@@ -0,0 +1,145 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.ReadingPersistenceProperties.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadingQueueTests {
+
+    private final String[] ids = new String[16];
+    private final long[] timestamps = new long[16];
+    private final double[] values = new double[16];
+
+    @Test
+    void dropOldestOverwritesOldestReadings() throws InterruptedException {
+        ReadingQueue queue = new ReadingQueue(4, OverflowPolicy.DROP_OLDEST, 0, 1, 1.0, 4);
+        for (int i = 0; i < 6; i++) {
+            assertThat(queue.offer("s", i, i)).isTrue();
+        }
+
+        int n = queue.drainTo(ids, timestamps, values, 16, 0, TimeUnit.MILLISECONDS);
+
+        assertThat(n).isEqualTo(4);
+        assertThat(timestamps).startsWith(2, 3, 4, 5);
+        assertThat(queue.dropped()).isEqualTo(2);
+    }
+
+    @Test
+    void blockDropsAfterTimeoutWhenStillFull() {
+        ReadingQueue queue = new ReadingQueue(2, OverflowPolicy.BLOCK, TimeUnit.MILLISECONDS.toNanos(20), 1, 1.0, 2);
+        queue.offer("s", 0, 0);
+        queue.offer("s", 1, 1);
+
+        long start = System.nanoTime();
+        assertThat(queue.offer("s", 2, 2)).isFalse();
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(queue.dropped()).isEqualTo(1);
+        assertThat(queue.size()).isEqualTo(2);
+    }
+
+    @Test
+    void blockResumesOnceConsumerDrains() throws InterruptedException {
+        ReadingQueue queue = new ReadingQueue(2, OverflowPolicy.BLOCK, TimeUnit.SECONDS.toNanos(10), 1, 1.0, 2);
+        queue.offer("s", 0, 0);
+        queue.offer("s", 1, 1);
+
+        AtomicBoolean accepted = new AtomicBoolean();
+        Thread producer = Thread.ofPlatform().start(() -> accepted.set(queue.offer("s", 2, 2)));
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        assertThat(queue.drainTo(ids, timestamps, values, 1, 0, TimeUnit.MILLISECONDS)).isEqualTo(1);
+        producer.join();
+
+        assertThat(accepted).isTrue();
+        assertThat(queue.dropped()).isZero();
+        assertThat(queue.drainTo(ids, timestamps, values, 16, 0, TimeUnit.MILLISECONDS)).isEqualTo(2);
+        assertThat(timestamps).startsWith(1, 2);
+    }
+
+    @Test
+    void sampleThinsReadingsAboveThreshold() {
+        ReadingQueue queue = new ReadingQueue(10, OverflowPolicy.SAMPLE, 0, 2, 0.5, 10);
+        for (int i = 0; i < 5; i++) {
+            assertThat(queue.offer("s", i, i)).isTrue();
+        }
+
+        // Every second reading is kept once half the queue is used
+        assertThat(queue.offer("s", 5, 5)).isTrue();
+        assertThat(queue.offer("s", 6, 6)).isFalse();
+        assertThat(queue.offer("s", 7, 7)).isTrue();
+        assertThat(queue.offer("s", 8, 8)).isFalse();
+
+        assertThat(queue.size()).isEqualTo(7);
+        assertThat(queue.dropped()).isEqualTo(2);
+    }
+
+    @Test
+    void sampleDropsOldestWhenThinningIsNotEnough() throws InterruptedException {
+        ReadingQueue queue = new ReadingQueue(4, OverflowPolicy.SAMPLE, 0, 1, 0.5, 4);
+        for (int i = 0; i < 6; i++) {
+            queue.offer("s", i, i);
+        }
+
+        assertThat(queue.drainTo(ids, timestamps, values, 16, 0, TimeUnit.MILLISECONDS)).isEqualTo(4);
+        assertThat(timestamps).startsWith(2, 3, 4, 5);
+        assertThat(queue.dropped()).isEqualTo(2);
+    }
+
+    @Test
+    void drainReturnsFullBatchWithoutWaiting() throws InterruptedException {
+        ReadingQueue queue = new ReadingQueue(16, OverflowPolicy.DROP_OLDEST, 0, 1, 1.0, 3);
+        for (int i = 0; i < 5; i++) {
+            queue.offer("s" + i, i, i * 0.5);
+        }
+
+        long start = System.nanoTime();
+        int n = queue.drainTo(ids, timestamps, values, 3, 10, TimeUnit.SECONDS);
+
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(n).isEqualTo(3);
+        assertThat(ids).startsWith("s0", "s1", "s2");
+        assertThat(values).startsWith(0.0, 0.5, 1.0);
+        assertThat(queue.size()).isEqualTo(2);
+    }
+
+    @Test
+    void drainReturnsPartialBatchAfterTimeout() throws InterruptedException {
+        ReadingQueue queue = new ReadingQueue(16, OverflowPolicy.DROP_OLDEST, 0, 1, 1.0, 8);
+        queue.offer("s", 1, 1);
+        queue.offer("s", 2, 2);
+
+        int n = queue.drainTo(ids, timestamps, values, 8, 10, TimeUnit.MILLISECONDS);
+
+        assertThat(n).isEqualTo(2);
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void wakeUpFlushesPartialBatch() throws InterruptedException {
+        ReadingQueue queue = new ReadingQueue(16, OverflowPolicy.DROP_OLDEST, 0, 1, 1.0, 8);
+        queue.offer("s", 1, 1);
+        int[] drained = new int[1];
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            try {
+                drained[0] = queue.drainTo(ids, timestamps, values, 8, 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        while (consumer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+
+        queue.wakeUp();
+        consumer.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(consumer.isAlive()).isFalse();
+        assertThat(drained[0]).isEqualTo(1);
+    }
+}
@@ -0,0 +1,97 @@
+package com.soilidstate.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RollupBucketTests {
+
+    @Test
+    void tracksMinMaxSumCountFirstAndLast() {
+        RollupBucket bucket = new RollupBucket();
+        bucket.add(2000, 5);
+        bucket.add(1000, 3);
+        bucket.add(3000, 9);
+        bucket.add(4000, -1);
+
+        assertThat(bucket.count).isEqualTo(4);
+        assertThat(bucket.min).isEqualTo(-1);
+        assertThat(bucket.max).isEqualTo(9);
+        assertThat(bucket.sum).isEqualTo(16);
+        // By timestamp, not arrival order
+        assertThat(bucket.first).isEqualTo(3);
+        assertThat(bucket.firstAt).isEqualTo(1000);
+        assertThat(bucket.last).isEqualTo(-1);
+        assertThat(bucket.lastAt).isEqualTo(4000);
+    }
+
+    @Test
+    void mergeEqualsAddingAllReadings() {
+        RollupBucket early = new RollupBucket();
+        early.add(1000, 4);
+        early.add(1500, 7);
+        RollupBucket late = new RollupBucket();
+        late.add(2000, 2);
+        late.add(2500, 6);
+
+        RollupBucket merged = new RollupBucket();
+        merged.merge(late);
+        merged.merge(early);
+        merged.merge(new RollupBucket());
+
+        assertThat(merged.count).isEqualTo(4);
+        assertThat(merged.min).isEqualTo(2);
+        assertThat(merged.max).isEqualTo(7);
+        assertThat(merged.sum).isEqualTo(19);
+        assertThat(merged.first).isEqualTo(4);
+        assertThat(merged.last).isEqualTo(6);
+    }
+
+    @Test
+    void resetEmptiesBucketAndCopyIsIndependent() {
+        RollupBucket bucket = new RollupBucket();
+        bucket.bucketStart = 60_000;
+        bucket.add(60_500, 1);
+
+        RollupBucket copy = bucket.copy();
+        bucket.reset(120_000);
+        bucket.add(120_500, 10);
+
+        assertThat(copy.bucketStart).isEqualTo(60_000);
+        assertThat(copy.count).isEqualTo(1);
+        assertThat(copy.max).isEqualTo(1);
+        assertThat(bucket.count).isEqualTo(1);
+        assertThat(bucket.min).isEqualTo(10);
+        assertThat(bucket.first).isEqualTo(10);
+    }
+
+    @Test
+    void bucketStartsAreUtcAlignedPerResolution() {
+        // 2025-01-01T13:45:30.250Z
+        long timestamp = 1_735_739_130_250L;
+
+        assertThat(RollupResolution.MINUTE.bucketStart(timestamp)).isEqualTo(1_735_739_100_000L);
+        assertThat(RollupResolution.HOUR.bucketStart(timestamp)).isEqualTo(1_735_736_400_000L);
+        assertThat(RollupResolution.DAY.bucketStart(timestamp)).isEqualTo(1_735_689_600_000L);
+    }
+
+    @Test
+    void bucketBoundaryBelongsToTheNewBucket() {
+        for (RollupResolution resolution : RollupResolution.values()) {
+            long boundary = 100 * resolution.millis();
+
+            assertThat(resolution.bucketStart(boundary)).isEqualTo(boundary);
+            assertThat(resolution.bucketStart(boundary - 1)).isEqualTo(boundary - resolution.millis());
+            assertThat(resolution.bucketStart(boundary + resolution.millis() - 1)).isEqualTo(boundary);
+        }
+        // Floor, not truncation, before the epoch
+        assertThat(RollupResolution.MINUTE.bucketStart(-1)).isEqualTo(-60_000);
+    }
+
+    @Test
+    void parsesResolutionCaseInsensitively() {
+        assertThat(RollupResolution.parse("hour")).isEqualTo(RollupResolution.HOUR);
+        assertThatThrownBy(() -> RollupResolution.parse("week")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,115 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorDispatchProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorEventDispatcherTests {
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Boolean> attachChanges = new CopyOnWriteArrayList<>();
+    private final SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+    private SensorEventDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        dispatcher.stop();
+    }
+
+    @Test
+    void keepsAttachChangesWhenRingIsFull() {
+        start(2, 256);
+
+        // The consumer blocks in the listener, so the ring fills up behind it
+        dispatchBlocked(1);
+        dispatcher.dispatchData(slot, 2);
+        dispatcher.dispatchData(slot, 3);
+        dispatcher.dispatchAttached(slot, false);
+        dispatcher.dispatchAttached(slot, true);
+        dispatcher.dispatchAttached(slot, false);
+        dispatcher.dispatchData(slot, 4);
+        release.countDown();
+
+        awaitAttachChanges(1);
+
+        assertThat(attachChanges).containsExactly(false);
+        assertThat(slot.isAttached()).isFalse();
+        assertThat(dispatcher.getStats().getDropped()).isEqualTo(1);
+    }
+
+    @Test
+    void deliversParkedStateAfterOlderChangesInTheRing() {
+        start(8, 2);
+
+        // A detach deep in a full ring, several drain batches before the attach that gets parked
+        dispatchBlocked(1);
+        for (int i = 0; i < 3; i++) {
+            dispatcher.dispatchData(slot, i);
+        }
+        dispatcher.dispatchAttached(slot, false);
+        for (int i = 0; i < 4; i++) {
+            dispatcher.dispatchData(slot, i);
+        }
+        dispatcher.dispatchAttached(slot, true);
+        release.countDown();
+
+        awaitAttachChanges(2);
+
+        assertThat(attachChanges).containsExactly(false, true);
+        assertThat(slot.isAttached()).isTrue();
+        assertThat(dispatcher.getStats().getDropped()).isZero();
+    }
+
+    private void start(int ringCapacity, int drainBatch) {
+        SensorDataListener blocking = new SensorDataListener() {
+            @Override
+            public void onSensorData(SensorSlot slot, long timestamp, double value) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onAttachChange(SensorSlot slot, long timestamp, boolean attached) {
+                attachChanges.add(attached);
+            }
+        };
+        SensorMetrics metrics = new SensorMetrics(new SimpleMeterRegistry());
+        SensorIngestService ingest = new SensorIngestService(List.of(blocking), metrics);
+        ingest.init();
+        SensorDispatchProperties properties = new SensorDispatchProperties();
+        properties.setShards(1);
+        properties.setRingCapacity(ringCapacity);
+        properties.setDrainBatch(drainBatch);
+        dispatcher = new SensorEventDispatcher(properties, ingest, metrics);
+        dispatcher.start();
+    }
+
+    /** Publishes a reading and waits until the consumer is blocked handling it */
+    private void dispatchBlocked(double value) {
+        dispatcher.dispatchData(slot, value);
+        try {
+            entered.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void awaitAttachChanges(int count) {
+        while (attachChanges.size() < count || dispatcher.getStats().getDepth()[0] > 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
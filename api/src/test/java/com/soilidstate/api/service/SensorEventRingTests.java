@@ -0,0 +1,76 @@
+package com.soilidstate.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorEventRingTests {
+
+    @Test
+    void dropsEventsWhenFull() {
+        SensorEventRing ring = new SensorEventRing(4);
+        SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(slot, SensorEventRing.DATA, i, 0, i)).isTrue();
+        }
+        assertThat(ring.offer(slot, SensorEventRing.DATA, 4, 0, 4)).isFalse();
+        assertThat(ring.dropped()).isEqualTo(1);
+
+        List<Double> values = new ArrayList<>();
+        assertThat(ring.drain((s, kind, ts, nanos, v) -> values.add(v), 10)).isEqualTo(4);
+        assertThat(values).containsExactly(0.0, 1.0, 2.0, 3.0);
+        assertThat(ring.isEmpty()).isTrue();
+    }
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertThat(new SensorEventRing(1).capacity()).isEqualTo(2);
+        assertThat(new SensorEventRing(2).capacity()).isEqualTo(2);
+        assertThat(new SensorEventRing(3).capacity()).isEqualTo(4);
+        assertThat(new SensorEventRing(4).capacity()).isEqualTo(4);
+        assertThat(new SensorEventRing(5).capacity()).isEqualTo(8);
+        assertThat(new SensorEventRing(8192).capacity()).isEqualTo(8192);
+    }
+
+    @Test
+    void keepsPerProducerOrderUnderContention() throws InterruptedException {
+        SensorEventRing ring = new SensorEventRing(1024);
+        int producers = 4;
+        int perProducer = 100_000;
+        SensorSlot[] slots = new SensorSlot[producers];
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            SensorSlot slot = new SensorSlot("sensor-" + p, 1L, 1L, SensorType.VOLTAGE, "Probe", 0, p);
+            slots[p] = slot;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(slot, SensorEventRing.DATA, i, 0, i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        long[] next = new long[producers];
+        long received = 0;
+        boolean[] ordered = {true};
+        while (received < (long) producers * perProducer) {
+            received += ring.drain((slot, kind, ts, nanos, v) -> {
+                int p = slot.channel();
+                ordered[0] &= ts == next[p];
+                next[p] = ts + 1;
+            }, 256);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(ordered[0]).isTrue();
+        assertThat(next).containsOnly(perProducer);
+    }
+}
@@ -0,0 +1,80 @@
+package com.soilidstate.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class SensorExpressionTests {
+
+    @Test
+    void followsOperatorPrecedence() {
+        assertThat(eval("1 + 2 * 3")).isEqualTo(7);
+        assertThat(eval("(1 + 2) * 3")).isEqualTo(9);
+        assertThat(eval("2 ^ 3 ^ 2")).isEqualTo(512);
+        assertThat(eval("-2 ^ 2")).isEqualTo(-4);
+        assertThat(eval("10 - 4 - 3")).isEqualTo(3);
+        assertThat(eval("1.5e2 / 3")).isEqualTo(50);
+    }
+
+    @Test
+    void bindsInputsInOrderOfFirstUse() {
+        SensorExpression expression = SensorExpression.compile("t * 2 + rh - t");
+
+        assertThat(expression.inputs()).isEqualTo(List.of("t", "rh"));
+        assertThat(expression.evaluate(new double[]{20, 50})).isEqualTo(70);
+    }
+
+    @Test
+    void computesVaporPressureDeficit() {
+        SensorExpression vpd = SensorExpression.compile("0.6108 * exp(17.27 * t / (t + 237.3)) * (1 - rh / 100)");
+
+        assertThat(vpd.evaluate(new double[]{25, 60})).isCloseTo(1.2671, within(1e-3));
+    }
+
+    @Test
+    void interpolatesCalibrationCurves() {
+        SensorExpression vwc = SensorExpression.compile("curve(raw, 0, 0, 1, 10, 2, 50)");
+
+        assertThat(vwc.evaluate(new double[]{-1})).isEqualTo(0);
+        assertThat(vwc.evaluate(new double[]{0.5})).isEqualTo(5);
+        assertThat(vwc.evaluate(new double[]{1})).isEqualTo(10);
+        assertThat(vwc.evaluate(new double[]{1.25})).isEqualTo(20);
+        assertThat(vwc.evaluate(new double[]{3})).isEqualTo(50);
+    }
+
+    @Test
+    void evaluatesPolynomials() {
+        SensorExpression poly = SensorExpression.compile("poly(x, 1, 2, 3)");
+
+        assertThat(poly.evaluate(new double[]{2})).isEqualTo(1 + 2 * 2 + 3 * 4);
+    }
+
+    @Test
+    void supportsFunctions() {
+        assertThat(eval("clamp(150, 0, 100)")).isEqualTo(100);
+        assertThat(eval("min(3, 1, 2) + max(3, 1, 2)")).isEqualTo(4);
+        assertThat(eval("abs(-2) + sqrt(9) + pow(2, 3)")).isEqualTo(13);
+        assertThat(eval("ln(1) + log10(100)")).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsInvalidExpressions() {
+        assertThatThrownBy(() -> SensorExpression.compile("1 +")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SensorExpression.compile("(1 + 2")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SensorExpression.compile("foo(1)")).hasMessageContaining("Unknown function");
+        assertThatThrownBy(() -> SensorExpression.compile("sqrt(1, 2)")).hasMessageContaining("takes 1 argument");
+        assertThatThrownBy(() -> SensorExpression.compile("curve(x, 1, 0, 0, 1)")).hasMessageContaining("increasing");
+        assertThatThrownBy(() -> SensorExpression.compile("curve(x, y, 0, 1, 1)")).hasMessageContaining("constants");
+        assertThatThrownBy(() -> SensorExpression.compile("1 $ 2")).hasMessageContaining("Unexpected");
+    }
+
+    private static double eval(String source) {
+        SensorExpression expression = SensorExpression.compile(source);
+        assertThat(expression.inputs()).isEmpty();
+        return expression.evaluate(new double[0]);
+    }
+}
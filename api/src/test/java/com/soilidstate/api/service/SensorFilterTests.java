@@ -0,0 +1,28 @@
+package com.soilidstate.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SensorFilterTests {
+
+    @Test
+    void matchesAllGivenCriteria() {
+        SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.TEMPERATURE, "Bed 3 soil", 2, 1);
+        slot.writeAttached(true, 100, 1);
+
+        assertThat(SensorFilter.NONE.matches(slot)).isTrue();
+        assertThat(SensorFilter.of("temperature", 2, 1, true, "Bed 3").matches(slot)).isTrue();
+        assertThat(SensorFilter.of("HUMIDITY", null, null, null, null).matches(slot)).isFalse();
+        assertThat(SensorFilter.of(null, 3, null, null, null).matches(slot)).isFalse();
+        assertThat(SensorFilter.of(null, null, null, false, null).matches(slot)).isFalse();
+        assertThat(SensorFilter.of(null, null, null, null, "Bed 4").matches(slot)).isFalse();
+    }
+
+    @Test
+    void rejectsUnknownType() {
+        assertThatThrownBy(() -> SensorFilter.of("FLUXCAPACITOR", null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,91 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.SensorDataResponse;
+import com.soilidstate.api.dto.SensorHistoryResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorFrameEncoderTests {
+
+    private final SensorFrameEncoder encoder = new SensorFrameEncoder();
+
+    @Test
+    void omitsDictionaryTheClientAlreadyHolds() {
+        List<SensorSlot> slots = new ArrayList<>();
+        List<SensorDataResponse> readings = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            SensorSlot slot = new SensorSlot("sensor-" + i, 1L, 1L, SensorType.TEMPERATURE, "Soil " + i, i / 4, i % 4);
+            slot.writeValue(20 + i * 0.1, 1_700_000_000_000L + i, i + 1);
+            slots.add(slot);
+            readings.add(slot.toResponse());
+        }
+
+        SensorFrameEncoder.Frame first = encoder.encodeData(slots, readings, 50, true, null);
+        SensorFrameEncoder.Frame next = encoder.encodeData(slots, readings, 50, true, first.dictionaryVersion());
+
+        assertThat(first.bytes()[0]).isEqualTo((byte) 'S');
+        assertThat(first.bytes()[12] & 2).isEqualTo(2);
+        assertThat(next.bytes()[12] & 2).isZero();
+        assertThat(next.dictionaryVersion()).isEqualTo(first.dictionaryVersion());
+        // Index, timestamp offset, flags and value
+        assertThat(next.bytes().length).isLessThan(30 + readings.size() * 12);
+    }
+
+    @Test
+    void dictionaryVersionFollowsMetadata() {
+        SensorSlot a = new SensorSlot("a", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+        SensorSlot renamed = new SensorSlot("a", 1L, 1L, SensorType.VOLTAGE, "Renamed", 0, 0);
+
+        String before = encoder.encodeData(List.of(a), List.of(), 1, true, null).dictionaryVersion();
+        String after = encoder.encodeData(List.of(renamed), List.of(), 1, true, null).dictionaryVersion();
+
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    @Test
+    void encodesMissingPortOfVirtualSensorsInOneByte() {
+        SensorSlot virtual = new SensorSlot("v", 1L, 1L, SensorType.VIRTUAL, "Dew point", -1, -1, "°C");
+
+        byte[] frame = encoder.encodeData(List.of(virtual), List.of(), 1, true, null).bytes();
+
+        // Header, data version, flags, dictionary version, entry count
+        int p = 4 + 8 + 1 + 8 + 1;
+        for (int field = 0; field < 4; field++) {
+            p += 1 + frame[p];
+        }
+        assertThat(frame[p]).isEqualTo((byte) 1);
+        assertThat(frame[p + 1]).isEqualTo((byte) 1);
+        assertThat(unZigZag(frame[p])).isEqualTo(-1);
+        // Reading count and base timestamp follow directly
+        assertThat(frame[p + 2]).isZero();
+        assertThat(frame.length).isEqualTo(p + 3 + 8);
+    }
+
+    @Test
+    void encodesHistoryCompactly() {
+        int count = 1000;
+        SensorHistoryResponse history = new SensorHistoryResponse();
+        history.setSensorId("sensor");
+        history.setUnit("V");
+        history.setCount(count);
+        history.setTimestamps(new long[count]);
+        history.setValues(new double[count]);
+        for (int i = 0; i < count; i++) {
+            history.getTimestamps()[i] = 1_700_000_000_000L + i * 250L;
+            history.getValues()[i] = i;
+        }
+
+        byte[] frame = encoder.encodeHistory(history);
+
+        // Two-byte timestamp deltas plus the raw values
+        assertThat(frame.length).isLessThan(32 + count * 10);
+    }
+
+    private static int unZigZag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
@@ -0,0 +1,45 @@
+package com.soilidstate.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorHistoryBufferTests {
+
+    @Test
+    void returnsReadingsInRangeOldestFirst() {
+        SensorHistoryBuffer buffer = new SensorHistoryBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.append(1000 + i, i * 1.5);
+        }
+
+        SensorHistoryBuffer.Range range = buffer.read(1001, 1003, 10);
+
+        assertThat(range.timestamps()).containsExactly(1001, 1002, 1003);
+        assertThat(range.values()).containsExactly(1.5, 3.0, 4.5);
+    }
+
+    @Test
+    void keepsOnlyNewestReadingsAfterWrapAround() {
+        SensorHistoryBuffer buffer = new SensorHistoryBuffer(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(i, i);
+        }
+
+        SensorHistoryBuffer.Range range = buffer.read(0, Long.MAX_VALUE, 100);
+
+        assertThat(range.timestamps()).containsExactly(6, 7, 8, 9);
+    }
+
+    @Test
+    void limitKeepsMostRecentPoints() {
+        SensorHistoryBuffer buffer = new SensorHistoryBuffer(16);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(i, i);
+        }
+
+        SensorHistoryBuffer.Range range = buffer.read(0, Long.MAX_VALUE, 3);
+
+        assertThat(range.timestamps()).containsExactly(7, 8, 9);
+    }
+}
@@ -0,0 +1,35 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorHistoryProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorHistoryServiceTests {
+
+    private final SensorHistoryService history = new SensorHistoryService(new SensorHistoryProperties());
+    private final SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+
+    @Test
+    void keepsReadingsUntilSensorIsRemoved() {
+        history.onSensorData(slot, 1000, 1.5);
+        history.onSensorData(slot, 2000, 2.5);
+
+        assertThat(history.getHistory("sensor", 0, Long.MAX_VALUE, 10).getValues()).containsExactly(1.5, 2.5);
+
+        history.onSensorRemoved("sensor");
+        assertThat(history.getHistory("sensor", 0, Long.MAX_VALUE, 10).getCount()).isZero();
+    }
+
+    @Test
+    void doesNotRecreateBufferForReadingAfterRemoval() {
+        // The removal ran between the dispatcher's active check and the listener call
+        slot.deactivate();
+        history.onSensorRemoved("sensor");
+
+        history.onSensorData(slot, 1000, 1.5);
+
+        assertThat(history.getHistory("sensor", 0, Long.MAX_VALUE, 10).getCount()).isZero();
+        assertThat(history.getHistory("sensor", 0, Long.MAX_VALUE, 10).getUnit()).isNull();
+    }
+}
@@ -0,0 +1,141 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.AlertProperties;
+import com.soilidstate.api.config.ReadingPersistenceProperties;
+import com.soilidstate.api.config.SensorHistoryProperties;
+import com.soilidstate.api.config.SensorRollupProperties;
+import com.soilidstate.api.config.SensorStatePersistenceProperties;
+import com.soilidstate.api.config.SensorStreamProperties;
+import com.soilidstate.api.dto.SensorDataResponse;
+import com.soilidstate.api.entity.AlertRule;
+import com.soilidstate.api.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SensorSlotTests {
+
+    @Test
+    void writesDoNotAllocate() {
+        SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+
+        long allocated = allocatedBytes(() -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                slot.writeValue(i, i, i + 1);
+            }
+        });
+
+        assertThat(allocated).isLessThan(1024);
+    }
+
+    @Test
+    void ingestWithoutListenersDoesNotAllocate() {
+        SensorIngestService ingest = new SensorIngestService(List.of(), new SensorMetrics(new SimpleMeterRegistry()));
+        ingest.init();
+        SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+
+        long allocated = allocatedBytes(() -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                ingest.updateSensorData(slot, i, i, System.nanoTime());
+            }
+        });
+
+        assertThat(allocated).isLessThan(1024);
+        assertThat(slot.toResponse().getValue()).isEqualTo(999_999.0);
+    }
+
+    @Test
+    void ingestThroughProductionListenersDoesNotAllocate() throws InterruptedException {
+        SensorMetrics metrics = new SensorMetrics(new SimpleMeterRegistry());
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        ReadingWriteBehindService readings = new ReadingWriteBehindService(new ReadingPersistenceProperties(),
+                jdbcTemplate, metrics);
+        readings.start();
+        AlertEngine alerts = new AlertEngine(new AlertProperties(), List.of(), metrics);
+        // A rule that evaluates every reading but never changes state
+        alerts.put(AlertRule.builder()
+                .id(1L)
+                .user(User.builder().id(1L).build())
+                .sensorId("sensor")
+                .name("Too high")
+                .kind("ABOVE")
+                .threshold(1e9)
+                .build());
+        List<SensorDataListener> listeners = List.of(
+                new SensorHistoryService(new SensorHistoryProperties()),
+                new SensorRollupService(jdbcTemplate, mock(TransactionTemplate.class), new SensorRollupProperties(),
+                        metrics),
+                readings,
+                new SensorStateWriteBehindService(new SensorStatePersistenceProperties(), jdbcTemplate, metrics),
+                alerts,
+                new SensorStreamService(new SensorStreamProperties()));
+        SensorIngestService ingest = new SensorIngestService(listeners, metrics);
+        ingest.init();
+        SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+
+        try {
+            // Within one minute, so no rollup bucket closes
+            long allocated = allocatedBytes(() -> {
+                for (int i = 0; i < 1_000_000; i++) {
+                    ingest.updateSensorData(slot, i, 60_000 + i % 1000, System.nanoTime());
+                }
+            });
+
+            // Far below one object per reading; waiting for the reading queue's lock while its
+            // writer drains a batch allocates a wait node now and then
+            assertThat(allocated).isLessThan(64 * 1024);
+        } finally {
+            readings.stop();
+        }
+    }
+
+    @Test
+    void materializesLatestWrite() {
+        SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.TEMPERATURE, "Soil", 2, 1);
+        assertThat(slot.toResponse()).isNull();
+
+        slot.writeAttached(true, 100, 1);
+        assertThat(slot.toResponse().getValue()).isNull();
+
+        slot.writeValue(21.5, 200, 2);
+        SensorDataResponse response = slot.toResponse();
+
+        assertThat(response.getValue()).isEqualTo(21.5);
+        assertThat(response.getUnit()).isEqualTo("°C");
+        assertThat(response.getTimestamp()).isEqualTo(200L);
+        assertThat(response.getVersion()).isEqualTo(2L);
+        assertThat(response.isAttached()).isTrue();
+    }
+
+    @Test
+    void marksStateDirtyOncePerFlush() {
+        SensorSlot slot = new SensorSlot("sensor", 1L, 1L, SensorType.HUMIDITY, "Air", 0, 3);
+
+        assertThat(slot.markStateDirty()).isTrue();
+        assertThat(slot.markStateDirty()).isFalse();
+
+        slot.clearStateDirty();
+        assertThat(slot.markStateDirty()).isTrue();
+    }
+
+    /**
+     * Bytes allocated by the current thread running the loop, after a warm-up run so it is compiled
+     */
+    private static long allocatedBytes(Runnable loop) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        loop.run();
+
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        loop.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -0,0 +1,103 @@
+package com.soilidstate.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soilidstate.api.config.JacksonConfig;
+import com.soilidstate.api.config.SensorSnapshotProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorSnapshotCacheTests {
+
+    private static final SensorChannel CHANNEL = new SensorChannel() {
+        @Override
+        public boolean isAttached() {
+            return true;
+        }
+
+        @Override
+        public void applySettings(SensorSettings settings) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper().setFilterProvider(JacksonConfig.defaultFilters());
+    private SensorMetrics metrics;
+    private SensorIngestService ingest;
+    private PhidgetService phidgetService;
+    private SensorSlot slot;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new SensorMetrics(new SimpleMeterRegistry());
+        ingest = new SensorIngestService(List.of(), metrics);
+        ingest.init();
+        phidgetService = new PhidgetService(ingest, null, null, null, null, metrics);
+
+        PhidgetSession session = new PhidgetSession(1L, 1L, ingest, null);
+        slot = new SensorSlot("sensor", 1L, 1L, SensorType.VOLTAGE, "Probe", 0, 0);
+        session.track(slot, CHANNEL);
+        slot.writeValue(1.5, 1000, ingest.nextVersion());
+        phidgetService.addSession(session);
+    }
+
+    private SensorSnapshotCache cache(Duration minRebuildInterval) {
+        SensorSnapshotProperties properties = new SensorSnapshotProperties();
+        properties.setMinRebuildInterval(minRebuildInterval);
+        return new SensorSnapshotCache(phidgetService, mapper, properties, metrics);
+    }
+
+    @Test
+    void sharesSnapshotUntilDataChanges() throws Exception {
+        SensorSnapshotCache cache = cache(Duration.ZERO);
+
+        SensorSnapshotCache.Snapshot first = cache.get(1L, null);
+        assertThat(cache.get(1L, null)).isSameAs(first);
+        assertThat(mapper.readTree(first.json()).get("sensor").get("value").asDouble()).isEqualTo(1.5);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(first.gzip()))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(first.json());
+        }
+
+        slot.writeValue(2.5, 2000, ingest.nextVersion());
+        SensorSnapshotCache.Snapshot next = cache.get(1L, null);
+
+        assertThat(next.version()).isGreaterThan(first.version());
+        assertThat(mapper.readTree(next.json()).get("sensor").get("value").asDouble()).isEqualTo(2.5);
+    }
+
+    @Test
+    void rebuildsAtMostOncePerInterval() {
+        SensorSnapshotCache cache = cache(Duration.ofHours(1));
+
+        SensorSnapshotCache.Snapshot first = cache.get(1L, null);
+        slot.writeValue(2.5, 2000, ingest.nextVersion());
+
+        assertThat(cache.get(1L, null)).isSameAs(first);
+    }
+
+    @Test
+    void keepsSnapshotWhenOnlyOtherUsersWrite() {
+        PhidgetSession other = new PhidgetSession(2L, 2L, ingest, null);
+        SensorSlot otherSlot = new SensorSlot("other", 2L, 2L, SensorType.VOLTAGE, "Probe", 0, 0);
+        other.track(otherSlot, CHANNEL);
+        phidgetService.addSession(other);
+        SensorSnapshotCache cache = cache(Duration.ZERO);
+
+        SensorSnapshotCache.Snapshot first = cache.get(1L, null);
+        otherSlot.writeValue(3.5, 2000, ingest.nextVersion());
+
+        assertThat(cache.get(1L, null)).isSameAs(first);
+        assertThat(phidgetService.getUserDataVersion(1L, null)).isEqualTo(first.version());
+        assertThat(phidgetService.getUserDataVersion(2L, null)).isGreaterThan(first.version());
+    }
+}
@@ -0,0 +1,160 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorStatePersistenceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SensorStateWriteBehindServiceTests {
+
+    private final SensorStatePersistenceProperties properties = new SensorStatePersistenceProperties();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<Update> updates = new ArrayList<>();
+    private boolean failing;
+    private SensorStateWriteBehindService service;
+
+    /** An executed update, with its parameters bound to a mock statement */
+    private record Update(String sql, PreparedStatement ps) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Parameters are bound while the update runs, as the batch lists are reused afterwards
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocation -> {
+            if (failing) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            PreparedStatement ps = mock(PreparedStatement.class);
+            invocation.<PreparedStatementSetter>getArgument(1).setValues(ps);
+            updates.add(new Update(invocation.getArgument(0), ps));
+            return 1;
+        });
+
+        // Flushed by the tests only
+        properties.setFlushInterval(Duration.ofHours(1));
+        properties.setBatchSize(2);
+        service = new SensorStateWriteBehindService(properties, jdbcTemplate, new SensorMetrics(new SimpleMeterRegistry()));
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.stop();
+    }
+
+    @Test
+    void writesEachChangedSensorOncePerFlush() throws SQLException {
+        SensorSlot a = slot("a");
+        for (int i = 0; i < 5; i++) {
+            a.writeValue(20 + i, 1000 + i, i + 1);
+            service.onSensorData(a, 1000 + i, 20 + i);
+        }
+        SensorSlot b = slot("b");
+        b.writeAttached(false, 2000, 6);
+        service.onAttachChange(b, 2000, false);
+
+        assertThat(service.getDirtyCount()).isEqualTo(2);
+        service.flush();
+
+        assertThat(updates).hasSize(1);
+        PreparedStatement ps = updates.get(0).ps();
+        verify(ps).setString(1, "a");
+        verify(ps).setDouble(2, 24.0);
+        verify(ps).setTimestamp(3, new Timestamp(1004));
+        verify(ps).setBoolean(4, true);
+        verify(ps).setString(5, "b");
+        verify(ps).setNull(6, Types.DOUBLE);
+        verify(ps).setTimestamp(7, null);
+        verify(ps).setBoolean(8, false);
+        assertThat(service.getWrittenCount()).isEqualTo(2);
+        assertThat(service.getDirtyCount()).isZero();
+
+        // Nothing changed since
+        service.flush();
+        assertThat(updates).hasSize(1);
+    }
+
+    @Test
+    void queuesSensorsAgainAfterFailedBatch() throws SQLException {
+        SensorSlot a = slot("a");
+        a.writeValue(1, 1000, 1);
+        service.onSensorData(a, 1000, 1);
+        failing = true;
+
+        service.flush();
+
+        assertThat(service.getFailedCount()).isEqualTo(1);
+        assertThat(service.getDirtyCount()).isEqualTo(1);
+
+        // The retry writes the state the sensor has by then
+        a.writeValue(2, 2000, 2);
+        failing = false;
+        service.flush();
+
+        assertThat(updates).hasSize(1);
+        verify(updates.get(0).ps()).setDouble(2, 2.0);
+        assertThat(service.getWrittenCount()).isEqualTo(1);
+        assertThat(service.getDirtyCount()).isZero();
+    }
+
+    @Test
+    void splitsFlushIntoBatches() {
+        for (String sensorId : List.of("a", "b", "c")) {
+            SensorSlot slot = slot(sensorId);
+            slot.writeValue(1, 1000, 1);
+            service.onSensorData(slot, 1000, 1);
+        }
+
+        service.flush();
+
+        assertThat(updates).hasSize(2);
+        assertThat(updates.get(0).sql()).isEqualTo(SensorStateWriteBehindService.updateSql(2));
+        assertThat(updates.get(1).sql()).isEqualTo(SensorStateWriteBehindService.updateSql(1));
+        assertThat(service.getWrittenCount()).isEqualTo(3);
+    }
+
+    @Test
+    void skipsSensorsWithoutState() {
+        service.onSensorData(slot("never-written"), 1000, 1);
+
+        service.flush();
+
+        assertThat(updates).isEmpty();
+        assertThat(service.getDirtyCount()).isZero();
+    }
+
+    @Test
+    void buildsOneValuesRowPerSensor() {
+        String sql = SensorStateWriteBehindService.updateSql(3);
+
+        assertThat(sql).startsWith("UPDATE registered_sensors AS s SET ");
+        assertThat(sql).contains("FROM (VALUES (?, ?::double precision, ?::timestamp, ?::boolean), "
+                + "(?, ?::double precision, ?::timestamp, ?::boolean), "
+                + "(?, ?::double precision, ?::timestamp, ?::boolean)) AS v(");
+        assertThat(sql.chars().filter(c -> c == '?').count()).isEqualTo(12);
+        assertThat(sql).endsWith("WHERE s.phidget_sensor_id = v.phidget_sensor_id");
+    }
+
+    private static SensorSlot slot(String sensorId) {
+        return new SensorSlot(sensorId, 1L, 1L, SensorType.TEMPERATURE, "Soil", 0, 0);
+    }
+}
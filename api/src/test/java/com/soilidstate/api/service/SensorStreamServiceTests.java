@@ -0,0 +1,189 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.SensorStreamProperties;
+import com.soilidstate.api.dto.SensorDataResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorStreamServiceTests {
+
+    private final SensorStreamProperties properties = new SensorStreamProperties();
+    private final RecordingEmitter emitter = new RecordingEmitter();
+    private final SensorStreamService service = new SensorStreamService(properties) {
+        @Override
+        SseEmitter createEmitter(long timeoutMillis) {
+            return emitter;
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        emitter.release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void conflatesReadingsWhileClientIsBusy() throws InterruptedException {
+        service.subscribe(1L, null, null, null, List.of());
+        SensorSlot slot = slot("a", 1L, 1L, SensorType.VOLTAGE, 0);
+
+        emitter.block();
+        publish(slot, 1.0);
+        emitter.entered.await();
+        publish(slot, 2.0);
+        publish(slot, 3.0);
+        emitter.release.countDown();
+
+        awaitSent(2);
+        assertThat(emitter.sent).extracting(SensorDataResponse::getValue).containsExactly(1.0, 3.0);
+    }
+
+    @Test
+    void boundsPendingSensorsPerClient() throws InterruptedException {
+        properties.setMaxPendingPerClient(2);
+        service.subscribe(1L, null, null, null, List.of());
+
+        emitter.block();
+        publish(slot("first", 1L, 1L, SensorType.VOLTAGE, 0), 1.0);
+        emitter.entered.await();
+        for (String sensorId : List.of("a", "b", "c")) {
+            publish(slot(sensorId, 1L, 1L, SensorType.VOLTAGE, 0), 2.0);
+        }
+        // Already pending, so replaced rather than refused
+        publish(slot("a", 1L, 1L, SensorType.VOLTAGE, 0), 3.0);
+        emitter.release.countDown();
+
+        awaitSent(3);
+        assertThat(emitter.sent).extracting(SensorDataResponse::getSensorId)
+                .containsExactlyInAnyOrder("first", "a", "b");
+        assertThat(emitter.sent).filteredOn(data -> data.getSensorId().equals("a"))
+                .extracting(SensorDataResponse::getValue).containsExactly(3.0);
+    }
+
+    @Test
+    void sendsOnlySensorsMatchingTheSubscription() throws InterruptedException {
+        service.subscribe(1L, 10L, "temperature", 2, List.of());
+
+        publish(slot("other-user", 2L, 10L, SensorType.TEMPERATURE, 2), 1.0);
+        publish(slot("other-connection", 1L, 11L, SensorType.TEMPERATURE, 2), 1.0);
+        publish(slot("other-type", 1L, 10L, SensorType.HUMIDITY, 2), 1.0);
+        publish(slot("other-port", 1L, 10L, SensorType.TEMPERATURE, 3), 1.0);
+        publish(slot("match", 1L, 10L, SensorType.TEMPERATURE, 2), 1.0);
+
+        awaitSent(1);
+        assertThat(emitter.sent).extracting(SensorDataResponse::getSensorId).containsExactly("match");
+    }
+
+    @Test
+    void removesClientWhenSendFails() throws InterruptedException {
+        service.subscribe(1L, null, null, null, List.of());
+        assertThat(service.getSubscriberCount()).isEqualTo(1);
+
+        emitter.failing = true;
+        publish(slot("a", 1L, 1L, SensorType.VOLTAGE, 0), 1.0);
+        while (service.getSubscriberCount() > 0) {
+            Thread.sleep(1);
+        }
+
+        emitter.failing = false;
+        publish(slot("b", 1L, 1L, SensorType.VOLTAGE, 0), 1.0);
+        assertThat(emitter.sent).isEmpty();
+    }
+
+    @Test
+    void concurrentSubscriptionsStayWithinLimit() throws InterruptedException {
+        properties.setMaxSubscribers(4);
+        // Each subscriber gets its own emitter here
+        SensorStreamService service = new SensorStreamService(properties);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 16; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        service.subscribe(1L, null, null, null, List.of());
+                        opened.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        refused.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            start.countDown();
+        }
+
+        assertThat(opened.get()).isEqualTo(4);
+        assertThat(refused.get()).isEqualTo(12);
+        assertThat(service.getSubscriberCount()).isEqualTo(4);
+        service.shutdown();
+    }
+
+    private void publish(SensorSlot slot, double value) {
+        slot.writeValue(value, 1000, 1);
+        service.onSensorData(slot, 1000, value);
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        while (emitter.sent.size() < count) {
+            Thread.sleep(1);
+        }
+        // Give a wrongly sent extra reading the chance to show up
+        Thread.sleep(50);
+    }
+
+    private static SensorSlot slot(String sensorId, long userId, long connectionId, SensorType type, int hubPort) {
+        return new SensorSlot(sensorId, userId, connectionId, type, "Probe", hubPort, 0);
+    }
+
+    /**
+     * Records what the service sends; can block the first send or fail every send
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        final List<SensorDataResponse> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean blocking;
+        volatile boolean failing;
+
+        void block() {
+            blocking = true;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            if (blocking) {
+                blocking = false;
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof SensorDataResponse data) {
+                    sent.add(data);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.config.UserCacheProperties;
+import com.soilidstate.api.entity.User;
+import com.soilidstate.api.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserServiceTests {
+
+    private static final String SUBJECT = "auth0|123";
+
+    private UserRepository userRepository;
+    private UserService userService;
+    private final Authentication authentication = new JwtAuthenticationToken(Jwt.withTokenValue("token")
+            .header("alg", "none")
+            .subject(SUBJECT)
+            .issuer("https://soilidstate.eu.auth0.com/")
+            .claim("email", "grower@example.com")
+            .claim("name", "Grower")
+            .build());
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            user.setId(42L);
+            return user;
+        });
+        userService = new UserService(userRepository, transactionTemplate, new UserCacheProperties(),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void servesKnownUserFromCache() {
+        when(userRepository.findByOauthSubject(SUBJECT)).thenReturn(Optional.of(existing()));
+
+        User first = userService.getOrCreateUser(authentication);
+        User second = userService.getOrCreateUser(authentication);
+
+        assertThat(first.getId()).isEqualTo(7L);
+        assertThat(second.getId()).isEqualTo(7L);
+        assertThat(second.getEmail()).isEqualTo("grower@example.com");
+        // Callers may modify what they get
+        assertThat(second).isNotSameAs(first);
+        verify(userRepository, times(1)).findByOauthSubject(SUBJECT);
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void createsUserOnMissAndCachesIt() {
+        when(userRepository.findByOauthSubject(SUBJECT)).thenReturn(Optional.empty());
+
+        User user = userService.getOrCreateUser(authentication);
+        userService.getOrCreateUser(authentication);
+
+        assertThat(user.getId()).isEqualTo(42L);
+        assertThat(user.getOauthSubject()).isEqualTo(SUBJECT);
+        assertThat(user.getOauthProvider()).isEqualTo("auth0");
+        assertThat(user.getDisplayName()).isEqualTo("Grower");
+        verify(userRepository, times(1)).save(any());
+    }
+
+    @Test
+    void concurrentFirstRequestsCreateUserOnce() throws Exception {
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        when(userRepository.findByOauthSubject(SUBJECT)).thenAnswer(invocation -> {
+            lookupStarted.countDown();
+            releaseLookup.await();
+            return Optional.empty();
+        });
+
+        List<Future<User>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> userService.getOrCreateUser(authentication)));
+            }
+            lookupStarted.await();
+            // Let the other callers reach the cache while the first lookup is running
+            Thread.sleep(50);
+            releaseLookup.countDown();
+        }
+
+        for (Future<User> result : results) {
+            assertThat(result.get().getId()).isEqualTo(42L);
+        }
+        verify(userRepository, times(1)).findByOauthSubject(SUBJECT);
+        verify(userRepository, times(1)).save(any());
+    }
+
+    @Test
+    void fallsBackToUserCreatedByAnotherInstance() {
+        when(userRepository.findByOauthSubject(SUBJECT)).thenReturn(Optional.empty())
+                .thenReturn(Optional.of(existing()));
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        User user = userService.getOrCreateUser(authentication);
+
+        assertThat(user.getId()).isEqualTo(7L);
+        verify(userRepository, times(2)).findByOauthSubject(SUBJECT);
+    }
+
+    @Test
+    void rethrowsIntegrityViolationWhenUserStillMissing() {
+        when(userRepository.findByOauthSubject(SUBJECT)).thenReturn(Optional.empty());
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("not null"));
+
+        assertThatThrownBy(() -> userService.getOrCreateUser(authentication))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void doesNotCacheUnknownCurrentUser() {
+        when(userRepository.findByOauthSubject(SUBJECT)).thenReturn(Optional.empty())
+                .thenReturn(Optional.of(existing()));
+
+        assertThatThrownBy(() -> userService.getCurrentUser(authentication)).hasMessage("User not found");
+
+        assertThat(userService.getCurrentUser(authentication).getId()).isEqualTo(7L);
+    }
+
+    private static User existing() {
+        return User.builder()
+                .id(7L)
+                .oauthSubject(SUBJECT)
+                .email("grower@example.com")
+                .oauthProvider("auth0")
+                .displayName("Grower")
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package com.soilidstate.api.service;
+
+import com.soilidstate.api.dto.SensorDataResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualSensorTests {
+
+    private SensorIngestService ingest;
+    private SensorSlot temperature;
+    private SensorSlot humidity;
+    private SensorSlot dewPoint;
+    private VirtualSensor virtual;
+
+    @BeforeEach
+    void setUp() {
+        ingest = new SensorIngestService(List.of(), new SensorMetrics(new SimpleMeterRegistry()));
+        ingest.init();
+
+        temperature = new SensorSlot("t", 1L, 1L, SensorType.TEMPERATURE, "Air", 0, 0);
+        humidity = new SensorSlot("rh", 1L, 1L, SensorType.HUMIDITY, "Air", 0, 1);
+        dewPoint = new SensorSlot("dp", 1L, 1L, SensorType.VIRTUAL, "Spread", -1, -1, "°C");
+        virtual = new VirtualSensor(dewPoint, SensorExpression.compile("t - (100 - rh) / 5"),
+                Map.of("t", "t", "rh", "rh"), new SensorSlot[]{temperature, humidity}, ingest);
+    }
+
+    @Test
+    void publishesOnceAllInputsHaveValues() {
+        virtual.start();
+        ingest.updateSensorData(temperature, 20, 1000, 0);
+        assertThat(dewPoint.toResponse()).isNull();
+
+        ingest.updateSensorData(humidity, 50, 2000, 0);
+        SensorDataResponse data = dewPoint.toResponse();
+        assertThat(data.getValue()).isEqualTo(10);
+        assertThat(data.getTimestamp()).isEqualTo(2000);
+        assertThat(data.getUnit()).isEqualTo("°C");
+        assertThat(data.isAttached()).isTrue();
+
+        ingest.updateSensorData(temperature, 22, 3000, 0);
+        assertThat(dewPoint.toResponse().getValue()).isEqualTo(12);
+    }
+
+    @Test
+    void startsFromCurrentInputValues() {
+        ingest.updateSensorData(temperature, 20, 1000, 0);
+        ingest.updateSensorData(humidity, 90, 2000, 0);
+
+        virtual.start();
+
+        assertThat(dewPoint.toResponse().getValue()).isEqualTo(18);
+    }
+
+    @Test
+    void detachesWithAnInputAndRecoversOnItsNextReading() {
+        virtual.start();
+        ingest.updateSensorData(temperature, 20, 1000, 0);
+        ingest.updateSensorData(humidity, 50, 2000, 0);
+
+        ingest.updateAttached(humidity, false, 3000);
+        assertThat(dewPoint.isAttached()).isFalse();
+        ingest.updateSensorData(temperature, 21, 4000, 0);
+        assertThat(dewPoint.isAttached()).isFalse();
+
+        ingest.updateSensorData(humidity, 60, 5000, 0);
+        assertThat(dewPoint.toResponse().getValue()).isEqualTo(13);
+        assertThat(dewPoint.isAttached()).isTrue();
+    }
+
+    @Test
+    void stopsFollowingInputsWhenClosed() {
+        virtual.start();
+        ingest.updateSensorData(temperature, 20, 1000, 0);
+        ingest.updateSensorData(humidity, 50, 2000, 0);
+
+        virtual.close();
+        ingest.updateSensorData(temperature, 30, 3000, 0);
+
+        assertThat(dewPoint.toResponse().getValue()).isEqualTo(10);
+        assertThat(temperature.dependents()).isEmpty();
+    }
+}